@@ -0,0 +1,278 @@
+package io.github.massimilianopili.mcp.devops;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Test di carico end-to-end: avvia DevOpsStubServer, costruisce il devOpsWebClient reale
+ * (pool, filtri, paginatore, batch, catalogo) puntato sullo stub tramite mcp.devops.host e chiama
+ * i metodi dei tool in parallelo, uno scenario alla volta. Per ogni tool riporta throughput,
+ * latenza p50/p99, errori, richieste a monte (totali e per chiamata), byte allocati per chiamata e picco
+ * di heap; devops_analyze_release gira con 50, 200 e 2000 work item per chiamata.
+ * <p>
+ * client=tuned usa il pool dedicato di DevOpsConfig (connessioni, timeout, gzip), client=default un
+ * WebClient.builder() senza connettore, sul pool globale di Reactor Netty, con gli stessi filtri;
+ * client=both (predefinito) esegue ogni scenario con entrambi per il confronto di throughput e p99.
+ * <p>
+ * Argomenti chiave=valore, es.:
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec@load -Dload.args="concurrency=64 duration=30s throttle=0.02"
+ * </pre>
+ */
+public final class DevOpsLoadHarness {
+
+    private record Scenario(String tool, IntFunction<Mono<?>> call) {}
+
+    private record Result(String tool, String client, long calls, long errors, double throughput,
+                          double p50Millis, double p99Millis, long upstreamRequests,
+                          long allocatedPerCall, long peakHeap) {}
+
+    /** Work item per chiamata negli scenari di devops_analyze_release */
+    private static final int[] RELEASE_SIZES = {50, 200, 2000};
+
+    private DevOpsLoadHarness() {}
+
+    public static void main(String[] args) {
+        Map<String, String> options = parse(args);
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "32"));
+        Duration warmup = DurationStyle.detectAndParse(options.getOrDefault("warmup", "5s"));
+        Duration duration = DurationStyle.detectAndParse(options.getOrDefault("duration", "20s"));
+        Set<String> only = options.containsKey("tools")
+                ? Set.of(options.get("tools").split(",")) : null;
+        String client = options.getOrDefault("client", "both");
+        List<String> clients = switch (client) {
+            case "default", "tuned" -> List.of(client);
+            case "both" -> List.of("default", "tuned");
+            default -> throw new IllegalArgumentException("client non valido (default, tuned o both): " + client);
+        };
+
+        DevOpsStubServer.Options stubOptions = new DevOpsStubServer.Options();
+        stubOptions.latency = DurationStyle.detectAndParse(options.getOrDefault("latency", "20ms"));
+        stubOptions.jitter = DurationStyle.detectAndParse(options.getOrDefault("jitter", "10ms"));
+        stubOptions.throttleRate = Double.parseDouble(options.getOrDefault("throttle", "0"));
+        stubOptions.retryAfter = DurationStyle.detectAndParse(options.getOrDefault("retryAfter", "1s"));
+        stubOptions.workItems = Integer.parseInt(options.getOrDefault("workItems", "5000"));
+        stubOptions.wiqlResults = Integer.parseInt(options.getOrDefault("wiqlResults", "200"));
+
+        try (DevOpsStubServer stub = DevOpsStubServer.start(stubOptions)) {
+            DevOpsProperties props = new DevOpsProperties();
+            props.setHost(stub.host());
+            props.setOrganization("org");
+            props.setProject("Project");
+            props.setTeam("Project Team");
+            props.setPat("load-test");
+            // lo stub e' HTTP/1.1 in chiaro, senza ALPN
+            props.getHttp().setHttp2(false);
+            props.getHttp().setMaxConnections(Math.max(props.getHttp().getMaxConnections(), concurrency));
+            props.getThrottle().setMaxRequestsPerSecond(Double.parseDouble(options.getOrDefault("maxRps", "1000")));
+            props.getThrottle().setBurst(Math.max(props.getThrottle().getBurst(), concurrency));
+
+            DevOpsConfig config = new DevOpsConfig();
+            ConnectionProvider connections = config.devOpsConnectionProvider(props);
+            try {
+                Map<String, List<Scenario>> byClient = new LinkedHashMap<>();
+                for (String name : clients) {
+                    byClient.put(name, scenarios(config, props, "tuned".equals(name) ? connections : null, stub));
+                }
+                // per ogni tool i client uno dopo l'altro, cosi' le righe da confrontare sono adiacenti
+                List<Result> results = new ArrayList<>();
+                int count = byClient.get(clients.get(0)).size();
+                for (int i = 0; i < count; i++) {
+                    for (String name : clients) {
+                        Scenario scenario = byClient.get(name).get(i);
+                        if (only != null && !only.contains(scenario.tool())) continue;
+                        run(scenario, name, concurrency, warmup, stub);
+                        results.add(run(scenario, name, concurrency, duration, stub));
+                    }
+                }
+                report(results, concurrency, duration, stubOptions);
+            } finally {
+                connections.disposeLater().block();
+            }
+        }
+    }
+
+    /** connections null = client di default, senza il pool e le impostazioni HTTP di DevOpsConfig */
+    private static List<Scenario> scenarios(DevOpsConfig config, DevOpsProperties props,
+                                            ConnectionProvider connections, DevOpsStubServer stub) {
+        DevOpsMetrics metrics = new DevOpsMetrics();
+        DevOpsCoalescingFilter coalescing = config.devOpsCoalescingFilter(props);
+        DevOpsEtagCacheFilter etagCache = config.devOpsEtagCacheFilter(props);
+        DevOpsRetryFilter retry = config.devOpsRetryFilter(props);
+        DevOpsThrottleFilter throttle = config.devOpsThrottleFilter(props);
+        WebClient webClient = connections != null
+                ? config.devOpsWebClient(props, connections, coalescing, etagCache, retry, throttle, metrics)
+                : defaultWebClient(props, coalescing, etagCache, retry, throttle, metrics);
+        DevOpsOrganizations organizations = config.devOpsOrganizations(props, webClient,
+                config.devOpsPaginator(webClient, props), config.devOpsWorkItemBatch(webClient, props),
+                config.devOpsWorkItemBulk(webClient, props),
+                config.devOpsRepositoryCatalog(webClient, props), coalescing, etagCache, retry, metrics);
+
+        DevOpsGitTools git = new DevOpsGitTools(organizations, metrics,
+                config.devOpsRepoSnapshots(props), config.devOpsGitObjectCache(props));
+        DevOpsPipelineTools pipelines = new DevOpsPipelineTools(organizations, metrics);
+        DevOpsProjectTools projects = new DevOpsProjectTools(organizations, metrics);
+        DevOpsWorkItemTools workItems = new DevOpsWorkItemTools(organizations, metrics, Optional.empty());
+        DevOpsReleaseTools release = new DevOpsReleaseTools(organizations, metrics);
+
+        List<Integer> ids = stub.workItemIds();
+        String repoId = DevOpsPayloads.repositoryIds(1).get(0);
+        List<Scenario> scenarios = new ArrayList<>(List.of(
+                new Scenario("devops_list_repos", i -> git.listRepos(null)),
+                new Scenario("devops_list_pull_requests", i -> git.listPullRequests(repoId, "all", null, null, null)),
+                new Scenario("devops_list_pipeline_runs", i -> pipelines.listPipelineRuns(12, null, null, null)),
+                new Scenario("devops_list_projects", i -> projects.listProjects(null, null, null)),
+                new Scenario("devops_get_work_item", i -> workItems.getWorkItem(randomId(ids), "Relations", null)),
+                new Scenario("devops_query_work_items", i -> workItems.queryWorkItems(
+                        "SELECT [System.Id] FROM workitems WHERE [System.State] = 'Active'", null, null))));
+        // un rilascio piccolo, uno medio e uno grande: latenza e richieste a monte per dimensione
+        for (int size : RELEASE_SIZES) {
+            int count = Math.min(size, ids.size());
+            scenarios.add(new Scenario("devops_analyze_release_" + size,
+                    i -> release.analyzeRelease(randomIds(ids, count), null, null, null)));
+        }
+        return scenarios;
+    }
+
+    private static WebClient defaultWebClient(DevOpsProperties props, DevOpsCoalescingFilter coalescing,
+                                              DevOpsEtagCacheFilter etagCache, DevOpsRetryFilter retry,
+                                              DevOpsThrottleFilter throttle, DevOpsMetrics metrics) {
+        String credentials = Base64.getEncoder().encodeToString((":" + props.getPat()).getBytes());
+        return WebClient.builder()
+                .defaultHeader("Authorization", "Basic " + credentials)
+                .defaultHeader("Accept", "application/json")
+                .filter(coalescing)
+                .filter(etagCache)
+                .filter(retry)
+                .filter(throttle)
+                .filter(metrics.endpointFilter())
+                .exchangeStrategies(ExchangeStrategies.builder()
+                        .codecs(c -> c.defaultCodecs().maxInMemorySize(5 * 1024 * 1024))
+                        .build())
+                .build();
+    }
+
+    private static Result run(Scenario scenario, String client, int concurrency, Duration duration,
+                              DevOpsStubServer stub) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        LatencyRecorder latencies = new LatencyRecorder();
+        AtomicLong errors = new AtomicLong();
+        AtomicLong peakHeap = new AtomicLong();
+
+        System.gc();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), Math::max),
+                0, 50, TimeUnit.MILLISECONDS);
+        stub.resetCounts();
+        long allocatedBefore = threads.getTotalThreadAllocatedBytes();
+        long start = System.nanoTime();
+        try {
+            Flux.range(0, Integer.MAX_VALUE)
+                    .flatMap(i -> Mono.defer(() -> {
+                        long callStart = System.nanoTime();
+                        return scenario.call().apply(i)
+                                .doOnSuccess(r -> {
+                                    latencies.record(System.nanoTime() - callStart);
+                                    if (DevOpsMetrics.isErrorResult(r)) errors.incrementAndGet();
+                                })
+                                .doOnError(e -> {
+                                    latencies.record(System.nanoTime() - callStart);
+                                    errors.incrementAndGet();
+                                })
+                                .onErrorResume(e -> Mono.empty());
+                    }), concurrency)
+                    .take(duration)
+                    .blockLast();
+        } finally {
+            sampler.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long allocated = threads.getTotalThreadAllocatedBytes() - allocatedBefore;
+        long calls = latencies.count();
+
+        return new Result(scenario.tool(), client, calls, errors.get(), calls / seconds,
+                latencies.percentile(0.50) / 1e6, latencies.percentile(0.99) / 1e6,
+                stub.totalRequests(), calls > 0 ? allocated / calls : 0, peakHeap.get());
+    }
+
+    private static void report(List<Result> results, int concurrency, Duration duration,
+                               DevOpsStubServer.Options stub) {
+        System.out.printf("%nconcurrency=%d duration=%ds latency=%dms+%dms throttle=%.2f%n%n",
+                concurrency, duration.toSeconds(), stub.latency.toMillis(), stub.jitter.toMillis(), stub.throttleRate);
+        System.out.printf("%-31s %-8s %9s %7s %10s %9s %9s %10s %13s %12s %10s%n",
+                "tool", "client", "calls", "errors", "ops/s", "p50 ms", "p99 ms", "upstream", "upstream/call",
+                "alloc/call", "peak heap");
+        for (Result r : results) {
+            System.out.printf("%-31s %-8s %9d %7d %10.1f %9.2f %9.2f %10d %13.1f %12s %10s%n",
+                    r.tool(), r.client(), r.calls(), r.errors(), r.throughput(), r.p50Millis(), r.p99Millis(),
+                    r.upstreamRequests(), r.calls() > 0 ? r.upstreamRequests() / (double) r.calls() : 0,
+                    bytes(r.allocatedPerCall()), bytes(r.peakHeap()));
+        }
+    }
+
+    private static String bytes(long bytes) {
+        if (bytes >= 1 << 20) return String.format("%.1f MB", bytes / (double) (1 << 20));
+        if (bytes >= 1 << 10) return String.format("%.1f KB", bytes / (double) (1 << 10));
+        return bytes + " B";
+    }
+
+    private static int randomId(List<Integer> ids) {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    private static String randomIds(List<Integer> ids, int count) {
+        return ThreadLocalRandom.current().ints(count, 0, ids.size())
+                .mapToObj(i -> String.valueOf(ids.get(i)))
+                .collect(Collectors.joining(","));
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("Argomento non valido (atteso chiave=valore): " + arg);
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    /** Latenze in nanosecondi, percentili calcolati per ordinamento a fine scenario. */
+    private static final class LatencyRecorder {
+
+        private long[] values = new long[1 << 14];
+        private int size;
+
+        synchronized void record(long nanos) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = nanos;
+        }
+
+        synchronized long count() {
+            return size;
+        }
+
+        synchronized long percentile(double p) {
+            if (size == 0) return 0;
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted[Math.min(size - 1, (int) Math.ceil(p * size) - 1)];
+        }
+    }
+}
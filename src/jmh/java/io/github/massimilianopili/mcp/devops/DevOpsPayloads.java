@@ -0,0 +1,186 @@
+package io.github.massimilianopili.mcp.devops;
+
+import io.github.massimilianopili.mcp.devops.model.WorkItem;
+import io.github.massimilianopili.mcp.devops.model.WorkItemRelation;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Payload Azure DevOps sintetici, deterministici (seed fisso) e con dimensioni realistiche
+ * per benchmark e stub server: stessi campi e forma delle risposte reali, inclusi i campi
+ * non mappati dai record che il decoder deve saltare.
+ */
+public final class DevOpsPayloads {
+
+    public static final String PROJECT_ID = "6ce954b1-ce1f-45d1-b94d-e6bf2464ba2c";
+
+    private DevOpsPayloads() {}
+
+    public static String guid(Random random) {
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    /** GUID dei repository, stabili per indice */
+    public static List<String> repositoryIds(int count) {
+        Random random = new Random(7);
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) ids.add(guid(random));
+        return ids;
+    }
+
+    /** GET _apis/git/repositories */
+    public static String repositories(int count) {
+        List<String> ids = repositoryIds(count);
+        StringBuilder json = new StringBuilder(count * 900).append("{\"count\":").append(count).append(",\"value\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) json.append(',');
+            String id = ids.get(i);
+            json.append("{\"id\":\"").append(id).append("\",\"name\":\"service-").append(i)
+                    .append("\",\"url\":\"https://dev.azure.com/org/").append(PROJECT_ID)
+                    .append("/_apis/git/repositories/").append(id)
+                    .append("\",\"project\":{\"id\":\"").append(PROJECT_ID)
+                    .append("\",\"name\":\"Project\",\"description\":\"Synthetic project\",\"url\":\"https://dev.azure.com/org/_apis/projects/")
+                    .append(PROJECT_ID).append("\",\"state\":\"wellFormed\",\"revision\":411,\"visibility\":\"private\",")
+                    .append("\"lastUpdateTime\":\"2024-05-02T09:14:11.12Z\"},")
+                    .append("\"defaultBranch\":\"refs/heads/main\",\"size\":").append(100_000L + i * 7919L)
+                    .append(",\"remoteUrl\":\"https://org@dev.azure.com/org/Project/_git/service-").append(i)
+                    .append("\",\"sshUrl\":\"git@ssh.dev.azure.com:v3/org/Project/service-").append(i)
+                    .append("\",\"webUrl\":\"https://dev.azure.com/org/Project/_git/service-").append(i)
+                    .append("\",\"isDisabled\":false,\"isInMaintenance\":false}");
+        }
+        return json.append("]}").toString();
+    }
+
+    /** GET _apis/pipelines/{id}/runs */
+    public static String pipelineRuns(int count) {
+        StringBuilder json = new StringBuilder(count * 700).append("{\"count\":").append(count).append(",\"value\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) json.append(',');
+            int id = 10_000 + i;
+            json.append("{\"_links\":{\"self\":{\"href\":\"https://dev.azure.com/org/Project/_apis/pipelines/12/runs/")
+                    .append(id).append("\"},\"web\":{\"href\":\"https://dev.azure.com/org/Project/_build/results?buildId=")
+                    .append(id).append("\"},\"pipeline.web\":{\"href\":\"https://dev.azure.com/org/Project/_build/definition?definitionId=12\"}},")
+                    .append("\"pipeline\":{\"url\":\"https://dev.azure.com/org/Project/_apis/pipelines/12?revision=3\",")
+                    .append("\"id\":12,\"revision\":3,\"name\":\"service-ci\",\"folder\":\"\\\\\"},")
+                    .append("\"state\":\"completed\",\"result\":\"").append(i % 7 == 0 ? "failed" : "succeeded")
+                    .append("\",\"createdDate\":\"2024-06-01T10:").append(String.format("%02d", i % 60))
+                    .append(":00.0000000Z\",\"finishedDate\":\"2024-06-01T11:").append(String.format("%02d", i % 60))
+                    .append(":00.0000000Z\",\"url\":\"https://dev.azure.com/org/Project/_apis/pipelines/12/runs/").append(id)
+                    .append("\",\"id\":").append(id).append(",\"name\":\"20240601.").append(i).append("\"}");
+        }
+        return json.append("]}").toString();
+    }
+
+    /** GET _apis/git/repositories/{id}/pullrequests */
+    public static String pullRequests(int count, String repoId) {
+        StringBuilder json = new StringBuilder(count * 1200).append("{\"count\":").append(count).append(",\"value\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) json.append(',');
+            int id = 500 + i;
+            json.append("{\"repository\":{\"id\":\"").append(repoId).append("\",\"name\":\"service-0\",\"url\":\"https://dev.azure.com/org/")
+                    .append(PROJECT_ID).append("/_apis/git/repositories/").append(repoId).append("\",\"project\":{\"id\":\"")
+                    .append(PROJECT_ID).append("\",\"name\":\"Project\",\"state\":\"unchanged\",\"visibility\":\"unchanged\"}},")
+                    .append("\"pullRequestId\":").append(id).append(",\"codeReviewId\":").append(id)
+                    .append(",\"status\":\"").append(i % 4 == 0 ? "completed" : "active")
+                    .append("\",\"createdBy\":{\"displayName\":\"Dev ").append(i % 17)
+                    .append("\",\"url\":\"https://spsprodweu5.vssps.visualstudio.com/_apis/Identities/x\",\"id\":\"")
+                    .append(new UUID(i % 17, 17).toString()).append("\",\"uniqueName\":\"dev").append(i % 17)
+                    .append("@example.com\",\"imageUrl\":\"https://dev.azure.com/org/_api/_common/identityImage?id=x\",\"descriptor\":\"aad.x\"},")
+                    .append("\"creationDate\":\"2024-06-0").append(1 + i % 9).append("T08:00:00.000Z\",")
+                    .append("\"title\":\"Change ").append(id).append("\",\"description\":\"Synthetic pull request body with some text\",")
+                    .append("\"sourceRefName\":\"refs/heads/feature/").append(id).append("\",\"targetRefName\":\"refs/heads/main\",")
+                    .append("\"mergeStatus\":\"succeeded\",\"isDraft\":").append(i % 11 == 0)
+                    .append(",\"mergeId\":\"").append(new UUID(id, 1)).append("\",\"reviewers\":[],")
+                    .append("\"url\":\"https://dev.azure.com/org/").append(PROJECT_ID).append("/_apis/git/repositories/")
+                    .append(repoId).append("/pullRequests/").append(id).append("\",\"supportsIterations\":true}");
+        }
+        return json.append("]}").toString();
+    }
+
+    /** GET _apis/projects */
+    public static String projects(int count) {
+        Random random = new Random(11);
+        StringBuilder json = new StringBuilder(count * 300).append("{\"count\":").append(count).append(",\"value\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) json.append(',');
+            String id = guid(random);
+            json.append("{\"id\":\"").append(id).append("\",\"name\":\"Project ").append(i)
+                    .append("\",\"description\":\"Synthetic project ").append(i)
+                    .append("\",\"url\":\"https://dev.azure.com/org/_apis/projects/").append(id)
+                    .append("\",\"state\":\"wellFormed\",\"revision\":").append(100 + i)
+                    .append(",\"visibility\":\"private\",\"lastUpdateTime\":\"2024-01-01T00:00:00.000Z\"}");
+        }
+        return json.append("]}").toString();
+    }
+
+    /** Work item con relazioni: ogni item ha linksPerItem ArtifactLink Git (branch, commit, PR) e un parent. */
+    public static List<WorkItem> workItemsWithRelations(int count, int repositories, int linksPerItem) {
+        List<String> repoIds = repositoryIds(repositories);
+        Random random = new Random(42);
+        List<WorkItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int id = 1000 + i;
+            List<WorkItemRelation> relations = new ArrayList<>(linksPerItem + 1);
+            relations.add(new WorkItemRelation("System.LinkTypes.Hierarchy-Reverse",
+                    "https://dev.azure.com/org/_apis/wit/workItems/" + (900 + i % 50), Map.of("isLocked", false)));
+            // un item su dieci senza link Git, come i task puramente organizzativi
+            if (i % 10 != 9) {
+                for (int l = 0; l < linksPerItem; l++) {
+                    String repoId = repoIds.get(random.nextInt(repoIds.size()));
+                    relations.add(new WorkItemRelation("ArtifactLink",
+                            gitArtifactUrl(l % 3, repoId, i, random), Map.of("name", "Branch")));
+                }
+            }
+            Map<String, Object> fields = new LinkedHashMap<>();
+            fields.put("System.Title", "Synthetic work item " + id);
+            fields.put("System.State", "Active");
+            fields.put("System.WorkItemType", i % 3 == 0 ? "Bug" : "Task");
+            items.add(new WorkItem(id, 3, fields, relations, "https://dev.azure.com/org/_apis/wit/workItems/" + id));
+        }
+        return items;
+    }
+
+    /** vstfs:///Git/{Ref|Commit|PullRequestId}/{progetto}%2F{repository}%2F{ref}, come negli ArtifactLink reali */
+    public static String gitArtifactUrl(int kind, String repoId, int seq, Random random) {
+        return switch (kind) {
+            case 0 -> "vstfs:///Git/Ref/" + PROJECT_ID + "%2F" + repoId + "%2FGBfeature%2F" + seq;
+            case 1 -> "vstfs:///Git/Commit/" + PROJECT_ID + "%2F" + repoId + "%2F"
+                    + HexFormat.of().formatHex(randomBytes(random, 20));
+            default -> "vstfs:///Git/PullRequestId/" + PROJECT_ID + "%2F" + repoId + "%2F" + (500 + seq);
+        };
+    }
+
+    /** JSON {"count": N, "value": [...]} dei work item, come la risposta di workitemsbatch */
+    public static String workItemsBatch(List<WorkItem> items) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("count", items.size());
+        body.put("value", items);
+        try {
+            return DevOpsJsonStream.MAPPER.writeValueAsString(body);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Body diviso in chunk come arriverebbe dal socket */
+    public static Flux<DataBuffer> chunked(byte[] body, int chunkSize) {
+        return Flux.range(0, (body.length + chunkSize - 1) / chunkSize)
+                .map(i -> DefaultDataBufferFactory.sharedInstance.wrap(
+                        ByteBuffer.wrap(body, i * chunkSize, Math.min(chunkSize, body.length - i * chunkSize)).slice()));
+    }
+
+    public static byte[] utf8(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
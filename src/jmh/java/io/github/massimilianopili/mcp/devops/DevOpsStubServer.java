@@ -0,0 +1,269 @@
+package io.github.massimilianopili.mcp.devops;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.github.massimilianopili.mcp.devops.model.WorkItem;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stub locale delle API Azure DevOps usate dai tool, per test di carico offline
+ * (mcp.devops.host=http://localhost:{porta}). Payload da DevOpsPayloads, paginazione reale
+ * ($top/$skip e x-ms-continuationtoken), latenza e 429 iniettabili, conteggio delle richieste
+ * per template di endpoint.
+ */
+public final class DevOpsStubServer implements AutoCloseable {
+
+    /** Dimensioni dei dati e comportamento del server */
+    public static final class Options {
+        public Duration latency = Duration.ofMillis(20);
+        public Duration jitter = Duration.ofMillis(10);
+        /** Frazione di richieste rifiutate con 429 + Retry-After */
+        public double throttleRate = 0;
+        public Duration retryAfter = Duration.ofSeconds(1);
+        public int repositories = 200;
+        public int pullRequests = 500;
+        public int pipelineRuns = 2000;
+        public int projects = 300;
+        public int workItems = 5000;
+        public int linksPerWorkItem = 3;
+        /** ID restituiti da una query WIQL senza $top */
+        public int wiqlResults = 200;
+    }
+
+    private static final Pattern WORK_ITEM = Pattern.compile(".*/_apis/wit/workitems/(\\d+)$");
+    private static final Pattern PULL_REQUEST = Pattern.compile(".*/pullrequests/(\\d+)$");
+    private static final Pattern TOP = Pattern.compile("[?&](?:searchCriteria\\.)?\\$top=(\\d+)");
+    private static final Pattern SKIP = Pattern.compile("[?&](?:searchCriteria\\.)?\\$skip=(\\d+)");
+    private static final Pattern TOKEN = Pattern.compile("[?&]continuationToken=(\\d+)");
+
+    private record Reply(int status, String json, String continuationToken) {
+
+        static Reply ok(String json) {
+            return new Reply(200, json, null);
+        }
+    }
+
+    private final Options options;
+    private final DisposableServer server;
+    private final ConcurrentHashMap<String, LongAdder> requests = new ConcurrentHashMap<>();
+
+    private final String repositoriesJson;
+    private final List<Object> pullRequests;
+    private final List<Object> pipelineRuns;
+    private final List<Object> projects;
+    private final Map<Integer, WorkItem> workItems = new LinkedHashMap<>();
+
+    private DevOpsStubServer(Options options) {
+        this.options = options;
+        this.repositoriesJson = DevOpsPayloads.repositories(options.repositories);
+        String repoId = DevOpsPayloads.repositoryIds(1).get(0);
+        this.pullRequests = values(DevOpsPayloads.pullRequests(options.pullRequests, repoId));
+        this.pipelineRuns = values(DevOpsPayloads.pipelineRuns(options.pipelineRuns));
+        this.projects = values(DevOpsPayloads.projects(options.projects));
+        for (WorkItem wi : DevOpsPayloads.workItemsWithRelations(
+                options.workItems, options.repositories, options.linksPerWorkItem)) {
+            workItems.put(wi.id(), wi);
+        }
+        this.server = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .handle(this::handle)
+                .bindNow();
+    }
+
+    public static DevOpsStubServer start(Options options) {
+        return new DevOpsStubServer(options);
+    }
+
+    /** Valore per mcp.devops.host */
+    public String host() {
+        return "http://localhost:" + server.port();
+    }
+
+    /** ID dei work item generati, nell'ordine di creazione */
+    public List<Integer> workItemIds() {
+        return List.copyOf(workItems.keySet());
+    }
+
+    /** Richieste ricevute per "METODO template", es. "POST /_apis/wit/workitemsbatch" */
+    public Map<String, Long> requestCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        requests.forEach((k, v) -> counts.put(k, v.sum()));
+        return counts;
+    }
+
+    public long totalRequests() {
+        return requests.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    public void resetCounts() {
+        requests.clear();
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+
+    private Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+        String uri = request.uri();
+        String path = URI.create(uri).getPath();
+        requests.computeIfAbsent(request.method().name() + " " + DevOpsMetrics.endpointTemplate(URI.create(uri)),
+                k -> new LongAdder()).increment();
+
+        Mono<Reply> reply;
+        if (options.throttleRate > 0 && ThreadLocalRandom.current().nextDouble() < options.throttleRate) {
+            reply = Mono.just(new Reply(429, "{\"message\":\"TF400733: request throttled\"}", null));
+        } else if ("POST".equals(request.method().name())) {
+            reply = request.receive().aggregate().asString().defaultIfEmpty("{}").map(body -> post(path, uri, body));
+        } else {
+            reply = Mono.fromSupplier(() -> get(path, uri));
+        }
+
+        return Mono.delay(latency())
+                .then(reply)
+                .flatMap(r -> {
+                    response.status(r.status()).header("Content-Type", "application/json; charset=utf-8");
+                    if (r.status() == 429) {
+                        response.header("Retry-After", String.valueOf(options.retryAfter.toSeconds()))
+                                .header("X-RateLimit-Resource", "ATCPU")
+                                .header("X-RateLimit-Remaining", "0")
+                                .header("X-RateLimit-Limit", "200");
+                    }
+                    if (r.continuationToken() != null) {
+                        response.header(DevOpsPaginator.CONTINUATION_HEADER, r.continuationToken());
+                    }
+                    return response.sendString(Mono.just(r.json())).then();
+                });
+    }
+
+    private Reply get(String path, String uri) {
+        Matcher workItem = WORK_ITEM.matcher(path);
+        if (workItem.matches()) {
+            WorkItem wi = workItems.get(Integer.parseInt(workItem.group(1)));
+            return wi == null ? new Reply(404, "{\"message\":\"TF401232: Work item does not exist\"}", null)
+                    : Reply.ok(json(wi));
+        }
+        Matcher pullRequest = PULL_REQUEST.matcher(path);
+        if (pullRequest.matches()) {
+            int index = Integer.parseInt(pullRequest.group(1)) - 500;
+            return index < 0 || index >= pullRequests.size()
+                    ? new Reply(404, "{\"message\":\"TF401180: pull request not found\"}", null)
+                    : Reply.ok(json(pullRequests.get(index)));
+        }
+        if (path.endsWith("/_apis/git/repositories")) return Reply.ok(repositoriesJson);
+        if (path.endsWith("/pullrequests")) return skipPage(pullRequests, uri);
+        if (path.matches(".*/_apis/pipelines/\\d+/runs")) return continuationPage(pipelineRuns, uri);
+        if (path.endsWith("/_apis/projects")) return continuationPage(projects, uri);
+        return Reply.ok("{\"count\":0,\"value\":[]}");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Reply post(String path, String uri, String body) {
+        Map<String, Object> request = read(body);
+        if (path.endsWith("/_apis/wit/wiql")) {
+            int top = param(TOP, uri, options.wiqlResults);
+            List<Map<String, Object>> refs = workItems.keySet().stream().limit(top)
+                    .map(id -> Map.<String, Object>of("id", id, "url", "https://dev.azure.com/org/_apis/wit/workItems/" + id))
+                    .toList();
+            return Reply.ok(json(Map.of("queryType", "flat", "asOf", "2024-06-01T00:00:00Z", "workItems", refs)));
+        }
+        if (path.endsWith("/_apis/wit/workitemsbatch")) {
+            List<Integer> ids = (List<Integer>) request.getOrDefault("ids", List.of());
+            if (ids.size() > DevOpsWorkItemBatch.MAX_BATCH_SIZE) {
+                return new Reply(400, "{\"message\":\"VS403474: more than 200 ids\"}", null);
+            }
+            List<WorkItem> found = ids.stream().map(workItems::get).filter(Objects::nonNull).toList();
+            return Reply.ok(DevOpsPayloads.workItemsBatch(found));
+        }
+        if (path.endsWith("/commitsbatch")) {
+            List<Map<String, Object>> commits = new ArrayList<>();
+            for (String id : (List<String>) request.getOrDefault("ids", List.of())) {
+                Map<String, Object> author = Map.of("name", "Dev " + Math.floorMod(id.hashCode(), 17),
+                        "email", "dev@example.com", "date", "2024-06-01T08:00:00Z");
+                commits.add(Map.of("commitId", id, "comment", "Synthetic commit " + id.substring(0, Math.min(8, id.length())),
+                        "author", author, "committer", author));
+            }
+            return Reply.ok(json(Map.of("count", commits.size(), "value", commits)));
+        }
+        if (path.endsWith("/pullrequestquery")) {
+            // un commit su due risulta introdotto da una PR, scelta in modo deterministico
+            List<Map<String, Object>> results = new ArrayList<>();
+            for (Map<String, Object> query : (List<Map<String, Object>>) request.getOrDefault("queries", List.of())) {
+                Map<String, Object> byCommit = new LinkedHashMap<>();
+                for (String id : (List<String>) query.getOrDefault("items", List.of())) {
+                    int hash = Math.floorMod(id.hashCode(), 2 * pullRequests.size());
+                    if (hash < pullRequests.size()) byCommit.put(id, List.of(pullRequests.get(hash)));
+                }
+                results.add(byCommit);
+            }
+            return Reply.ok(json(Map.of("queries", request.getOrDefault("queries", List.of()), "results", results)));
+        }
+        return Reply.ok("{}");
+    }
+
+    private Reply skipPage(List<Object> all, String uri) {
+        int skip = param(SKIP, uri, 0);
+        int top = param(TOP, uri, 100);
+        return Reply.ok(page(all, skip, top));
+    }
+
+    private Reply continuationPage(List<Object> all, String uri) {
+        int from = param(TOKEN, uri, 0);
+        int top = param(TOP, uri, 100);
+        String next = from + top < all.size() ? String.valueOf(from + top) : null;
+        return new Reply(200, page(all, from, top), next);
+    }
+
+    private static String page(List<Object> all, int from, int top) {
+        List<Object> slice = all.subList(Math.min(from, all.size()), Math.min(from + top, all.size()));
+        return json(Map.of("count", slice.size(), "value", slice));
+    }
+
+    private Duration latency() {
+        long jitter = options.jitter.toMillis();
+        return options.latency.plusMillis(jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+    }
+
+    private static int param(Pattern pattern, String uri, int defaultValue) {
+        Matcher m = pattern.matcher(uri);
+        return m.find() ? Integer.parseInt(m.group(1)) : defaultValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> values(String json) {
+        return (List<Object>) read(json).get("value");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> read(String json) {
+        try {
+            return DevOpsJsonStream.MAPPER.readValue(json, Map.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String json(Object value) {
+        try {
+            return DevOpsJsonStream.MAPPER.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.massimilianopili.mcp.devops;
+
+import io.github.massimilianopili.mcp.devops.model.GitRepository;
+import io.github.massimilianopili.mcp.devops.model.PipelineRun;
+import io.github.massimilianopili.mcp.devops.model.WorkItem;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodifica delle risposte lista ({"count": N, "value": [...]}) con array "value" grandi:
+ * record tipizzati e proiezione su mappe via DevOpsJsonStream, contro l'albero Map completo
+ * proiettato con le lambda usate in origine da DevOpsGitTools/DevOpsPipelineTools.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListDecodingBenchmark {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    @Param({"repositories", "pipelineRuns", "workItems"})
+    public String payload;
+
+    @Param({"100", "1000", "10000"})
+    public int items;
+
+    private byte[] body;
+    private Class<?> type;
+    private String[] fields;
+
+    @Setup
+    public void setup() {
+        if ("repositories".equals(payload)) {
+            body = DevOpsPayloads.utf8(DevOpsPayloads.repositories(items));
+            type = GitRepository.class;
+            fields = new String[]{"id", "name", "defaultBranch", "webUrl", "size"};
+        } else if ("pipelineRuns".equals(payload)) {
+            body = DevOpsPayloads.utf8(DevOpsPayloads.pipelineRuns(items));
+            type = PipelineRun.class;
+            fields = new String[]{"id", "name", "state", "result", "createdDate", "finishedDate"};
+        } else {
+            body = DevOpsPayloads.utf8(DevOpsPayloads.workItemsBatch(
+                    DevOpsPayloads.workItemsWithRelations(items, 40, 3)));
+            type = WorkItem.class;
+            fields = new String[]{"id", "rev", "fields", "relations"};
+        }
+    }
+
+    @Benchmark
+    public List<?> recordStream() {
+        return DevOpsJsonStream.values(DevOpsPayloads.chunked(body, CHUNK_SIZE), type).collectList().block();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> projectedMapStream() {
+        return DevOpsJsonStream.values(DevOpsPayloads.chunked(body, CHUNK_SIZE), fields).collectList().block();
+    }
+
+    /** bodyToMono(Map.class) + stream().map(...) come prima del decoder in streaming */
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> mapTreeProjection() throws IOException {
+        Map<String, Object> response = DevOpsJsonStream.MAPPER.readValue(body, Map.class);
+        List<Map<String, Object>> values = (List<Map<String, Object>>) response.get("value");
+        return values.stream().map(r -> {
+            Map<String, Object> result = new LinkedHashMap<>();
+            for (String field : fields) {
+                result.put(field, r.getOrDefault(field, ""));
+            }
+            return result;
+        }).toList();
+    }
+}
@@ -0,0 +1,133 @@
+package io.github.massimilianopili.mcp.devops;
+
+import io.github.massimilianopili.mcp.devops.model.WorkItem;
+import io.github.massimilianopili.mcp.devops.model.WorkItemRelation;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parte CPU di devops_analyze_release: raggruppamento dei work item per repository
+ * e parsing degli URL vstfs degli ArtifactLink, con il parser a indici di DevOpsReleaseAnalysis
+ * contro l'approccio originale (URLDecoder + split, mappe annidate di Set boxed).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReleaseAnalysisBenchmark {
+
+    @Param({"50", "200", "2000"})
+    public int workItems;
+
+    private List<Integer> ids;
+    private List<WorkItem> items;
+    private Map<String, String> repoIdToName;
+    private String[] artifactUrls;
+
+    @Setup
+    public void setup() {
+        items = DevOpsPayloads.workItemsWithRelations(workItems, 40, 3);
+        ids = items.stream().map(WorkItem::id).toList();
+        repoIdToName = new HashMap<>();
+        List<String> repoIds = DevOpsPayloads.repositoryIds(40);
+        for (int i = 0; i < repoIds.size(); i++) repoIdToName.put(repoIds.get(i), "service-" + i);
+        artifactUrls = items.stream()
+                .flatMap(wi -> wi.relationsOrEmpty().stream())
+                .map(WorkItemRelation::url)
+                .toArray(String[]::new);
+    }
+
+    @Benchmark
+    public Map<String, Object> buildReleaseResult() {
+        return DevOpsReleaseTools.buildReleaseResult(ids, items, repoIdToName);
+    }
+
+    @Benchmark
+    public Map<String, Object> buildReleaseResultDecodeSplit() {
+        return legacyBuildReleaseResult(ids, items, repoIdToName);
+    }
+
+    /** Tutti gli URL delle relazioni, inclusi quelli non Git (gerarchia) scartati subito */
+    @Benchmark
+    public void parseGitArtifactUrl(Blackhole blackhole) {
+        int[] bounds = new int[6];
+        for (String url : artifactUrls) {
+            blackhole.consume(DevOpsReleaseAnalysis.parse(url, bounds));
+            blackhole.consume(bounds[DevOpsReleaseAnalysis.REPO_START]);
+        }
+    }
+
+    @Benchmark
+    public void parseGitArtifactUrlDecodeSplit(Blackhole blackhole) {
+        for (String url : artifactUrls) {
+            blackhole.consume(legacyParse(url));
+        }
+    }
+
+    // --- Implementazione originale, come riferimento ---
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> legacyBuildReleaseResult(
+            List<Integer> ids, List<WorkItem> workItems, Map<String, String> repoIdToName) {
+        Map<String, Map<String, Object>> repoMap = new LinkedHashMap<>();
+        List<Integer> workItemsWithoutLinks = new ArrayList<>();
+        for (WorkItem wi : workItems) {
+            boolean hasGitLink = false;
+            for (WorkItemRelation rel : wi.relationsOrEmpty()) {
+                if (!"ArtifactLink".equals(rel.rel())) continue;
+                String[] artifact = legacyParse(rel.url());
+                if (artifact == null) continue;
+                hasGitLink = true;
+                String repoId = artifact[1];
+                Map<String, Object> entry = repoMap.computeIfAbsent(repoId, k -> {
+                    Map<String, Object> e = new LinkedHashMap<>();
+                    e.put("repoName", repoIdToName.getOrDefault(repoId, repoId));
+                    e.put("repoId", repoId);
+                    e.put("branches", new LinkedHashSet<String>());
+                    e.put("workItemIds", new LinkedHashSet<Integer>());
+                    e.put("artifactTypes", new LinkedHashSet<String>());
+                    return e;
+                });
+                ((Set<Integer>) entry.get("workItemIds")).add(wi.id());
+                ((Set<String>) entry.get("artifactTypes")).add(artifact[0]);
+                if (!artifact[2].isEmpty()) ((Set<String>) entry.get("branches")).add(artifact[2]);
+            }
+            if (!hasGitLink) workItemsWithoutLinks.add(wi.id());
+        }
+        List<Map<String, Object>> repositories = new ArrayList<>();
+        for (Map<String, Object> entry : repoMap.values()) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("repoName", entry.get("repoName"));
+            result.put("repoId", entry.get("repoId"));
+            result.put("branches", new ArrayList<>((Set<String>) entry.get("branches")));
+            result.put("workItemIds", new ArrayList<>((Set<Integer>) entry.get("workItemIds")));
+            result.put("artifactTypes", new ArrayList<>((Set<String>) entry.get("artifactTypes")));
+            repositories.add(result);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("totalWorkItems", ids.size());
+        result.put("totalRepositories", repositories.size());
+        result.put("repositories", repositories);
+        if (!workItemsWithoutLinks.isEmpty()) result.put("workItemsWithoutLinks", workItemsWithoutLinks);
+        return result;
+    }
+
+    /** {tipo, repository, ref} */
+    private static String[] legacyParse(String url) {
+        if (url == null || !url.contains("vstfs:///Git/")) return null;
+        String decoded = URLDecoder.decode(url, StandardCharsets.UTF_8);
+        String gitPart = decoded.substring(decoded.indexOf("vstfs:///Git/") + "vstfs:///Git/".length());
+        String[] parts = gitPart.split("/", 4);
+        if (parts.length < 3) return null;
+        String ref = parts.length > 3 ? parts[3] : "";
+        if (ref.startsWith("refs/heads/")) ref = ref.substring("refs/heads/".length());
+        return new String[]{parts[0], parts[2], ref};
+    }
+}
@@ -0,0 +1,52 @@
+package io.github.massimilianopili.mcp.devops;
+
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import reactor.core.publisher.Flux;
+
+/**
+ * Risposta HTTP tenuta in memoria (status, header, body) e riproducibile piu' volte come ClientResponse
+ * indipendente, per i filtri che servono lo stesso contenuto a piu' chiamanti (cache ETag, coalescing).
+ */
+record DevOpsBufferedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body) {
+
+    DevOpsBufferedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body) {
+        this.status = status;
+        this.headers = HttpHeaders.readOnlyHttpHeaders(replayable(headers));
+        this.body = body;
+    }
+
+    /** Nuova ClientResponse sul body in memoria; ogni sottoscrizione rilegge gli stessi byte. */
+    ClientResponse toResponse(HttpStatusCode status, ExchangeStrategies strategies, HttpRequest request) {
+        return ClientResponse.create(status, strategies)
+                .headers(h -> {
+                    h.addAll(headers);
+                    h.setContentLength(body.length);
+                })
+                .body(Flux.defer(() -> Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(body))))
+                .request(request)
+                .build();
+    }
+
+    ClientResponse toResponse(ExchangeStrategies strategies, HttpRequest request) {
+        return toResponse(status, strategies, request);
+    }
+
+    /** Header di trasporto esclusi: il body in memoria e' gia' decompresso e di lunghezza nota. */
+    private static HttpHeaders replayable(HttpHeaders source) {
+        HttpHeaders copy = new HttpHeaders();
+        source.forEach((name, values) -> {
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)
+                    && !HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)
+                    && !HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(name)
+                    && !HttpHeaders.CONNECTION.equalsIgnoreCase(name)) {
+                copy.addAll(name, values);
+            }
+        });
+        return copy;
+    }
+}
@@ -2,11 +2,9 @@ package io.github.massimilianopili.mcp.devops;
 
 import io.github.massimilianopili.ai.reactive.annotation.ReactiveTool;
 import org.springframework.ai.tool.annotation.ToolParam;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 import java.util.*;
@@ -15,26 +13,29 @@ import java.util.*;
 @ConditionalOnProperty(name = "mcp.devops.pat")
 public class DevOpsClassificationTools {
 
-    private final WebClient webClient;
-    private final DevOpsProperties props;
+    private final DevOpsOrganizations organizations;
+    private final DevOpsMetrics metrics;
 
     public DevOpsClassificationTools(
-            @Qualifier("devOpsWebClient") WebClient webClient,
-            DevOpsProperties props) {
-        this.webClient = webClient;
-        this.props = props;
+            DevOpsOrganizations organizations,
+            DevOpsMetrics metrics) {
+        this.organizations = organizations;
+        this.metrics = metrics;
     }
 
     @ReactiveTool(name = "devops_list_area_paths",
           description = "Lists area paths (area classification) of the Azure DevOps project with hierarchical structure")
     @SuppressWarnings("unchecked")
-    public Mono<Map<String, Object>> listAreaPaths() {
-        return webClient.get()
-                .uri(props.getBaseUrl() + "/_apis/wit/classificationnodes/areas?$depth=10&api-version=" + props.getApiVersion())
-                .retrieve()
-                .bodyToMono(Map.class)
+    public Mono<Map<String, Object>> listAreaPaths(
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMap(org -> org.webClient().get()
+                        .uri(org.props().getBaseUrl() + "/_apis/wit/classificationnodes/areas?$depth=10&api-version=" + org.props().getApiVersion())
+                        .retrieve()
+                        .bodyToMono(Map.class))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore lista area paths: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore lista area paths: " + e.getMessage())))
+                .transform(metrics.tool("devops_list_area_paths"));
     }
 
     @ReactiveTool(name = "devops_create_area_path",
@@ -42,46 +43,49 @@ public class DevOpsClassificationTools {
     @SuppressWarnings("unchecked")
     public Mono<Map<String, Object>> createAreaPath(
             @ToolParam(description = "Parent path where to create the node, e.g. '' for root or 'ParentArea' for sub-area") String parentPath,
-            @ToolParam(description = "Name of the new area node") String name) {
-        String endpoint = props.getBaseUrl() + "/_apis/wit/classificationnodes/areas";
-        if (parentPath != null && !parentPath.isBlank()) {
-            endpoint += "/" + parentPath;
-        }
-        endpoint += "?api-version=" + props.getApiVersion();
-
-        return webClient.post()
-                .uri(endpoint)
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(Map.of("name", name))
-                .retrieve()
-                .bodyToMono(Map.class)
+            @ToolParam(description = "Name of the new area node") String name,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMap(org -> org.webClient().post()
+                        .uri(classificationEndpoint(org.props(), "areas", parentPath))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(Map.of("name", name))
+                        .retrieve()
+                        .bodyToMono(Map.class))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore creazione area path: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore creazione area path: " + e.getMessage())))
+                .transform(metrics.tool("devops_create_area_path"));
     }
 
     @ReactiveTool(name = "devops_delete_area_path",
           description = "Deletes an area path from the Azure DevOps project. Associated work items are reclassified to root.")
     public Mono<Map<String, Object>> deleteAreaPath(
-            @ToolParam(description = "Area node path to delete, e.g. 'Area1' or 'Area1/SubArea'") String path) {
-        return webClient.delete()
-                .uri(props.getBaseUrl() + "/_apis/wit/classificationnodes/areas/" + path
-                        + "?$reclassifyId=1&api-version=" + props.getApiVersion())
-                .retrieve()
-                .toBodilessEntity()
+            @ToolParam(description = "Area node path to delete, e.g. 'Area1' or 'Area1/SubArea'") String path,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMap(org -> org.webClient().delete()
+                        .uri(org.props().getBaseUrl() + "/_apis/wit/classificationnodes/areas/" + path
+                                + "?$reclassifyId=1&api-version=" + org.props().getApiVersion())
+                        .retrieve()
+                        .toBodilessEntity())
                 .map(r -> Map.<String, Object>of("status", r.getStatusCode().value(), "deleted", true))
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore eliminazione area path: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore eliminazione area path: " + e.getMessage())))
+                .transform(metrics.tool("devops_delete_area_path"));
     }
 
     @ReactiveTool(name = "devops_list_iteration_paths",
           description = "Lists iteration paths (sprints/iterations) of the Azure DevOps project with hierarchical structure")
     @SuppressWarnings("unchecked")
-    public Mono<Map<String, Object>> listIterationPaths() {
-        return webClient.get()
-                .uri(props.getBaseUrl() + "/_apis/wit/classificationnodes/iterations?$depth=10&api-version=" + props.getApiVersion())
-                .retrieve()
-                .bodyToMono(Map.class)
+    public Mono<Map<String, Object>> listIterationPaths(
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMap(org -> org.webClient().get()
+                        .uri(org.props().getBaseUrl() + "/_apis/wit/classificationnodes/iterations?$depth=10&api-version=" + org.props().getApiVersion())
+                        .retrieve()
+                        .bodyToMono(Map.class))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore lista iteration paths: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore lista iteration paths: " + e.getMessage())))
+                .transform(metrics.tool("devops_list_iteration_paths"));
     }
 
     @ReactiveTool(name = "devops_create_iteration_path",
@@ -91,13 +95,8 @@ public class DevOpsClassificationTools {
             @ToolParam(description = "Parent path where to create the node, e.g. '' for root or 'Release1'") String parentPath,
             @ToolParam(description = "Name of the new iteration") String name,
             @ToolParam(description = "Start date in ISO 8601 format, e.g. 2026-01-01T00:00:00Z", required = false) String startDate,
-            @ToolParam(description = "Finish date in ISO 8601 format, e.g. 2026-01-14T00:00:00Z", required = false) String finishDate) {
-
-        String endpoint = props.getBaseUrl() + "/_apis/wit/classificationnodes/iterations";
-        if (parentPath != null && !parentPath.isBlank()) {
-            endpoint += "/" + parentPath;
-        }
-        endpoint += "?api-version=" + props.getApiVersion();
+            @ToolParam(description = "Finish date in ISO 8601 format, e.g. 2026-01-14T00:00:00Z", required = false) String finishDate,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
 
         Map<String, Object> body = new LinkedHashMap<>();
         body.put("name", name);
@@ -110,14 +109,16 @@ public class DevOpsClassificationTools {
             body.put("attributes", attributes);
         }
 
-        return webClient.post()
-                .uri(endpoint)
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(body)
-                .retrieve()
-                .bodyToMono(Map.class)
+        return organizations.resolve(organization)
+                .flatMap(org -> org.webClient().post()
+                        .uri(classificationEndpoint(org.props(), "iterations", parentPath))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(body)
+                        .retrieve()
+                        .bodyToMono(Map.class))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore creazione iteration path: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore creazione iteration path: " + e.getMessage())))
+                .transform(metrics.tool("devops_create_iteration_path"));
     }
 
     @ReactiveTool(name = "devops_update_iteration_path",
@@ -126,20 +127,31 @@ public class DevOpsClassificationTools {
     public Mono<Map<String, Object>> updateIterationPath(
             @ToolParam(description = "Iteration path to update, e.g. 'Sprint 1'") String path,
             @ToolParam(description = "New start date in ISO 8601 format, e.g. 2026-01-01T00:00:00Z", required = false) String startDate,
-            @ToolParam(description = "New finish date in ISO 8601 format, e.g. 2026-01-14T00:00:00Z", required = false) String finishDate) {
+            @ToolParam(description = "New finish date in ISO 8601 format, e.g. 2026-01-14T00:00:00Z", required = false) String finishDate,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
 
         Map<String, Object> attributes = new LinkedHashMap<>();
         if (startDate != null && !startDate.isBlank()) attributes.put("startDate", startDate);
         if (finishDate != null && !finishDate.isBlank()) attributes.put("finishDate", finishDate);
 
-        return webClient.patch()
-                .uri(props.getBaseUrl() + "/_apis/wit/classificationnodes/iterations/" + path
-                        + "?api-version=" + props.getApiVersion())
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(Map.of("attributes", attributes))
-                .retrieve()
-                .bodyToMono(Map.class)
+        return organizations.resolve(organization)
+                .flatMap(org -> org.webClient().patch()
+                        .uri(org.props().getBaseUrl() + "/_apis/wit/classificationnodes/iterations/" + path
+                                + "?api-version=" + org.props().getApiVersion())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(Map.of("attributes", attributes))
+                        .retrieve()
+                        .bodyToMono(Map.class))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore aggiornamento iteration path: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore aggiornamento iteration path: " + e.getMessage())))
+                .transform(metrics.tool("devops_update_iteration_path"));
+    }
+
+    private static String classificationEndpoint(DevOpsProperties props, String structure, String parentPath) {
+        String endpoint = props.getBaseUrl() + "/_apis/wit/classificationnodes/" + structure;
+        if (parentPath != null && !parentPath.isBlank()) {
+            endpoint += "/" + parentPath;
+        }
+        return endpoint + "?api-version=" + props.getApiVersion();
     }
 }
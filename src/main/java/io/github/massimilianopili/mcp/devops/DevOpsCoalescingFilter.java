@@ -0,0 +1,197 @@
+package io.github.massimilianopili.mcp.devops;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import reactor.core.publisher.Mono;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-flight delle letture identiche in corso: richieste concorrenti con stessa chiave
+ * (metodo + URI + scope del PAT + digest del body) condividono un'unica chiamata a monte.
+ * <p>
+ * Ci si puo' unire a una richiesta finche' non sono arrivati gli header della risposta, cioe' per la
+ * quasi totalita' della latenza. A quel punto, se nessuno si e' unito, il primo chiamante riceve la
+ * risposta in streaming, senza copie in memoria; solo se ci sono altri chiamanti il body viene
+ * bufferizzato (fino a max-buffer-size) e ciascuno riceve la propria ClientResponse. Chi arriva dopo
+ * gli header esegue una richiesta propria.
+ * <p>
+ * Le GET sono coalescenti per default; le POST di lettura (WIQL, workitemsbatch) solo se il chiamante
+ * imposta l'attributo {@link #BODY_KEY} con il digest del body. {@link #DISABLED} esclude una
+ * richiesta.
+ */
+public class DevOpsCoalescingFilter implements ExchangeFilterFunction {
+
+    /** Attributo della richiesta: digest del body, abilita il coalescing di una POST di lettura */
+    public static final String BODY_KEY = DevOpsCoalescingFilter.class.getName() + ".bodyKey";
+    /** Attributo della richiesta: true per non condividere mai la risposta */
+    public static final String DISABLED = DevOpsCoalescingFilter.class.getName() + ".disabled";
+
+    public record Stats(long issued, long coalesced, int inFlight) {}
+
+    private record Shared(DevOpsBufferedResponse response, ExchangeStrategies strategies, HttpRequest request) {
+
+        ClientResponse toResponse() {
+            return response.toResponse(strategies, request);
+        }
+    }
+
+    /** Richiesta in volo: joiners e' fissato all'arrivo degli header, che chiudono la condivisione */
+    private final class Flight {
+
+        final String key;
+        final Mono<ClientResponse> head;
+        private int joiners;
+        private boolean closed;
+        private boolean ownerGone;
+        private Mono<Shared> buffered;
+
+        Flight(String key, ClientRequest request, ExchangeFunction next) {
+            this.key = key;
+            this.head = next.exchange(request)
+                    .doOnNext(this::close)
+                    .doFinally(signal -> inflight.remove(key, this))
+                    .cache();
+        }
+
+        synchronized boolean join() {
+            if (closed) return false;
+            joiners++;
+            return true;
+        }
+
+        private void close(ClientResponse response) {
+            boolean release;
+            synchronized (this) {
+                closed = true;
+                if (joiners > 0) buffered = buffer(response);
+                release = joiners == 0 && ownerGone;
+            }
+            inflight.remove(key, this);
+            // nessuno consumera' il body: la connessione va liberata
+            if (release) response.releaseBody().subscribe();
+        }
+
+        synchronized void ownerCancelled() {
+            ownerGone = true;
+        }
+
+        /** Risposta per il chiamante che ha avviato la richiesta: in streaming se non e' condivisa. */
+        Mono<ClientResponse> owner() {
+            return head.flatMap(response -> {
+                Mono<Shared> shared;
+                synchronized (this) {
+                    shared = buffered;
+                }
+                return shared == null ? Mono.just(response) : shared.map(Shared::toResponse);
+            }).doOnCancel(this::ownerCancelled);
+        }
+
+        Mono<ClientResponse> joiner() {
+            return head.then(Mono.defer(() -> {
+                Mono<Shared> shared;
+                synchronized (this) {
+                    shared = buffered;
+                }
+                return shared.map(Shared::toResponse);
+            }));
+        }
+    }
+
+    private final DevOpsProperties.Coalescing config;
+    private final ConcurrentHashMap<String, Flight> inflight = new ConcurrentHashMap<>();
+
+    private final AtomicLong issued = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public DevOpsCoalescingFilter(DevOpsProperties props) {
+        this.config = props.getCoalescing();
+    }
+
+    /** Digest del body di una POST di lettura, da passare come attributo {@link #BODY_KEY}. */
+    public static String bodyKey(Object body) {
+        try {
+            byte[] json = DevOpsJsonStream.MAPPER.writeValueAsBytes(body);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        String key = config.isEnabled() ? key(request) : null;
+        if (key == null) {
+            return next.exchange(request);
+        }
+        return Mono.defer(() -> {
+            Flight existing = inflight.get(key);
+            if (existing != null && existing.join()) {
+                coalesced.incrementAndGet();
+                return existing.joiner();
+            }
+            Flight created = new Flight(key, request, next);
+            existing = existing == null ? inflight.putIfAbsent(key, created) : inflight.replace(key, existing, created) ? null : existing;
+            if (existing != null && existing.join()) {
+                coalesced.incrementAndGet();
+                return existing.joiner();
+            }
+            issued.incrementAndGet();
+            return created.owner();
+        });
+    }
+
+    public Stats stats() {
+        return new Stats(issued.get(), coalesced.get(), inflight.size());
+    }
+
+    /** Body completo della risposta condivisa, letto una sola volta per tutti i chiamanti. */
+    private Mono<Shared> buffer(ClientResponse response) {
+        int maxBytes = (int) Math.min(Integer.MAX_VALUE, config.getMaxBufferSize().toBytes());
+        return DataBufferUtils.join(response.body(BodyExtractors.toDataBuffers()), maxBytes)
+                .map(DevOpsCoalescingFilter::drain)
+                .defaultIfEmpty(new byte[0])
+                .map(body -> new Shared(new DevOpsBufferedResponse(response.statusCode(),
+                        response.headers().asHttpHeaders(), body), response.strategies(), response.request()))
+                .cache();
+    }
+
+    private static byte[] drain(DataBuffer buffer) {
+        try {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            return bytes;
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    private static String key(ClientRequest request) {
+        if (Boolean.TRUE.equals(request.attribute(DISABLED).orElse(null))) {
+            return null;
+        }
+        String scope = DevOpsEtagCacheFilter.scope(request.headers().getFirst(HttpHeaders.AUTHORIZATION));
+        if (request.method() == HttpMethod.GET) {
+            return "GET " + scope + ' ' + request.url();
+        }
+        Object bodyKey = request.attribute(BODY_KEY).orElse(null);
+        if (request.method() == HttpMethod.POST && bodyKey != null) {
+            return "POST " + scope + ' ' + request.url() + ' ' + bodyKey;
+        }
+        return null;
+    }
+}
@@ -1,10 +1,16 @@
 package io.github.massimilianopili.mcp.devops;
 
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 import java.util.Base64;
 
@@ -12,14 +18,179 @@ import java.util.Base64;
 @ConditionalOnProperty(name = "mcp.devops.pat")
 public class DevOpsConfig {
 
+    /**
+     * Pool dedicato alle chiamate Azure DevOps: evita la contesa con il pool globale
+     * di Reactor Netty nei tool che fanno fan-out (es. devops_analyze_release).
+     */
+    @Bean(name = "devOpsConnectionProvider", destroyMethod = "dispose")
+    public ConnectionProvider devOpsConnectionProvider(DevOpsProperties props) {
+        return connectionProvider("devops", props.getHttp());
+    }
+
+    @Bean
+    public DevOpsCoalescingFilter devOpsCoalescingFilter(DevOpsProperties props) {
+        return new DevOpsCoalescingFilter(props);
+    }
+
+    @Bean
+    public DevOpsEtagCacheFilter devOpsEtagCacheFilter(DevOpsProperties props) {
+        return new DevOpsEtagCacheFilter(props);
+    }
+
+    @Bean
+    public DevOpsThrottleFilter devOpsThrottleFilter(DevOpsProperties props) {
+        return new DevOpsThrottleFilter(props);
+    }
+
+    @Bean
+    public DevOpsRetryFilter devOpsRetryFilter(DevOpsProperties props) {
+        return new DevOpsRetryFilter(props);
+    }
+
     @Bean(name = "devOpsWebClient")
-    public WebClient devOpsWebClient(DevOpsProperties props) {
+    public WebClient devOpsWebClient(DevOpsProperties props, ConnectionProvider devOpsConnectionProvider,
+                                     DevOpsCoalescingFilter devOpsCoalescingFilter,
+                                     DevOpsEtagCacheFilter devOpsEtagCacheFilter,
+                                     DevOpsRetryFilter devOpsRetryFilter,
+                                     DevOpsThrottleFilter devOpsThrottleFilter,
+                                     DevOpsMetrics devOpsMetrics) {
+        return webClient(props, devOpsConnectionProvider, devOpsCoalescingFilter, devOpsEtagCacheFilter,
+                devOpsRetryFilter, devOpsThrottleFilter, devOpsMetrics);
+    }
+
+    @Bean
+    public DevOpsPaginator devOpsPaginator(
+            @Qualifier("devOpsWebClient") WebClient webClient,
+            DevOpsProperties props) {
+        return new DevOpsPaginator(webClient, props);
+    }
+
+    @Bean
+    public DevOpsWorkItemBatch devOpsWorkItemBatch(
+            @Qualifier("devOpsWebClient") WebClient webClient,
+            DevOpsProperties props) {
+        return new DevOpsWorkItemBatch(webClient, props);
+    }
+
+    @Bean
+    public DevOpsWorkItemBulk devOpsWorkItemBulk(
+            @Qualifier("devOpsWebClient") WebClient webClient,
+            DevOpsProperties props) {
+        return new DevOpsWorkItemBulk(webClient, props);
+    }
+
+    @Bean
+    public DevOpsRepositoryCatalog devOpsRepositoryCatalog(
+            @Qualifier("devOpsWebClient") WebClient webClient,
+            DevOpsProperties props) {
+        return new DevOpsRepositoryCatalog(webClient, props);
+    }
+
+    /** Replica locale dei work item per devops_search_work_items, solo con mcp.devops.replica.enabled=true. */
+    @Bean(initMethod = "start", destroyMethod = "dispose")
+    @ConditionalOnProperty(name = "mcp.devops.replica.enabled", havingValue = "true")
+    public DevOpsWorkItemReplica devOpsWorkItemReplica(
+            @Qualifier("devOpsWebClient") WebClient webClient,
+            DevOpsProperties props) {
+        return new DevOpsWorkItemReplica(webClient, props);
+    }
+
+    /** Indice full-text dei work item per devops_fulltext_search_work_items, solo con mcp.devops.full-text.enabled=true. */
+    @Bean(initMethod = "start", destroyMethod = "dispose")
+    @ConditionalOnProperty(name = "mcp.devops.full-text.enabled", havingValue = "true")
+    public DevOpsWorkItemIndex devOpsWorkItemIndex(
+            @Qualifier("devOpsWebClient") WebClient webClient,
+            DevOpsProperties props,
+            DevOpsWorkItemBatch workItemBatch) {
+        return new DevOpsWorkItemIndex(webClient, props, workItemBatch);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public DevOpsGitObjectCache devOpsGitObjectCache(DevOpsProperties props) {
+        return new DevOpsGitObjectCache(props);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public DevOpsRepoSnapshots devOpsRepoSnapshots(DevOpsProperties props) {
+        return new DevOpsRepoSnapshots(props);
+    }
+
+    /**
+     * Organizzazione principale piu' i profili di mcp.devops.organizations, ciascuno con
+     * WebClient, pool di connessioni e limitatore dedicati.
+     */
+    @Bean(destroyMethod = "dispose")
+    public DevOpsOrganizations devOpsOrganizations(
+            DevOpsProperties props,
+            @Qualifier("devOpsWebClient") WebClient webClient,
+            DevOpsPaginator paginator,
+            DevOpsWorkItemBatch workItemBatch,
+            DevOpsWorkItemBulk workItemBulk,
+            DevOpsRepositoryCatalog repositoryCatalog,
+            DevOpsCoalescingFilter coalescingFilter,
+            DevOpsEtagCacheFilter etagCacheFilter,
+            DevOpsRetryFilter retryFilter,
+            DevOpsMetrics metrics) {
+        DevOpsOrganizations organizations = new DevOpsOrganizations(new DevOpsOrganizations.Organization(
+                props.getOrganization(), props, webClient, paginator, workItemBatch, workItemBulk, repositoryCatalog));
+        props.getOrganizations().forEach((name, profile) -> {
+            DevOpsProperties orgProps = props.forProfile(name, profile);
+            ConnectionProvider provider = connectionProvider("devops-" + name, orgProps.getHttp());
+            DevOpsThrottleFilter throttleFilter = new DevOpsThrottleFilter(orgProps);
+            metrics.bindThrottle(name, throttleFilter);
+            WebClient orgClient = webClient(orgProps, provider, coalescingFilter, etagCacheFilter,
+                    retryFilter, throttleFilter, metrics);
+            organizations.register(name, new DevOpsOrganizations.Organization(name, orgProps, orgClient,
+                    new DevOpsPaginator(orgClient, orgProps),
+                    new DevOpsWorkItemBatch(orgClient, orgProps),
+                    new DevOpsWorkItemBulk(orgClient, orgProps),
+                    new DevOpsRepositoryCatalog(orgClient, orgProps)), provider);
+        });
+        return organizations;
+    }
+
+    static ConnectionProvider connectionProvider(String name, DevOpsProperties.Http http) {
+        return ConnectionProvider.builder(name)
+                .maxConnections(http.getMaxConnections())
+                .pendingAcquireMaxCount(http.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(http.getPendingAcquireTimeout())
+                .maxIdleTime(http.getMaxIdleTime())
+                .maxLifeTime(http.getMaxLifeTime())
+                .evictInBackground(http.getEvictInBackground())
+                .build();
+    }
+
+    static WebClient webClient(DevOpsProperties props, ConnectionProvider connectionProvider,
+                               DevOpsCoalescingFilter coalescingFilter,
+                               DevOpsEtagCacheFilter etagCacheFilter,
+                               DevOpsRetryFilter retryFilter,
+                               DevOpsThrottleFilter throttleFilter,
+                               DevOpsMetrics metrics) {
         String credentials = Base64.getEncoder()
                 .encodeToString((":" + props.getPat()).getBytes());
 
+        DevOpsProperties.Http http = props.getHttp();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) http.getConnectTimeout().toMillis())
+                .responseTimeout(http.getResponseTimeout())
+                .keepAlive(true)
+                .compress(http.isCompression());
+        if (http.isHttp2()) {
+            // H2 via ALPN sulle connessioni TLS, HTTP/1.1 se il server non lo negozia
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+
         return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .defaultHeader("Authorization", "Basic " + credentials)
                 .defaultHeader("Accept", "application/json")
+                // ordine: coalescing -> cache -> retry -> throttle -> metriche, ogni tentativo passa
+                // dal limitatore e viene misurato come chiamata reale
+                .filter(coalescingFilter)
+                .filter(etagCacheFilter)
+                .filter(retryFilter)
+                .filter(throttleFilter)
+                .filter(metrics.endpointFilter())
                 .exchangeStrategies(ExchangeStrategies.builder()
                         .codecs(c -> c.defaultCodecs().maxInMemorySize(5 * 1024 * 1024))
                         .build())
@@ -0,0 +1,177 @@
+package io.github.massimilianopili.mcp.devops;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache HTTP condizionale (ETag / If-None-Match) per le GET del devOpsWebClient.
+ * I body delle risposte con ETag vengono copiati in una LRU limitata in byte, con chiave URL + scope
+ * del PAT (hash dell'header Authorization). Alla richiesta successiva si invia If-None-Match e,
+ * sul 304, la risposta in cache (header compresi, es. x-ms-continuationtoken) viene restituita
+ * al chiamante come se arrivasse dal server. {@link #DISABLED} esclude una richiesta (es. download
+ * di archivi, che non devono essere copiati in memoria).
+ */
+public class DevOpsEtagCacheFilter implements ExchangeFilterFunction {
+
+    /** Attributo della richiesta: true per non copiare ne' servire la risposta dalla cache */
+    public static final String DISABLED = DevOpsEtagCacheFilter.class.getName() + ".disabled";
+
+    public record Stats(long hits, long misses, long evictions, int entries, long bytes) {}
+
+    private record Entry(String etag, DevOpsBufferedResponse response) {
+
+        int size() {
+            return response.body().length;
+        }
+    }
+
+    private final DevOpsProperties.EtagCache config;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public DevOpsEtagCacheFilter(DevOpsProperties props) {
+        this.config = props.getEtagCache();
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (!config.isEnabled() || request.method() != HttpMethod.GET
+                || Boolean.TRUE.equals(request.attribute(DISABLED).orElse(null))) {
+            return next.exchange(request);
+        }
+        String key = cacheKey(request);
+        Entry cached = get(key);
+        ClientRequest conditional = cached == null ? request
+                : ClientRequest.from(request).header(HttpHeaders.IF_NONE_MATCH, cached.etag()).build();
+
+        return next.exchange(conditional).flatMap(response -> {
+            if (cached != null && response.statusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+                hits.incrementAndGet();
+                return response.releaseBody()
+                        .thenReturn(cached.response().toResponse(response.strategies(), response.request()));
+            }
+            misses.incrementAndGet();
+            String etag = response.headers().asHttpHeaders().getETag();
+            if (!response.statusCode().is2xxSuccessful() || etag == null) {
+                if (cached != null) remove(key);
+                return Mono.just(response);
+            }
+            AtomicBoolean claimed = new AtomicBoolean();
+            return Mono.just(response.mutate()
+                    .body(body -> copyOnComplete(body, claimed, key, etag, response))
+                    .build());
+        });
+    }
+
+    public Stats stats() {
+        synchronized (entries) {
+            return new Stats(hits.get(), misses.get(), evictions.get(), entries.size(), totalBytes);
+        }
+    }
+
+    /**
+     * Lascia passare i buffer invariati e ne tiene una copia; memorizza solo se il body arriva intero.
+     * Copia solo la prima sottoscrizione: le successive (es. releaseBody dopo exchangeToMono) trovano
+     * il body gia' consumato e non devono sovrascrivere la voce.
+     */
+    private Flux<DataBuffer> copyOnComplete(Flux<DataBuffer> body, AtomicBoolean claimed, String key,
+                                            String etag, ClientResponse response) {
+        long maxEntryBytes = config.getMaxEntrySize().toBytes();
+        return Flux.defer(() -> {
+            if (!claimed.compareAndSet(false, true)) return body;
+            ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            boolean[] overflow = {false};
+            return body
+                    .doOnNext(buffer -> {
+                        if (overflow[0]) return;
+                        if (copy.size() + buffer.readableByteCount() > maxEntryBytes) {
+                            overflow[0] = true;
+                            copy.reset();
+                            return;
+                        }
+                        try (DataBuffer.ByteBufferIterator it = buffer.readableByteBuffers()) {
+                            while (it.hasNext()) {
+                                ByteBuffer bb = it.next();
+                                byte[] chunk = new byte[bb.remaining()];
+                                bb.get(chunk);
+                                copy.writeBytes(chunk);
+                            }
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        if (!overflow[0]) put(key, new Entry(etag, new DevOpsBufferedResponse(
+                                response.statusCode(), response.headers().asHttpHeaders(), copy.toByteArray())));
+                    });
+        });
+    }
+
+    private Entry get(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    private void remove(String key) {
+        synchronized (entries) {
+            Entry removed = entries.remove(key);
+            if (removed != null) totalBytes -= removed.size();
+        }
+    }
+
+    private void put(String key, Entry entry) {
+        long maxBytes = config.getMaxSize().toBytes();
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) totalBytes -= previous.size();
+            totalBytes += entry.size();
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Entry> e = eldest.next();
+                totalBytes -= e.getValue().size();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /** URL + hash dell'header Authorization: PAT diversi non condividono le voci. */
+    static String cacheKey(ClientRequest request) {
+        String auth = request.headers().getFirst(HttpHeaders.AUTHORIZATION);
+        return scope(auth) + ' ' + request.url();
+    }
+
+    static String scope(String authorization) {
+        if (authorization == null) return "-";
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(authorization.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.massimilianopili.mcp.devops;
+
+import io.github.massimilianopili.ai.reactive.annotation.ReactiveTool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+
+/** Ricerca full-text sull'indice in memoria dei work item (mcp.devops.full-text.enabled=true). */
+@Service
+@ConditionalOnProperty(name = "mcp.devops.full-text.enabled", havingValue = "true")
+public class DevOpsFullTextTools {
+
+    private static final int DEFAULT_MAX_RESULTS = 20;
+
+    private final DevOpsWorkItemIndex index;
+    private final DevOpsMetrics metrics;
+
+    public DevOpsFullTextTools(DevOpsWorkItemIndex index, DevOpsMetrics metrics) {
+        this.index = index;
+        this.metrics = metrics;
+    }
+
+    @ReactiveTool(name = "devops_fulltext_search_work_items",
+          description = "Free-text search over title, description and tags of the main project's work items, "
+                      + "ranked by relevance (BM25). Use it instead of WIQL CONTAINS clauses. "
+                      + "Returns ID, title, state, type and score; 'freshness' tells how recent the index is.")
+    public Mono<Map<String, Object>> fullTextSearchWorkItems(
+            @ToolParam(description = "Search text, e.g. login timeout on mobile") String query,
+            @ToolParam(description = "Maximum number of results (default: 20)", required = false) Integer maxResults,
+            @ToolParam(description = "State filter, e.g. Active", required = false) String state,
+            @ToolParam(description = "Type filter: Bug, Task, User Story, Feature, Epic", required = false) String workItemType) {
+        int limit = maxResults != null && maxResults > 0 ? maxResults : DEFAULT_MAX_RESULTS;
+        return Mono.fromCallable(() -> {
+                    List<DevOpsWorkItemIndex.Hit> hits = index.search(query, limit, state, workItemType);
+                    return Map.<String, Object>of("count", hits.size(), "workItems", hits,
+                            "freshness", index.freshness().toMap());
+                })
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore ricerca full-text: " + e.getMessage())))
+                .transform(metrics.tool("devops_fulltext_search_work_items"));
+    }
+}
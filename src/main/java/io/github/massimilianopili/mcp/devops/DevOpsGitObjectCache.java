@@ -0,0 +1,258 @@
+package io.github.massimilianopili.mcp.devops;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Cache su disco, indirizzata per contenuto, degli oggetti Git immutabili (commit e blob per SHA,
+ * percorso -> objectId per un commit fissato). Il valore associato a uno SHA non cambia mai, quindi
+ * una voce presente non richiede rivalidazione.
+ * <p>
+ * Le voci vengono accodate in segmenti di dimensione fissa mappati in memoria
+ * ([lunghezza chiave][lunghezza valore][chiave][valore]); l'indice chiave -> posizione sta in heap
+ * e all'avvio viene ricostruito scorrendo i segmenti. Superato max-size si elimina il segmento piu'
+ * vecchio; una voce letta mentre si trova nella meta' piu' vecchia dei segmenti viene ricopiata nel
+ * segmento corrente, per cui l'evizione approssima un LRU.
+ * <p>
+ * Letture, scritture e apertura (scansione dei segmenti) sono I/O su file mappati sotto lock:
+ * l'API pubblica le esegue su Schedulers.boundedElastic(), mai sull'event loop di Netty.
+ */
+public class DevOpsGitObjectCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DevOpsGitObjectCache.class);
+
+    private static final Pattern SHA = Pattern.compile("[0-9a-fA-F]{40}");
+    private static final int HEADER = 8;
+
+    public record Stats(long hits, long misses, int entries, int segments, long bytes) {}
+
+    private record Location(int segment, int offset, int keyLength, int valueLength) {}
+
+    private static final class Segment {
+
+        final int id;
+        final Path file;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int position;
+
+        Segment(int id, Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private final DevOpsProperties.GitObjectCache config;
+    private final Map<String, Location> index = new HashMap<>();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private boolean opened;
+    private boolean unavailable;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public DevOpsGitObjectCache(DevOpsProperties props) {
+        this.config = props.getGitObjectCache();
+    }
+
+    /**
+     * Chiave di un oggetto, es. (org, "blob", objectId) o (org, "path", commitId + ":" + percorso).
+     * Lo scope dell'organizzazione evita di servire contenuti tra PAT diversi.
+     */
+    public static String key(String organization, String kind, String id) {
+        return organization + '/' + kind + '/' + (isSha(id) ? id.toLowerCase(Locale.ROOT) : id);
+    }
+
+    public static boolean isSha(String value) {
+        return value != null && SHA.matcher(value).matches();
+    }
+
+    /** Valore in cache, altrimenti fetch (una sola volta) e memorizzazione. */
+    public Mono<byte[]> getOrFetch(String key, Supplier<Mono<byte[]>> fetch) {
+        if (!config.isEnabled()) return fetch.get();
+        return get(key).switchIfEmpty(Mono.defer(() -> fetch.get()
+                .flatMap(value -> put(key, value).thenReturn(value))));
+    }
+
+    /** Valore in cache; vuoto se assente o cache disabilitata. */
+    public Mono<byte[]> get(String key) {
+        if (!config.isEnabled()) return Mono.empty();
+        return Mono.fromCallable(() -> read(key)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Mono<Void> put(String key, byte[] value) {
+        if (!config.isEnabled()) return Mono.empty();
+        return Mono.fromRunnable(() -> write(key, value)).subscribeOn(Schedulers.boundedElastic()).then();
+    }
+
+    private synchronized byte[] read(String key) {
+        if (!config.isEnabled() || !open()) return null;
+        Location location = index.get(key);
+        if (location == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        Segment segment = segments.get(location.segment());
+        byte[] value = new byte[location.valueLength()];
+        segment.buffer.get(location.offset() + HEADER + location.keyLength(), value);
+        if (segments.size() > 1 && location.segment() < promotionThreshold()) {
+            append(key, value);
+        }
+        return value;
+    }
+
+    private synchronized void write(String key, byte[] value) {
+        if (!config.isEnabled() || !open() || index.containsKey(key)) return;
+        append(key, value);
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits.get(), misses.get(), index.size(), segments.size(),
+                segments.values().stream().mapToLong(s -> s.position).sum());
+    }
+
+    public synchronized void dispose() {
+        segments.values().forEach(DevOpsGitObjectCache::closeQuietly);
+        segments.clear();
+        index.clear();
+        opened = false;
+    }
+
+    private void append(String key, byte[] value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int size = HEADER + keyBytes.length + value.length;
+        if (size > segmentSize()) return;
+        try {
+            Segment current = segments.isEmpty() ? null : segments.lastEntry().getValue();
+            if (current == null || current.position + size > current.buffer.capacity()) {
+                current = createSegment(current == null ? 1 : current.id + 1);
+                evict();
+            }
+            int offset = current.position;
+            // prima il contenuto, poi le lunghezze: un record interrotto resta illeggibile e chiude la scansione
+            current.buffer.put(offset + HEADER, keyBytes);
+            current.buffer.put(offset + HEADER + keyBytes.length, value);
+            current.buffer.putInt(offset + 4, value.length);
+            current.buffer.putInt(offset, keyBytes.length);
+            current.position += size;
+            index.put(key, new Location(current.id, offset, keyBytes.length, value.length));
+        } catch (IOException e) {
+            log.warn("Scrittura cache oggetti Git fallita: {}", e.getMessage());
+        }
+    }
+
+    /** Elimina i segmenti piu' vecchi finche' lo spazio rientra in max-size (il corrente resta). */
+    private void evict() {
+        long maxBytes = config.getMaxSize().toBytes();
+        while (segments.size() > 1 && (long) segments.size() * segmentSize() > maxBytes) {
+            Segment oldest = segments.pollFirstEntry().getValue();
+            index.values().removeIf(location -> location.segment() == oldest.id);
+            closeQuietly(oldest);
+            try {
+                Files.deleteIfExists(oldest.file);
+            } catch (IOException e) {
+                log.debug("Eliminazione segmento {} fallita: {}", oldest.file, e.getMessage());
+            }
+        }
+    }
+
+    private int promotionThreshold() {
+        int first = segments.firstKey();
+        return first + (segments.lastKey() - first + 1) / 2;
+    }
+
+    /** Apre la directory e ricostruisce l'indice dai segmenti esistenti; false se non utilizzabile. */
+    private boolean open() {
+        if (opened) return true;
+        if (unavailable) return false;
+        Path directory = Path.of(config.getDirectory());
+        try {
+            Files.createDirectories(directory);
+            List<Path> files;
+            try (Stream<Path> list = Files.list(directory)) {
+                files = list.filter(f -> f.getFileName().toString().matches("seg-\\d{8}\\.dat")).sorted().toList();
+            }
+            for (Path file : files) {
+                int id = Integer.parseInt(file.getFileName().toString().substring(4, 12));
+                Segment segment = map(id, file, Math.max(Files.size(file), 1));
+                scan(segment);
+                segments.put(id, segment);
+            }
+            evict();
+            opened = true;
+            log.debug("Cache oggetti Git aperta: {} voci in {} segmenti", index.size(), segments.size());
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Cache oggetti Git non disponibile in {}: {}", directory, e.getMessage());
+            unavailable = true;
+            segments.values().forEach(DevOpsGitObjectCache::closeQuietly);
+            segments.clear();
+            index.clear();
+        }
+        return opened;
+    }
+
+    private void scan(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset + HEADER <= buffer.capacity()) {
+            int keyLength = buffer.getInt(offset);
+            int valueLength = buffer.getInt(offset + 4);
+            if (keyLength <= 0 || valueLength < 0
+                    || (long) offset + HEADER + keyLength + valueLength > buffer.capacity()) break;
+            byte[] key = new byte[keyLength];
+            buffer.get(offset + HEADER, key);
+            index.put(new String(key, StandardCharsets.UTF_8),
+                    new Location(segment.id, offset, keyLength, valueLength));
+            offset += HEADER + keyLength + valueLength;
+        }
+        segment.position = offset;
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        Path file = Path.of(config.getDirectory()).resolve(String.format("seg-%08d.dat", id));
+        Files.deleteIfExists(file);
+        Segment segment = map(id, file, segmentSize());
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private static Segment map(int id, Path file, long size) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new Segment(id, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private int segmentSize() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1 << 16, config.getSegmentSize().toBytes()));
+    }
+
+    private static void closeQuietly(Segment segment) {
+        try {
+            segment.channel.close();
+        } catch (IOException ignored) {
+            // il mapping resta valido fino alla garbage collection del buffer
+        }
+    }
+}
@@ -1,120 +1,95 @@
 package io.github.massimilianopili.mcp.devops;
 
 import io.github.massimilianopili.ai.reactive.annotation.ReactiveTool;
+import io.github.massimilianopili.mcp.devops.model.GitItem;
+import io.github.massimilianopili.mcp.devops.model.GitPullRequest;
+import io.github.massimilianopili.mcp.devops.model.GitRef;
 import org.springframework.ai.tool.annotation.ToolParam;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Supplier;
 
 @Service
 @ConditionalOnProperty(name = "mcp.devops.pat")
 public class DevOpsGitTools {
 
-    private final WebClient webClient;
-    private final DevOpsProperties props;
+    private final DevOpsOrganizations organizations;
+    private final DevOpsMetrics metrics;
+    private final DevOpsRepoSnapshots snapshots;
+    private final DevOpsGitObjectCache objectCache;
 
     public DevOpsGitTools(
-            @Qualifier("devOpsWebClient") WebClient webClient,
-            DevOpsProperties props) {
-        this.webClient = webClient;
-        this.props = props;
+            DevOpsOrganizations organizations,
+            DevOpsMetrics metrics,
+            DevOpsRepoSnapshots snapshots,
+            DevOpsGitObjectCache objectCache) {
+        this.organizations = organizations;
+        this.metrics = metrics;
+        this.snapshots = snapshots;
+        this.objectCache = objectCache;
     }
 
     @ReactiveTool(name = "devops_list_repos",
           description = "Lists all Git repositories in the Azure DevOps project")
-    @SuppressWarnings("unchecked")
-    public Mono<List<Map<String, Object>>> listRepos() {
-        return webClient.get()
-                .uri(props.getBaseUrl() + "/_apis/git/repositories?api-version=" + props.getApiVersion())
-                .retrieve()
-                .bodyToMono(Map.class)
-                .map(response -> {
-                    if (!response.containsKey("value")) {
-                        return List.<Map<String, Object>>of();
-                    }
-                    List<Map<String, Object>> repos = (List<Map<String, Object>>) response.get("value");
-                    return repos.stream().map(r -> {
-                        Map<String, Object> result = new LinkedHashMap<>();
-                        result.put("id", r.getOrDefault("id", ""));
-                        result.put("name", r.getOrDefault("name", ""));
-                        result.put("defaultBranch", r.getOrDefault("defaultBranch", ""));
-                        result.put("webUrl", r.getOrDefault("webUrl", ""));
-                        result.put("size", r.getOrDefault("size", 0));
-                        return result;
-                    }).toList();
-                })
-                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore recupero repository: " + e.getMessage()))));
+    public Mono<List<Object>> listRepos(
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMap(org -> org.repositoryCatalog().snapshot())
+                .map(snapshot -> Collections.<Object>unmodifiableList(snapshot.repositories()))
+                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore recupero repository: " + e.getMessage()))))
+                .transform(metrics.tool("devops_list_repos"));
     }
 
     @ReactiveTool(name = "devops_list_branches",
           description = "Lists branches of an Azure DevOps Git repository")
-    @SuppressWarnings("unchecked")
-    public Mono<List<Map<String, Object>>> listBranches(
-            @ToolParam(description = "Repository ID or name") String repoId) {
-        return webClient.get()
-                .uri(props.getBaseUrl() + "/_apis/git/repositories/" + repoId
-                        + "/refs?filter=heads/&api-version=" + props.getApiVersion())
-                .retrieve()
-                .bodyToMono(Map.class)
-                .map(response -> {
-                    if (!response.containsKey("value")) {
-                        return List.<Map<String, Object>>of();
-                    }
-                    List<Map<String, Object>> refs = (List<Map<String, Object>>) response.get("value");
-                    return refs.stream().map(r -> {
-                        Map<String, Object> result = new LinkedHashMap<>();
-                        String name = (String) r.getOrDefault("name", "");
-                        result.put("name", name.replace("refs/heads/", ""));
-                        result.put("objectId", r.getOrDefault("objectId", ""));
-                        return result;
-                    }).toList();
-                })
-                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore recupero branch: " + e.getMessage()))));
+    public Mono<List<Object>> listBranches(
+            @ToolParam(description = "Repository ID or name") String repoId,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMapMany(org -> org.repositoryCatalog().repositoryId(repoId)
+                        .flatMapMany(repo -> org.webClient().get()
+                                .uri(org.props().getBaseUrl() + "/_apis/git/repositories/" + repo
+                                        + "/refs?filter=heads/&api-version=" + org.props().getApiVersion())
+                                .retrieve()
+                                .bodyToFlux(DataBuffer.class)))
+                .transform(body -> DevOpsJsonStream.values(body, GitRef.class))
+                .map(GitRef::withShortName)
+                .cast(Object.class)
+                .collectList()
+                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore recupero branch: " + e.getMessage()))))
+                .transform(metrics.tool("devops_list_branches"));
     }
 
     @ReactiveTool(name = "devops_list_pull_requests",
           description = "Lists pull requests of a repository, with optional status filter (active, completed, abandoned, all)")
-    @SuppressWarnings("unchecked")
-    public Mono<List<Map<String, Object>>> listPullRequests(
+    public Mono<List<Object>> listPullRequests(
             @ToolParam(description = "Repository ID or name") String repoId,
             @ToolParam(description = "Status filter: active, completed, abandoned, all (default: active)", required = false)
-            String status) {
-        String uri = props.getBaseUrl() + "/_apis/git/repositories/" + repoId
-                + "/pullrequests?api-version=" + props.getApiVersion();
-        if (status != null && !status.isBlank()) {
-            uri += "&searchCriteria.status=" + status;
-        }
+            String status,
+            @ToolParam(description = "Maximum number of items to return, following server pagination (default: all)", required = false)
+            Integer maxItems,
+            @ToolParam(description = "Page size requested per call (default: 100)", required = false)
+            Integer pageSize,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        String query = status != null && !status.isBlank() ? "&searchCriteria.status=" + status : "";
 
-        return webClient.get()
-                .uri(uri)
-                .retrieve()
-                .bodyToMono(Map.class)
-                .map(response -> {
-                    if (!response.containsKey("value")) {
-                        return List.<Map<String, Object>>of();
-                    }
-                    List<Map<String, Object>> prs = (List<Map<String, Object>>) response.get("value");
-                    return prs.stream().map(pr -> {
-                        Map<String, Object> result = new LinkedHashMap<>();
-                        result.put("pullRequestId", pr.getOrDefault("pullRequestId", 0));
-                        result.put("title", pr.getOrDefault("title", ""));
-                        result.put("status", pr.getOrDefault("status", ""));
-                        result.put("sourceRefName", pr.getOrDefault("sourceRefName", ""));
-                        result.put("targetRefName", pr.getOrDefault("targetRefName", ""));
-                        result.put("creationDate", pr.getOrDefault("creationDate", ""));
-                        result.put("isDraft", pr.getOrDefault("isDraft", false));
-                        Object createdBy = pr.get("createdBy");
-                        if (createdBy instanceof Map) {
-                            result.put("createdBy", ((Map<String, Object>) createdBy).getOrDefault("displayName", ""));
-                        }
-                        return result;
-                    }).toList();
-                })
-                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore recupero pull request: " + e.getMessage()))));
+        return organizations.resolve(organization)
+                .flatMapMany(org -> org.repositoryCatalog().repositoryId(repoId)
+                        .flatMapMany(repo -> org.paginator().fetch(org.props().getBaseUrl() + "/_apis/git/repositories/" + repo
+                                        + "/pullrequests?api-version=" + org.props().getApiVersion() + query,
+                                GitPullRequest.class, DevOpsPaginator.Paging.SKIP, maxItems, pageSize)))
+                .cast(Object.class)
+                .collectList()
+                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore recupero pull request: " + e.getMessage()))))
+                .transform(metrics.tool("devops_list_pull_requests"));
     }
 
     @ReactiveTool(name = "devops_get_pull_request",
@@ -122,57 +97,267 @@ public class DevOpsGitTools {
     @SuppressWarnings("unchecked")
     public Mono<Map<String, Object>> getPullRequest(
             @ToolParam(description = "Repository ID or name") String repoId,
-            @ToolParam(description = "Pull request ID") int pullRequestId) {
-        return webClient.get()
-                .uri(props.getBaseUrl() + "/_apis/git/repositories/" + repoId
-                        + "/pullrequests/" + pullRequestId
-                        + "?api-version=" + props.getApiVersion())
-                .retrieve()
-                .bodyToMono(Map.class)
+            @ToolParam(description = "Pull request ID") int pullRequestId,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMap(org -> org.repositoryCatalog().repositoryId(repoId)
+                        .flatMap(repo -> org.webClient().get()
+                                .uri(org.props().getBaseUrl() + "/_apis/git/repositories/" + repo
+                                        + "/pullrequests/" + pullRequestId
+                                        + "?api-version=" + org.props().getApiVersion())
+                                .retrieve()
+                                .bodyToMono(Map.class)))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore recupero PR #" + pullRequestId + ": " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore recupero PR #" + pullRequestId + ": " + e.getMessage())))
+                .transform(metrics.tool("devops_get_pull_request"));
     }
 
     @ReactiveTool(name = "devops_list_repo_files",
           description = "Lists files in a Git repository, optionally filtered by branch and path")
-    @SuppressWarnings("unchecked")
-    public Mono<List<Map<String, Object>>> listRepoFiles(
+    public Mono<List<Object>> listRepoFiles(
             @ToolParam(description = "Repository ID or name") String repoId,
             @ToolParam(description = "Path in the repository, e.g. /src/main", required = false) String scopePath,
             @ToolParam(description = "Branch name, e.g. main, develop", required = false) String branch,
-            @ToolParam(description = "Recursion level: OneLevel, Full (default: OneLevel)", required = false) String recursionLevel) {
-        StringBuilder uri = new StringBuilder();
-        uri.append(props.getBaseUrl())
-           .append("/_apis/git/repositories/").append(repoId)
-           .append("/items?api-version=").append(props.getApiVersion());
-
+            @ToolParam(description = "Recursion level: OneLevel, Full (default: OneLevel)", required = false) String recursionLevel,
+            @ToolParam(description = "Maximum number of items to return, following server pagination (default: all)", required = false)
+            Integer maxItems,
+            @ToolParam(description = "Page size requested per call (default: 100)", required = false)
+            Integer pageSize,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        StringBuilder query = new StringBuilder();
         if (scopePath != null && !scopePath.isBlank()) {
-            uri.append("&scopePath=").append(scopePath);
+            query.append("&scopePath=").append(scopePath);
         }
         if (branch != null && !branch.isBlank()) {
-            uri.append("&versionDescriptor.version=").append(branch)
-               .append("&versionDescriptor.versionType=branch");
+            query.append("&versionDescriptor.version=").append(branch)
+                 .append("&versionDescriptor.versionType=branch");
         }
-        uri.append("&recursionLevel=").append(
+        query.append("&recursionLevel=").append(
                 recursionLevel != null && !recursionLevel.isBlank() ? recursionLevel : "OneLevel");
 
-        return webClient.get()
-                .uri(uri.toString())
-                .retrieve()
-                .bodyToMono(Map.class)
-                .map(response -> {
-                    if (!response.containsKey("value")) {
-                        return List.<Map<String, Object>>of();
-                    }
-                    List<Map<String, Object>> items = (List<Map<String, Object>>) response.get("value");
-                    return items.stream().map(item -> {
-                        Map<String, Object> result = new LinkedHashMap<>();
-                        result.put("path", item.getOrDefault("path", ""));
-                        result.put("isFolder", item.getOrDefault("isFolder", false));
-                        result.put("gitObjectType", item.getOrDefault("gitObjectType", ""));
-                        return result;
-                    }).toList();
+        return organizations.resolve(organization)
+                .flatMapMany(org -> org.repositoryCatalog().repositoryId(repoId)
+                        .flatMapMany(repo -> org.paginator().fetch(org.props().getBaseUrl() + "/_apis/git/repositories/" + repo
+                                        + "/items?api-version=" + org.props().getApiVersion() + query,
+                                GitItem.class, DevOpsPaginator.Paging.CONTINUATION_ONLY, maxItems, pageSize)))
+                .cast(Object.class)
+                .collectList()
+                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore recupero file repository: " + e.getMessage()))))
+                .transform(metrics.tool("devops_list_repo_files"));
+    }
+
+    @ReactiveTool(name = "devops_get_file_content",
+          description = "Reads a single file from a Git repository at a branch, tag or commit. File contents are cached locally by "
+                      + "object SHA, and with a commit SHA as version the whole read is served from disk after the first time. "
+                      + "To read many files prefer devops_download_repo_snapshot.")
+    public Mono<Map<String, Object>> getFileContent(
+            @ToolParam(description = "Repository ID or name") String repoId,
+            @ToolParam(description = "File path, e.g. /src/main/App.java") String path,
+            @ToolParam(description = "Branch, tag or commit SHA (default: the repository default branch)", required = false) String version,
+            @ToolParam(description = "Version type: branch, tag, commit (default: commit for a 40-character SHA, otherwise branch)", required = false)
+            String versionType,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        String type = versionType(version, versionType);
+        boolean pinned = "commit".equalsIgnoreCase(type) && DevOpsGitObjectCache.isSha(version);
+
+        return organizations.resolve(organization)
+                .flatMap(org -> org.repositoryCatalog().repositoryId(repoId)
+                        .flatMap(repo -> {
+                            Map<String, Object> variables = new HashMap<>();
+                            variables.put("repo", repo);
+                            variables.put("path", path);
+                            StringBuilder uri = new StringBuilder(org.props().getBaseUrl())
+                                    .append("/_apis/git/repositories/{repo}/items?path={path}");
+                            if (version != null && !version.isBlank()) {
+                                uri.append("&versionDescriptor.version={version}&versionDescriptor.versionType={type}");
+                                variables.put("version", version);
+                                variables.put("type", type);
+                            }
+                            uri.append("&api-version=").append(org.props().getApiVersion());
+
+                            Supplier<Mono<byte[]>> resolveObjectId = () -> org.webClient().get()
+                                    .uri(uri.toString(), variables)
+                                    .accept(MediaType.APPLICATION_JSON)
+                                    .retrieve()
+                                    .bodyToMono(GitItem.class)
+                                    .map(item -> {
+                                        if (item.isFolder() || item.objectId() == null) {
+                                            throw new IllegalArgumentException(path + " e' una cartella");
+                                        }
+                                        return item.objectId().getBytes(StandardCharsets.UTF_8);
+                                    });
+                            // percorso -> objectId e' immutabile solo per un commit fissato
+                            Mono<byte[]> objectId = pinned
+                                    ? objectCache.getOrFetch(DevOpsGitObjectCache.key(org.name(), "path",
+                                            version.toLowerCase(Locale.ROOT) + ":" + path), resolveObjectId)
+                                    : resolveObjectId.get();
+
+                            return objectId.map(bytes -> new String(bytes, StandardCharsets.UTF_8))
+                                    .flatMap(sha -> {
+                                        String key = DevOpsGitObjectCache.key(org.name(), "blob", sha);
+                                        // in cache solo i blob letti per intero (entro max-read-size)
+                                        return objectCache.get(key)
+                                                .map(content -> fileContent(org, path, sha, content, true))
+                                                .switchIfEmpty(Mono.defer(() -> readBlob(org, repo, sha)
+                                                        .flatMap(blob -> (blob.complete() ? objectCache.put(key, blob.bytes()) : Mono.<Void>empty())
+                                                                .thenReturn(fileContent(org, path, sha, blob.bytes(), blob.complete())))));
+                                    });
+                        }))
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore lettura file " + path + ": " + e.getMessage())))
+                .transform(metrics.tool("devops_get_file_content"));
+    }
+
+    /** Inizio di un blob, al piu' max-read-size byte; complete se il blob non li supera */
+    private record Blob(byte[] bytes, boolean complete) {
+    }
+
+    /**
+     * Legge un blob in streaming tenendo solo i primi max-read-size byte: oltre la lettura viene
+     * interrotta, quindi file di qualsiasi dimensione non passano dal limite del codec.
+     */
+    private static Mono<Blob> readBlob(DevOpsOrganizations.Organization org, String repoId, String sha) {
+        int limit = (int) Math.min(Integer.MAX_VALUE - 8, org.props().getRepoSnapshot().getMaxReadSize().toBytes());
+        return Mono.defer(() -> {
+            ByteArrayOutputStream head = new ByteArrayOutputStream();
+            boolean[] overflow = {false};
+            return org.webClient().get()
+                    .uri(org.props().getBaseUrl() + "/_apis/git/repositories/{repo}/blobs/{sha}"
+                            + "?$format=octetstream&api-version=" + org.props().getApiVersion(), repoId, sha)
+                    .attribute(DevOpsRetryFilter.NO_HEDGE, true)
+                    // oggetto indirizzato per SHA: lo conserva gia' DevOpsGitObjectCache
+                    .attribute(DevOpsEtagCacheFilter.DISABLED, true)
+                    .accept(MediaType.APPLICATION_OCTET_STREAM)
+                    .retrieve()
+                    .bodyToFlux(DataBuffer.class)
+                    .doOnNext(buffer -> {
+                        try {
+                            int take = Math.min(buffer.readableByteCount(), limit - head.size());
+                            overflow[0] |= take < buffer.readableByteCount();
+                            byte[] chunk = new byte[take];
+                            buffer.read(chunk);
+                            head.writeBytes(chunk);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .takeUntil(buffer -> overflow[0])
+                    .then(Mono.fromCallable(() -> new Blob(head.toByteArray(), !overflow[0])));
+        });
+    }
+
+    private static Map<String, Object> fileContent(DevOpsOrganizations.Organization org, String path,
+                                                   String objectId, byte[] content, boolean complete) {
+        int limit = (int) Math.min(content.length, org.props().getRepoSnapshot().getMaxReadSize().toBytes());
+        boolean truncated = !complete || limit < content.length;
+        String text = DevOpsRepoSnapshots.decodeText(limit < content.length ? Arrays.copyOf(content, limit) : content, truncated);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("path", path);
+        result.put("objectId", objectId);
+        // dimensione nota solo se il blob e' stato letto per intero
+        if (complete) result.put("size", content.length);
+        result.put("binary", text == null);
+        result.put("truncated", truncated);
+        if (text != null) result.put("content", text);
+        return result;
+    }
+
+    @ReactiveTool(name = "devops_compare_refs",
+          description = "Compares two branches, tags or commits of a Git repository (what changed from base to target): "
+                      + "ahead/behind counts, change counts by type and by folder, and the first changed paths. "
+                      + "Results for a commit pair are cached locally since that diff never changes.")
+    public Mono<Map<String, Object>> compareRefs(
+            @ToolParam(description = "Repository ID or name") String repoId,
+            @ToolParam(description = "Base version, e.g. main") String baseVersion,
+            @ToolParam(description = "Target version, e.g. develop") String targetVersion,
+            @ToolParam(description = "Base version type: branch, tag, commit (default: commit for a 40-character SHA, otherwise branch)", required = false)
+            String baseVersionType,
+            @ToolParam(description = "Target version type: branch, tag, commit (default: commit for a 40-character SHA, otherwise branch)", required = false)
+            String targetVersionType,
+            @ToolParam(description = "Folder depth used to group changes, e.g. 2 groups by /src/main (default: 2)", required = false)
+            Integer folderDepth,
+            @ToolParam(description = "Maximum number of changed paths to list (default: 100)", required = false) Integer maxChanges,
+            @ToolParam(description = "Maximum number of changes to scan, following server pagination (default: 20000)", required = false)
+            Integer maxScan,
+            @ToolParam(description = "Page size requested per call (default: 1000)", required = false) Integer pageSize,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMap(org -> org.repositoryCatalog().repositoryId(repoId)
+                        .flatMap(repo -> DevOpsRefComparison.compare(org, objectCache, new DevOpsRefComparison.Request(repo,
+                                baseVersion, versionType(baseVersion, baseVersionType),
+                                targetVersion, versionType(targetVersion, targetVersionType),
+                                pageSize != null && pageSize > 0 ? pageSize : 1000,
+                                maxChanges != null && maxChanges >= 0 ? maxChanges : 100,
+                                maxScan != null && maxScan > 0 ? maxScan : 20000,
+                                folderDepth != null && folderDepth > 0 ? folderDepth : 2))))
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore confronto " + baseVersion + ".." + targetVersion + ": " + e.getMessage())))
+                .transform(metrics.tool("devops_compare_refs"));
+    }
+
+    private static String versionType(String version, String versionType) {
+        return versionType != null && !versionType.isBlank() ? versionType
+                : DevOpsGitObjectCache.isSha(version) ? "commit" : "branch";
+    }
+
+    @ReactiveTool(name = "devops_download_repo_snapshot",
+          description = "Downloads a branch (or a path) of a Git repository as a zip archive to local disk in a single transfer "
+                      + "and returns a snapshotId plus the first file paths. Use it before reading many files: "
+                      + "devops_read_snapshot_file and devops_list_snapshot_files then work on the local copy.")
+    public Mono<Map<String, Object>> downloadRepoSnapshot(
+            @ToolParam(description = "Repository ID or name") String repoId,
+            @ToolParam(description = "Branch name, e.g. main (default: the repository default branch)", required = false) String branch,
+            @ToolParam(description = "Path in the repository to download, e.g. /src (default: /)", required = false) String scopePath,
+            @ToolParam(description = "Maximum number of file paths to include in the response (default: 200)", required = false)
+            Integer maxFiles,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        int limit = maxFiles != null && maxFiles >= 0 ? maxFiles : 200;
+        return organizations.resolve(organization)
+                .flatMap(org -> org.repositoryCatalog().repositoryId(repoId)
+                        .flatMap(repo -> snapshots.download(org, repo, branch, scopePath)))
+                .flatMap(snapshot -> snapshots.list(snapshot.id(), null, limit)
+                        .map(files -> {
+                            Map<String, Object> result = new LinkedHashMap<>();
+                            result.put("snapshotId", snapshot.id());
+                            result.put("repository", snapshot.repository());
+                            if (snapshot.branch() != null) result.put("branch", snapshot.branch());
+                            result.put("scopePath", snapshot.scopePath());
+                            result.put("bytes", snapshot.bytes());
+                            result.put("fileCount", snapshot.files());
+                            result.put("files", files);
+                            return result;
+                        }))
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore download snapshot repository: " + e.getMessage())))
+                .transform(metrics.tool("devops_download_repo_snapshot"));
+    }
+
+    @ReactiveTool(name = "devops_list_snapshot_files",
+          description = "Lists file paths in a repository snapshot downloaded with devops_download_repo_snapshot")
+    public Mono<List<Object>> listSnapshotFiles(
+            @ToolParam(description = "Snapshot ID returned by devops_download_repo_snapshot") String snapshotId,
+            @ToolParam(description = "Path prefix, e.g. /src/main (default: all files)", required = false) String prefix,
+            @ToolParam(description = "Maximum number of paths to return (default: 1000)", required = false) Integer maxItems) {
+        int limit = maxItems != null && maxItems > 0 ? maxItems : 1000;
+        return snapshots.list(snapshotId, prefix, limit)
+                .map(Collections::<Object>unmodifiableList)
+                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore elenco file snapshot: " + e.getMessage()))))
+                .transform(metrics.tool("devops_list_snapshot_files"));
+    }
+
+    @ReactiveTool(name = "devops_read_snapshot_file",
+          description = "Reads a file from a local repository snapshot (no call to Azure DevOps). Binary files return only their size.")
+    public Mono<Map<String, Object>> readSnapshotFile(
+            @ToolParam(description = "Snapshot ID returned by devops_download_repo_snapshot") String snapshotId,
+            @ToolParam(description = "File path in the snapshot, e.g. /src/main/App.java") String path) {
+        return snapshots.read(snapshotId, path)
+                .map(content -> {
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("path", content.path());
+                    result.put("size", content.size());
+                    result.put("binary", content.binary());
+                    result.put("truncated", content.truncated());
+                    if (content.text() != null) result.put("content", content.text());
+                    return result;
                 })
-                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore recupero file repository: " + e.getMessage()))));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore lettura file snapshot " + path + ": " + e.getMessage())))
+                .transform(metrics.tool("devops_read_snapshot_file"));
     }
 }
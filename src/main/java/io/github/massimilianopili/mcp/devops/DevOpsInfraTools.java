@@ -1,10 +1,10 @@
 package io.github.massimilianopili.mcp.devops;
 
 import io.github.massimilianopili.ai.reactive.annotation.ReactiveTool;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 import java.util.*;
@@ -13,85 +13,63 @@ import java.util.*;
 @ConditionalOnProperty(name = "mcp.devops.pat")
 public class DevOpsInfraTools {
 
-    private final WebClient webClient;
-    private final DevOpsProperties props;
+    private final DevOpsOrganizations organizations;
+    private final DevOpsMetrics metrics;
 
     public DevOpsInfraTools(
-            @Qualifier("devOpsWebClient") WebClient webClient,
-            DevOpsProperties props) {
-        this.webClient = webClient;
-        this.props = props;
+            DevOpsOrganizations organizations,
+            DevOpsMetrics metrics) {
+        this.organizations = organizations;
+        this.metrics = metrics;
     }
 
     @ReactiveTool(name = "devops_list_agent_pools",
           description = "Lists all agent pools available in the Azure DevOps organization")
-    @SuppressWarnings("unchecked")
-    public Mono<List<Map<String, Object>>> listAgentPools() {
-        return webClient.get()
-                .uri(props.getOrgBaseUrl() + "/_apis/distributedtask/pools?api-version=" + props.getApiVersion())
-                .retrieve()
-                .bodyToMono(Map.class)
-                .map(response -> {
-                    if (!response.containsKey("value")) return List.<Map<String, Object>>of();
-                    List<Map<String, Object>> pools = (List<Map<String, Object>>) response.get("value");
-                    return pools.stream().map(p -> {
-                        Map<String, Object> r = new LinkedHashMap<>();
-                        r.put("id", p.getOrDefault("id", ""));
-                        r.put("name", p.getOrDefault("name", ""));
-                        r.put("poolType", p.getOrDefault("poolType", ""));
-                        r.put("size", p.getOrDefault("size", 0));
-                        r.put("isHosted", p.getOrDefault("isHosted", false));
-                        return r;
-                    }).toList();
-                })
-                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore lista agent pool: " + e.getMessage()))));
+    public Mono<List<Map<String, Object>>> listAgentPools(
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMapMany(org -> org.webClient().get()
+                        .uri(org.props().getOrgBaseUrl() + "/_apis/distributedtask/pools?api-version=" + org.props().getApiVersion())
+                        .retrieve()
+                        .bodyToFlux(DataBuffer.class))
+                .transform(body -> DevOpsJsonStream.values(body, "id", "name", "poolType", "size", "isHosted"))
+                .collectList()
+                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore lista agent pool: " + e.getMessage()))))
+                .transform(metrics.tool("devops_list_agent_pools"));
     }
 
     @ReactiveTool(name = "devops_list_build_queues",
           description = "Lists build queues (agent queues) available in the Azure DevOps project")
-    @SuppressWarnings("unchecked")
-    public Mono<List<Map<String, Object>>> listBuildQueues() {
-        return webClient.get()
-                .uri(props.getBaseUrl() + "/_apis/distributedtask/queues?api-version=" + props.getApiVersion())
-                .retrieve()
-                .bodyToMono(Map.class)
-                .map(response -> {
-                    if (!response.containsKey("value")) return List.<Map<String, Object>>of();
-                    List<Map<String, Object>> queues = (List<Map<String, Object>>) response.get("value");
-                    return queues.stream().map(q -> {
-                        Map<String, Object> r = new LinkedHashMap<>();
-                        r.put("id", q.getOrDefault("id", ""));
-                        r.put("name", q.getOrDefault("name", ""));
-                        r.put("poolId", q.containsKey("pool")
-                                ? ((Map<String, Object>) q.get("pool")).getOrDefault("id", "")
-                                : "");
-                        return r;
-                    }).toList();
+    public Mono<List<Map<String, Object>>> listBuildQueues(
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMapMany(org -> org.webClient().get()
+                        .uri(org.props().getBaseUrl() + "/_apis/distributedtask/queues?api-version=" + org.props().getApiVersion())
+                        .retrieve()
+                        .bodyToFlux(DataBuffer.class))
+                .transform(body -> DevOpsJsonStream.values(body, "id", "name", "pool"))
+                .map(q -> {
+                    Object pool = q.remove("pool");
+                    q.put("poolId", pool instanceof Map<?, ?> p ? p.get("id") : "");
+                    return q;
                 })
-                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore lista build queue: " + e.getMessage()))));
+                .collectList()
+                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore lista build queue: " + e.getMessage()))))
+                .transform(metrics.tool("devops_list_build_queues"));
     }
 
     @ReactiveTool(name = "devops_list_service_connections",
           description = "Lists service connections (service endpoints) configured in the Azure DevOps project")
-    @SuppressWarnings("unchecked")
-    public Mono<List<Map<String, Object>>> listServiceConnections() {
-        return webClient.get()
-                .uri(props.getBaseUrl() + "/_apis/serviceendpoint/endpoints?api-version=" + props.getApiVersion())
-                .retrieve()
-                .bodyToMono(Map.class)
-                .map(response -> {
-                    if (!response.containsKey("value")) return List.<Map<String, Object>>of();
-                    List<Map<String, Object>> endpoints = (List<Map<String, Object>>) response.get("value");
-                    return endpoints.stream().map(ep -> {
-                        Map<String, Object> r = new LinkedHashMap<>();
-                        r.put("id", ep.getOrDefault("id", ""));
-                        r.put("name", ep.getOrDefault("name", ""));
-                        r.put("type", ep.getOrDefault("type", ""));
-                        r.put("url", ep.getOrDefault("url", ""));
-                        r.put("isShared", ep.getOrDefault("isShared", false));
-                        return r;
-                    }).toList();
-                })
-                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore lista service connection: " + e.getMessage()))));
+    public Mono<List<Map<String, Object>>> listServiceConnections(
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMapMany(org -> org.webClient().get()
+                        .uri(org.props().getBaseUrl() + "/_apis/serviceendpoint/endpoints?api-version=" + org.props().getApiVersion())
+                        .retrieve()
+                        .bodyToFlux(DataBuffer.class))
+                .transform(body -> DevOpsJsonStream.values(body, "id", "name", "type", "url", "isShared"))
+                .collectList()
+                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore lista service connection: " + e.getMessage()))))
+                .transform(metrics.tool("devops_list_service_connections"));
     }
 }
@@ -0,0 +1,203 @@
+package io.github.massimilianopili.mcp.devops;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Decoder JSON in streaming per le risposte lista di Azure DevOps ({"count": N, "value": [...]}).
+ * Il body viene tokenizzato chunk per chunk con il parser non bloccante di Jackson e gli elementi
+ * dell'array "value" vengono emessi uno alla volta, come mappe con i soli campi proiettati
+ * oppure deserializzati direttamente in un record del package model.
+ * Non passa dai codec del WebClient, quindi non e' soggetto al limite maxInMemorySize.
+ */
+public final class DevOpsJsonStream {
+
+    static final JsonFactory JSON_FACTORY = new JsonFactory();
+    static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private DevOpsJsonStream() {}
+
+    /**
+     * Elementi dell'array "value" come mappe con i soli campi indicati (tutti se nessuno).
+     * I campi strutturati proiettati (oggetti/array) vengono materializzati per intero.
+     */
+    public static Flux<Map<String, Object>> values(Flux<DataBuffer> body, String... fields) {
+        Set<String> projection = fields.length == 0 ? null : Set.of(fields);
+        return decode(body, () -> new ValueArrayTokenizer(projection, null));
+    }
+
+    /**
+     * Elementi dell'array "value" deserializzati nel tipo indicato. I campi non mappati dal tipo
+     * vengono scartati da Jackson, quindi il record definisce anche la proiezione.
+     */
+    public static <T> Flux<T> values(Flux<DataBuffer> body, Class<T> type) {
+        return decode(body, () -> new ValueArrayTokenizer(null, type));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Flux<T> decode(Flux<DataBuffer> body, Supplier<ValueArrayTokenizer> factory) {
+        return Flux.defer(() -> {
+            ValueArrayTokenizer tokenizer = factory.get();
+            return body.concatMapIterable(tokenizer::feed)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(tokenizer.endOfInput())))
+                    .doFinally(s -> tokenizer.close())
+                    .map(element -> (T) element);
+        });
+    }
+
+    /** Tokenizer a stati: riconosce la sola chiave "value" di primo livello e i suoi elementi oggetto. */
+    private static final class ValueArrayTokenizer {
+
+        private final Set<String> projection;
+        private final Class<?> elementType;
+        private final JsonParser parser;
+        private final ByteArrayFeeder feeder;
+
+        private int depth;
+        private boolean valueField;
+        private boolean inValue;
+        private List<Object> out;
+        private Map<String, Object> current;
+        private String pendingField;
+        private TokenBuffer capture;
+        private int captureDepth;
+
+        ValueArrayTokenizer(Set<String> projection, Class<?> elementType) {
+            this.projection = projection;
+            this.elementType = elementType;
+            try {
+                this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        }
+
+        List<Object> feed(DataBuffer buffer) {
+            try {
+                byte[] bytes = new byte[buffer.readableByteCount()];
+                buffer.read(bytes);
+                feeder.feedInput(bytes, 0, bytes.length);
+                return drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+        }
+
+        List<Object> endOfInput() {
+            feeder.endOfInput();
+            try {
+                return drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void close() {
+            try {
+                parser.close();
+            } catch (IOException e) {
+                // parser gia' rilasciato
+            }
+        }
+
+        private List<Object> drain() throws IOException {
+            out = new ArrayList<>();
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                if (capture != null) {
+                    captureToken(token);
+                    continue;
+                }
+                switch (token) {
+                    case START_OBJECT, START_ARRAY -> {
+                        boolean typedElement = elementType != null && inValue && depth == 2
+                                && token == JsonToken.START_OBJECT;
+                        if (typedElement || (inValue && depth == 3 && pendingField != null)) {
+                            capture = new TokenBuffer(MAPPER, false);
+                            captureDepth = 0;
+                            captureToken(token);
+                            continue;
+                        }
+                        depth++;
+                        if (depth == 2 && valueField && token == JsonToken.START_ARRAY) {
+                            inValue = true;
+                        } else if (depth == 3 && inValue && token == JsonToken.START_OBJECT) {
+                            current = new LinkedHashMap<>();
+                        }
+                        valueField = false;
+                    }
+                    case END_OBJECT, END_ARRAY -> {
+                        if (depth == 3 && current != null) {
+                            out.add(current);
+                            current = null;
+                        } else if (depth == 2 && inValue) {
+                            inValue = false;
+                        }
+                        depth--;
+                    }
+                    case FIELD_NAME -> {
+                        String name = parser.currentName();
+                        if (depth == 1) {
+                            valueField = "value".equals(name);
+                        } else if (depth == 3 && current != null) {
+                            pendingField = projection == null || projection.contains(name) ? name : null;
+                        }
+                    }
+                    default -> {
+                        if (depth == 3 && current != null && pendingField != null) {
+                            current.put(pendingField, scalar(token));
+                            pendingField = null;
+                        }
+                        valueField = false;
+                    }
+                }
+            }
+            return out;
+        }
+
+        private void captureToken(JsonToken token) throws IOException {
+            capture.copyCurrentEvent(parser);
+            if (token.isStructStart()) {
+                captureDepth++;
+            } else if (token.isStructEnd() && --captureDepth == 0) {
+                try (JsonParser captured = capture.asParser(MAPPER)) {
+                    if (current != null) {
+                        current.put(pendingField, MAPPER.readValue(captured, Object.class));
+                    } else {
+                        out.add(MAPPER.readValue(captured, elementType));
+                    }
+                }
+                capture = null;
+                pendingField = null;
+            }
+        }
+
+        private Object scalar(JsonToken token) throws IOException {
+            return switch (token) {
+                case VALUE_STRING -> parser.getText();
+                case VALUE_NUMBER_INT -> parser.getNumberValue();
+                case VALUE_NUMBER_FLOAT -> parser.getDoubleValue();
+                case VALUE_TRUE -> Boolean.TRUE;
+                case VALUE_FALSE -> Boolean.FALSE;
+                default -> null;
+            };
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.massimilianopili.mcp.devops;
+
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Punto di strumentazione dei tool e delle chiamate verso Azure DevOps.
+ * Questa implementazione non registra nulla: viene usata quando Micrometer non e' nel classpath
+ * o non c'e' un MeterRegistry; altrimenti DevOpsToolsAutoConfiguration registra DevOpsMicrometerMetrics.
+ */
+public class DevOpsMetrics {
+
+    private static final Pattern GUID = Pattern.compile(
+            "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    private static final Pattern SHA = Pattern.compile("[0-9a-fA-F]{40}");
+
+    /** Segmenti seguiti da un nome (non solo da un ID) che altrimenti esploderebbe la cardinalita' */
+    private static final List<String> NAMED_COLLECTIONS = List.of(
+            "repositories", "wikis", "teams", "projects");
+
+    /** Da applicare con transform() al Mono restituito da un metodo @ReactiveTool. */
+    public <T> Function<Mono<T>, Mono<T>> tool(String name) {
+        return Function.identity();
+    }
+
+    /** Limitatore di un'organizzazione (principale o profilo): ognuna ha il proprio. */
+    public void bindThrottle(String organization, DevOpsThrottleFilter throttle) {
+    }
+
+    /** Filtro del devOpsWebClient per latenza, byte e status per template di endpoint. */
+    public ExchangeFilterFunction endpointFilter() {
+        return (request, next) -> next.exchange(request);
+    }
+
+    /**
+     * I tool convertono gli errori in {"error": ...} (anche dentro una lista di un elemento)
+     * invece di propagare l'eccezione: e' questo il segnale di errore da contare.
+     */
+    static boolean isErrorResult(Object result) {
+        if (result instanceof Map<?, ?> map) {
+            return map.containsKey("error");
+        }
+        if (result instanceof List<?> list && list.size() == 1) {
+            return list.get(0) instanceof Map<?, ?> map && map.containsKey("error");
+        }
+        return false;
+    }
+
+    /**
+     * Template dell'endpoint: si parte da _apis (scartando organizzazione, progetto e team) e gli
+     * identificativi diventano {id}, es. /_apis/wit/workitems/{id}. La query string non conta.
+     */
+    static String endpointTemplate(URI uri) {
+        String path = uri.getPath();
+        int apis = path.indexOf("/_apis/");
+        if (apis < 0) return "other";
+        String[] segments = path.substring(apis + 1).split("/");
+        StringBuilder template = new StringBuilder();
+        String previous = "";
+        for (String segment : segments) {
+            template.append('/');
+            if (segment.startsWith("$") && "workitems".equals(previous)) {
+                template.append("{type}");
+            } else if (NUMBER.matcher(segment).matches() || GUID.matcher(segment).matches()
+                    || SHA.matcher(segment).matches() || NAMED_COLLECTIONS.contains(previous)) {
+                template.append("{id}");
+            } else {
+                template.append(segment);
+            }
+            previous = segment;
+        }
+        return template.toString();
+    }
+}
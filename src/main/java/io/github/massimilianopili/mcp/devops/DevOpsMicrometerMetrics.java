@@ -0,0 +1,135 @@
+package io.github.massimilianopili.mcp.devops;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Metriche Micrometer dei tool e delle chiamate Azure DevOps:
+ * <ul>
+ *   <li>devops.tool (timer, tag tool/outcome) e devops.tool.errors (counter, tag tool)</li>
+ *   <li>devops.http.client.requests (timer) e devops.http.client.response.size (byte),
+ *       con tag method/uri/status dove uri e' il template dell'endpoint</li>
+ *   <li>contatori dei filtri del WebClient (cache ETag, retry, coalescing) e dei limitatori,
+ *       uno per organizzazione con tag organization</li>
+ * </ul>
+ */
+public class DevOpsMicrometerMetrics extends DevOpsMetrics {
+
+    private final MeterRegistry registry;
+
+    public DevOpsMicrometerMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public <T> Function<Mono<T>, Mono<T>> tool(String name) {
+        return result -> Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return result
+                    .doOnSuccess(value -> stop(sample, name, isErrorResult(value) ? "error" : "success"))
+                    .doOnError(e -> stop(sample, name, "error"))
+                    .doOnCancel(() -> stop(sample, name, "cancelled"));
+        });
+    }
+
+    @Override
+    public ExchangeFilterFunction endpointFilter() {
+        return (request, next) -> Mono.defer(() -> {
+            long start = System.nanoTime();
+            String method = request.method().name();
+            String uri = endpointTemplate(request.url());
+            return next.exchange(request)
+                    .doOnError(e -> recordRequest(method, uri, "IO_ERROR", start))
+                    .map(response -> {
+                        String status = String.valueOf(response.statusCode().value());
+                        recordRequest(method, uri, status, start);
+                        return countBytes(response, method, uri, status);
+                    });
+        });
+    }
+
+    /** Espone i contatori dei filtri condivisi dalle organizzazioni. */
+    public void bindFilters(DevOpsEtagCacheFilter etagCache, DevOpsRetryFilter retry,
+                            DevOpsCoalescingFilter coalescing) {
+        FunctionCounter.builder("devops.http.cache.hits", etagCache, c -> c.stats().hits()).register(registry);
+        FunctionCounter.builder("devops.http.cache.misses", etagCache, c -> c.stats().misses()).register(registry);
+        FunctionCounter.builder("devops.http.cache.evictions", etagCache, c -> c.stats().evictions())
+                .register(registry);
+        Gauge.builder("devops.http.cache.size", etagCache, c -> c.stats().bytes())
+                .baseUnit("bytes").register(registry);
+
+        FunctionCounter.builder("devops.http.retries", retry, r -> r.stats().retried()).register(registry);
+        FunctionCounter.builder("devops.http.hedged", retry, r -> r.stats().hedged()).register(registry);
+
+        FunctionCounter.builder("devops.http.coalescing.issued", coalescing, c -> c.stats().issued())
+                .register(registry);
+        FunctionCounter.builder("devops.http.coalescing.coalesced", coalescing, c -> c.stats().coalesced())
+                .register(registry);
+    }
+
+    @Override
+    public void bindThrottle(String organization, DevOpsThrottleFilter throttle) {
+        Gauge.builder("devops.http.throttle.rate", throttle, t -> t.stats().requestsPerSecond())
+                .tag("organization", organization)
+                .description("Richieste al secondo consentite dal limitatore adattivo").register(registry);
+        FunctionCounter.builder("devops.http.throttle.delayed", throttle, t -> t.stats().delayed())
+                .tag("organization", organization).register(registry);
+        FunctionCounter.builder("devops.http.throttle.429", throttle, t -> t.stats().throttled())
+                .tag("organization", organization)
+                .description("Risposte 429").register(registry);
+        FunctionCounter.builder("devops.http.throttle.rejected", throttle, t -> t.stats().rejected())
+                .tag("organization", organization)
+                .description("Richieste rifiutate lato client: attesa stimata oltre max-wait").register(registry);
+    }
+
+    private void stop(Timer.Sample sample, String tool, String outcome) {
+        sample.stop(Timer.builder("devops.tool")
+                .tag("tool", tool)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry));
+        if ("error".equals(outcome)) {
+            Counter.builder("devops.tool.errors").tag("tool", tool).register(registry).increment();
+        }
+    }
+
+    private void recordRequest(String method, String uri, String status, long startNanos) {
+        Timer.builder("devops.http.client.requests")
+                .tags("method", method, "uri", uri, "status", status)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Conta i byte del body alla prima lettura (le successive, es. releaseBody, lo trovano consumato). */
+    private ClientResponse countBytes(ClientResponse response, String method, String uri, String status) {
+        AtomicBoolean claimed = new AtomicBoolean();
+        return response.mutate()
+                .body(body -> Flux.defer(() -> {
+                    if (!claimed.compareAndSet(false, true)) return body;
+                    AtomicLong bytes = new AtomicLong();
+                    return body
+                            .doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount()))
+                            .doFinally(signal -> DistributionSummary.builder("devops.http.client.response.size")
+                                    .baseUnit("bytes")
+                                    .tags("method", method, "uri", uri, "status", status)
+                                    .publishPercentileHistogram()
+                                    .register(registry)
+                                    .record(bytes.get()));
+                }))
+                .build();
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.massimilianopili.mcp.devops;
+
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.*;
+
+/**
+ * Instradamento dei tool verso l'organizzazione richiesta (parametro opzionale "organization").
+ * L'organizzazione principale usa i bean del devOpsWebClient; ogni profilo in mcp.devops.organizations
+ * ha WebClient, pool di connessioni e limitatore propri, mentre cache ETag, retry e coalescing sono
+ * condivisi (le chiavi includono gia' URL e scope del PAT).
+ */
+public class DevOpsOrganizations {
+
+    /** Descrizione comune del parametro "organization" dei tool */
+    public static final String PARAM_DESCRIPTION =
+            "Organization profile name (default: the main configured organization)";
+
+    /** Client e componenti di una singola organizzazione */
+    public record Organization(
+            String name,
+            DevOpsProperties props,
+            WebClient webClient,
+            DevOpsPaginator paginator,
+            DevOpsWorkItemBatch workItemBatch,
+            DevOpsWorkItemBulk workItemBulk,
+            DevOpsRepositoryCatalog repositoryCatalog) {
+    }
+
+    private final Organization main;
+    private final Map<String, Organization> byName = new LinkedHashMap<>();
+    private final List<ConnectionProvider> connectionProviders = new ArrayList<>();
+
+    public DevOpsOrganizations(Organization main) {
+        this.main = main;
+        byName.put(key(main.name()), main);
+    }
+
+    /** Registra un profilo con il nome del profilo e con quello dell'organizzazione Azure DevOps. */
+    public void register(String profile, Organization organization, ConnectionProvider connectionProvider) {
+        byName.put(key(profile), organization);
+        byName.putIfAbsent(key(organization.props().getOrganization()), organization);
+        connectionProviders.add(connectionProvider);
+    }
+
+    /** Organizzazione per nome (profilo o organizzazione), la principale se il nome e' assente. */
+    public Mono<Organization> resolve(String name) {
+        if (name == null || name.isBlank()) {
+            return Mono.just(main);
+        }
+        Organization organization = byName.get(key(name));
+        return organization != null ? Mono.just(organization)
+                : Mono.error(new IllegalArgumentException("Organizzazione non configurata: " + name
+                        + " (disponibili: " + String.join(", ", names()) + ")"));
+    }
+
+    public Organization main() {
+        return main;
+    }
+
+    public Set<String> names() {
+        return Collections.unmodifiableSet(byName.keySet());
+    }
+
+    /** Rilascia i pool dei profili; quello principale appartiene al bean devOpsConnectionProvider. */
+    public void dispose() {
+        connectionProviders.forEach(ConnectionProvider::dispose);
+    }
+
+    private static String key(String name) {
+        return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+    }
+}
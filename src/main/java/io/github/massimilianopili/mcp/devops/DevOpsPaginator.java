@@ -0,0 +1,96 @@
+package io.github.massimilianopili.mcp.devops;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Paginazione delle API lista Azure DevOps esposta come Flux di elementi.
+ * Segue l'header x-ms-continuationtoken oppure $top/$skip, con prefetch limitato della pagina
+ * successiva: la pagina N+1 viene richiesta mentre la N viene consumata, mai oltre.
+ * Il Flux si interrompe (e smette di chiedere pagine) al raggiungimento di maxItems; senza maxItems ne'
+ * default-max-items arriva fino all'ultima pagina.
+ */
+public class DevOpsPaginator {
+
+    static final String CONTINUATION_HEADER = "x-ms-continuationtoken";
+
+    /** Strategia di paginazione di un endpoint. topParam null: il server sceglie la dimensione pagina. */
+    public record Paging(boolean continuationToken, String topParam, String skipParam) {
+
+        /** x-ms-continuationtoken + continuationToken=..., pagine da $top */
+        public static final Paging CONTINUATION = new Paging(true, "$top", null);
+        /** x-ms-continuationtoken senza controllo della dimensione pagina (es. items) */
+        public static final Paging CONTINUATION_ONLY = new Paging(true, null, null);
+        /** $top/$skip, fine quando una pagina torna incompleta */
+        public static final Paging SKIP = new Paging(false, "$top", "$skip");
+
+        public static Paging skip(String topParam, String skipParam) {
+            return new Paging(false, topParam, skipParam);
+        }
+    }
+
+    private record Page<T>(List<T> items, String continuationToken, int nextSkip, boolean hasNext) {}
+
+    private final WebClient webClient;
+    private final DevOpsProperties.Pagination config;
+
+    public DevOpsPaginator(WebClient webClient, DevOpsProperties props) {
+        this.webClient = webClient;
+        this.config = props.getPagination();
+    }
+
+    /**
+     * Tutti gli elementi dell'array "value" dell'endpoint, pagina dopo pagina.
+     *
+     * @param uri      URI completo con query string (almeno api-version)
+     * @param maxItems limite di elementi, null o <= 0 per il default configurato (0 = nessun limite)
+     * @param pageSize dimensione pagina, null o <= 0 per il default configurato
+     */
+    public <T> Flux<T> fetch(String uri, Class<T> type, Paging paging, Integer maxItems, Integer pageSize) {
+        int limit = maxItems != null && maxItems > 0 ? maxItems : config.getDefaultMaxItems();
+        int size = pageSize != null && pageSize > 0 ? pageSize : config.getDefaultPageSize();
+        if (limit > 0) size = Math.min(size, limit);
+        int pageItems = size;
+
+        Flux<T> items = fetchPage(uri, type, paging, pageItems, null, 0)
+                .expand(page -> page.hasNext()
+                        ? fetchPage(uri, type, paging, pageItems, page.continuationToken(), page.nextSkip())
+                        : Mono.empty())
+                .concatMapIterable(Page::items, config.getPrefetchPages() + 1);
+        return limit > 0 ? items.take(limit) : items;
+    }
+
+    private <T> Mono<Page<T>> fetchPage(String uri, Class<T> type, Paging paging,
+                                        int size, String token, int skip) {
+        StringBuilder pageUri = new StringBuilder(uri);
+        if (paging.topParam() != null) {
+            pageUri.append('&').append(paging.topParam()).append('=').append(size);
+        }
+        if (paging.skipParam() != null && skip > 0) {
+            pageUri.append('&').append(paging.skipParam()).append('=').append(skip);
+        }
+        WebClient.RequestHeadersSpec<?> request = token != null
+                ? webClient.get().uri(pageUri + "&continuationToken={token}", token)
+                : webClient.get().uri(pageUri.toString());
+
+        return request.exchangeToMono(response -> {
+            if (response.statusCode().isError()) {
+                return response.createError();
+            }
+            String next = response.headers().asHttpHeaders().getFirst(CONTINUATION_HEADER);
+            return response.bodyToFlux(DataBuffer.class)
+                    .transform(body -> DevOpsJsonStream.values(body, type))
+                    .collectList()
+                    .map(items -> {
+                        boolean hasNext = !items.isEmpty() && (paging.continuationToken()
+                                ? next != null && !next.isBlank()
+                                : items.size() >= size);
+                        return new Page<>(items, next, skip + items.size(), hasNext);
+                    });
+        });
+    }
+}
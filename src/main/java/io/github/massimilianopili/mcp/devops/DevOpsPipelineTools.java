@@ -1,12 +1,13 @@
 package io.github.massimilianopili.mcp.devops;
 
 import io.github.massimilianopili.ai.reactive.annotation.ReactiveTool;
+import io.github.massimilianopili.mcp.devops.model.Pipeline;
+import io.github.massimilianopili.mcp.devops.model.PipelineRun;
 import org.springframework.ai.tool.annotation.ToolParam;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 import java.util.*;
@@ -15,68 +16,49 @@ import java.util.*;
 @ConditionalOnProperty(name = "mcp.devops.pat")
 public class DevOpsPipelineTools {
 
-    private final WebClient webClient;
-    private final DevOpsProperties props;
+    private final DevOpsOrganizations organizations;
+    private final DevOpsMetrics metrics;
 
     public DevOpsPipelineTools(
-            @Qualifier("devOpsWebClient") WebClient webClient,
-            DevOpsProperties props) {
-        this.webClient = webClient;
-        this.props = props;
+            DevOpsOrganizations organizations,
+            DevOpsMetrics metrics) {
+        this.organizations = organizations;
+        this.metrics = metrics;
     }
 
     @ReactiveTool(name = "devops_list_pipelines",
           description = "Lists all pipelines in the Azure DevOps project")
-    @SuppressWarnings("unchecked")
-    public Mono<List<Map<String, Object>>> listPipelines() {
-        return webClient.get()
-                .uri(props.getBaseUrl() + "/_apis/pipelines?api-version=" + props.getApiVersion())
-                .retrieve()
-                .bodyToMono(Map.class)
-                .map(response -> {
-                    if (!response.containsKey("value")) {
-                        return List.<Map<String, Object>>of();
-                    }
-                    List<Map<String, Object>> pipelines = (List<Map<String, Object>>) response.get("value");
-                    return pipelines.stream().map(p -> {
-                        Map<String, Object> result = new LinkedHashMap<>();
-                        result.put("id", p.getOrDefault("id", 0));
-                        result.put("name", p.getOrDefault("name", ""));
-                        result.put("folder", p.getOrDefault("folder", ""));
-                        result.put("revision", p.getOrDefault("revision", 0));
-                        return result;
-                    }).toList();
-                })
-                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore recupero pipeline: " + e.getMessage()))));
+    public Mono<List<Object>> listPipelines(
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMapMany(org -> org.webClient().get()
+                        .uri(org.props().getBaseUrl() + "/_apis/pipelines?api-version=" + org.props().getApiVersion())
+                        .retrieve()
+                        .bodyToFlux(DataBuffer.class))
+                .transform(body -> DevOpsJsonStream.values(body, Pipeline.class))
+                .cast(Object.class)
+                .collectList()
+                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore recupero pipeline: " + e.getMessage()))))
+                .transform(metrics.tool("devops_list_pipelines"));
     }
 
     @ReactiveTool(name = "devops_list_pipeline_runs",
           description = "Lists runs of a specific pipeline with state and result")
-    @SuppressWarnings("unchecked")
-    public Mono<List<Map<String, Object>>> listPipelineRuns(
-            @ToolParam(description = "Pipeline ID") int pipelineId) {
-        return webClient.get()
-                .uri(props.getBaseUrl() + "/_apis/pipelines/" + pipelineId
-                        + "/runs?api-version=" + props.getApiVersion())
-                .retrieve()
-                .bodyToMono(Map.class)
-                .map(response -> {
-                    if (!response.containsKey("value")) {
-                        return List.<Map<String, Object>>of();
-                    }
-                    List<Map<String, Object>> runs = (List<Map<String, Object>>) response.get("value");
-                    return runs.stream().map(r -> {
-                        Map<String, Object> result = new LinkedHashMap<>();
-                        result.put("id", r.getOrDefault("id", 0));
-                        result.put("name", r.getOrDefault("name", ""));
-                        result.put("state", r.getOrDefault("state", ""));
-                        result.put("result", r.getOrDefault("result", ""));
-                        result.put("createdDate", r.getOrDefault("createdDate", ""));
-                        result.put("finishedDate", r.getOrDefault("finishedDate", ""));
-                        return result;
-                    }).toList();
-                })
-                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore recupero run pipeline: " + e.getMessage()))));
+    public Mono<List<Object>> listPipelineRuns(
+            @ToolParam(description = "Pipeline ID") int pipelineId,
+            @ToolParam(description = "Maximum number of items to return, following server pagination (default: all)", required = false)
+            Integer maxItems,
+            @ToolParam(description = "Page size requested per call (default: 100)", required = false)
+            Integer pageSize,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMapMany(org -> org.paginator().fetch(org.props().getBaseUrl() + "/_apis/pipelines/" + pipelineId
+                                + "/runs?api-version=" + org.props().getApiVersion(),
+                        PipelineRun.class, DevOpsPaginator.Paging.CONTINUATION, maxItems, pageSize))
+                .cast(Object.class)
+                .collectList()
+                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore recupero run pipeline: " + e.getMessage()))))
+                .transform(metrics.tool("devops_list_pipeline_runs"));
     }
 
     @ReactiveTool(name = "devops_trigger_pipeline",
@@ -85,7 +67,8 @@ public class DevOpsPipelineTools {
     public Mono<Map<String, Object>> triggerPipeline(
             @ToolParam(description = "Pipeline ID to trigger") int pipelineId,
             @ToolParam(description = "Source branch, e.g. refs/heads/main (default: repository default branch)", required = false)
-            String branch) {
+            String branch,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
         Map<String, Object> body = new LinkedHashMap<>();
         if (branch != null && !branch.isBlank()) {
             String refName = branch.startsWith("refs/") ? branch : "refs/heads/" + branch;
@@ -96,14 +79,16 @@ public class DevOpsPipelineTools {
             ));
         }
 
-        return webClient.post()
-                .uri(props.getBaseUrl() + "/_apis/pipelines/" + pipelineId
-                        + "/runs?api-version=" + props.getApiVersion())
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(body)
-                .retrieve()
-                .bodyToMono(Map.class)
+        return organizations.resolve(organization)
+                .flatMap(org -> org.webClient().post()
+                        .uri(org.props().getBaseUrl() + "/_apis/pipelines/" + pipelineId
+                                + "/runs?api-version=" + org.props().getApiVersion())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(body)
+                        .retrieve()
+                        .bodyToMono(Map.class))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore avvio pipeline " + pipelineId + ": " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore avvio pipeline " + pipelineId + ": " + e.getMessage())))
+                .transform(metrics.tool("devops_trigger_pipeline"));
     }
 }
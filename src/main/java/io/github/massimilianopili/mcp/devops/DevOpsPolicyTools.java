@@ -2,11 +2,10 @@ package io.github.massimilianopili.mcp.devops;
 
 import io.github.massimilianopili.ai.reactive.annotation.ReactiveTool;
 import org.springframework.ai.tool.annotation.ToolParam;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 import java.util.*;
@@ -15,39 +14,34 @@ import java.util.*;
 @ConditionalOnProperty(name = "mcp.devops.pat")
 public class DevOpsPolicyTools {
 
-    private final WebClient webClient;
-    private final DevOpsProperties props;
+    private final DevOpsOrganizations organizations;
+    private final DevOpsMetrics metrics;
 
     public DevOpsPolicyTools(
-            @Qualifier("devOpsWebClient") WebClient webClient,
-            DevOpsProperties props) {
-        this.webClient = webClient;
-        this.props = props;
+            DevOpsOrganizations organizations,
+            DevOpsMetrics metrics) {
+        this.organizations = organizations;
+        this.metrics = metrics;
     }
 
     @ReactiveTool(name = "devops_list_branch_policies",
           description = "Lists branch policies configured in the Azure DevOps project")
-    @SuppressWarnings("unchecked")
-    public Mono<List<Map<String, Object>>> listBranchPolicies() {
-        return webClient.get()
-                .uri(props.getBaseUrl() + "/_apis/policy/configurations?api-version=" + props.getApiVersion())
-                .retrieve()
-                .bodyToMono(Map.class)
-                .map(response -> {
-                    if (!response.containsKey("value")) return List.<Map<String, Object>>of();
-                    List<Map<String, Object>> configs = (List<Map<String, Object>>) response.get("value");
-                    return configs.stream().map(c -> {
-                        Map<String, Object> r = new LinkedHashMap<>();
-                        r.put("id", c.getOrDefault("id", ""));
-                        r.put("isEnabled", c.getOrDefault("isEnabled", false));
-                        r.put("isBlocking", c.getOrDefault("isBlocking", false));
-                        r.put("type", c.containsKey("type")
-                                ? ((Map<String, Object>) c.get("type")).getOrDefault("displayName", "")
-                                : "");
-                        return r;
-                    }).toList();
+    public Mono<List<Map<String, Object>>> listBranchPolicies(
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMapMany(org -> org.webClient().get()
+                        .uri(org.props().getBaseUrl() + "/_apis/policy/configurations?api-version=" + org.props().getApiVersion())
+                        .retrieve()
+                        .bodyToFlux(DataBuffer.class))
+                .transform(body -> DevOpsJsonStream.values(body, "id", "isEnabled", "isBlocking", "type"))
+                .map(c -> {
+                    Object type = c.get("type");
+                    c.put("type", type instanceof Map<?, ?> t ? t.get("displayName") : "");
+                    return c;
                 })
-                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore lista branch policy: " + e.getMessage()))));
+                .collectList()
+                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore lista branch policy: " + e.getMessage()))))
+                .transform(metrics.tool("devops_list_branch_policies"));
     }
 
     @ReactiveTool(name = "devops_create_branch_policy",
@@ -59,7 +53,8 @@ public class DevOpsPolicyTools {
             @ToolParam(description = "Whether the policy is blocking (prevents merge if not satisfied)") boolean isBlocking,
             @ToolParam(description = "Branch name to apply the policy to, e.g. refs/heads/main") String refName,
             @ToolParam(description = "Repository ID to apply the policy to") String repositoryId,
-            @ToolParam(description = "Minimum number of reviewers (for minimum reviewers policy)", required = false) Integer minimumApproverCount) {
+            @ToolParam(description = "Minimum number of reviewers (for minimum reviewers policy)", required = false) Integer minimumApproverCount,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
 
         Map<String, Object> scope = new LinkedHashMap<>();
         scope.put("refName", refName);
@@ -78,25 +73,30 @@ public class DevOpsPolicyTools {
         body.put("type", Map.of("id", policyTypeId));
         body.put("settings", settings);
 
-        return webClient.post()
-                .uri(props.getBaseUrl() + "/_apis/policy/configurations?api-version=" + props.getApiVersion())
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(body)
-                .retrieve()
-                .bodyToMono(Map.class)
+        return organizations.resolve(organization)
+                .flatMap(org -> org.webClient().post()
+                        .uri(org.props().getBaseUrl() + "/_apis/policy/configurations?api-version=" + org.props().getApiVersion())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(body)
+                        .retrieve()
+                        .bodyToMono(Map.class))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore creazione branch policy: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore creazione branch policy: " + e.getMessage())))
+                .transform(metrics.tool("devops_create_branch_policy"));
     }
 
     @ReactiveTool(name = "devops_delete_branch_policy",
           description = "Deletes a branch policy from the Azure DevOps project")
     public Mono<Map<String, Object>> deleteBranchPolicy(
-            @ToolParam(description = "Policy configuration ID to delete") int configId) {
-        return webClient.delete()
-                .uri(props.getBaseUrl() + "/_apis/policy/configurations/" + configId + "?api-version=" + props.getApiVersion())
-                .retrieve()
-                .toBodilessEntity()
+            @ToolParam(description = "Policy configuration ID to delete") int configId,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMap(org -> org.webClient().delete()
+                        .uri(org.props().getBaseUrl() + "/_apis/policy/configurations/" + configId + "?api-version=" + org.props().getApiVersion())
+                        .retrieve()
+                        .toBodilessEntity())
                 .map(r -> Map.<String, Object>of("status", r.getStatusCode().value(), "deleted", true, "configId", configId))
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore eliminazione branch policy: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore eliminazione branch policy: " + e.getMessage())))
+                .transform(metrics.tool("devops_delete_branch_policy"));
     }
 }
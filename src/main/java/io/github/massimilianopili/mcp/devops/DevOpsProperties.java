@@ -1,15 +1,38 @@
 package io.github.massimilianopili.mcp.devops;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @ConfigurationProperties(prefix = "mcp.devops")
 public class DevOpsProperties {
 
+    private String host = "https://dev.azure.com";
     private String organization;
     private String project;
     private String team;
     private String pat;
     private String apiVersion = "7.1";
+    private Http http = new Http();
+    private Pagination pagination = new Pagination();
+    private Batch batch = new Batch();
+    private RepoCatalog repoCatalog = new RepoCatalog();
+    private EtagCache etagCache = new EtagCache();
+    private Throttle throttle = new Throttle();
+    private Retry retry = new Retry();
+    private Coalescing coalescing = new Coalescing();
+    private Replica replica = new Replica();
+    private FullText fullText = new FullText();
+    private RepoSnapshot repoSnapshot = new RepoSnapshot();
+    private GitObjectCache gitObjectCache = new GitObjectCache();
+    private final Map<String, OrganizationProfile> organizations = new LinkedHashMap<>();
+
+    /** Host Azure DevOps (Services o Server), es. uno stub locale per i test di carico */
+    public String getHost() { return host; }
+    public void setHost(String host) { this.host = host; }
 
     public String getOrganization() { return organization; }
     public void setOrganization(String organization) { this.organization = organization; }
@@ -26,18 +49,400 @@ public class DevOpsProperties {
     public String getApiVersion() { return apiVersion; }
     public void setApiVersion(String apiVersion) { this.apiVersion = apiVersion; }
 
-    /** Base URL: https://dev.azure.com/{organization}/{project} */
+    public Http getHttp() { return http; }
+
+    public Pagination getPagination() { return pagination; }
+
+    public Batch getBatch() { return batch; }
+
+    public RepoCatalog getRepoCatalog() { return repoCatalog; }
+
+    public EtagCache getEtagCache() { return etagCache; }
+
+    public Throttle getThrottle() { return throttle; }
+
+    public Retry getRetry() { return retry; }
+
+    public Coalescing getCoalescing() { return coalescing; }
+
+    public Replica getReplica() { return replica; }
+
+    public FullText getFullText() { return fullText; }
+
+    public RepoSnapshot getRepoSnapshot() { return repoSnapshot; }
+
+    public GitObjectCache getGitObjectCache() { return gitObjectCache; }
+
+    /** Organizzazioni aggiuntive servite dallo stesso processo, per nome profilo (mcp.devops.organizations.{nome}.*) */
+    public Map<String, OrganizationProfile> getOrganizations() { return organizations; }
+
+    /**
+     * Proprieta' effettive di un profilo: coordinate e PAT del profilo (ereditati se assenti),
+     * pool HTTP e throttle propri, le altre sezioni condivise con l'organizzazione principale.
+     */
+    public DevOpsProperties forProfile(String name, OrganizationProfile profile) {
+        DevOpsProperties effective = new DevOpsProperties();
+        effective.host = profile.getHost() != null ? profile.getHost() : host;
+        effective.organization = profile.getOrganization() != null ? profile.getOrganization() : name;
+        effective.project = profile.getProject() != null ? profile.getProject() : project;
+        effective.team = profile.getTeam() != null ? profile.getTeam() : team;
+        effective.pat = profile.getPat() != null ? profile.getPat() : pat;
+        effective.apiVersion = apiVersion;
+        effective.http = profile.getHttp();
+        effective.throttle = profile.getThrottle();
+        effective.pagination = pagination;
+        effective.batch = batch;
+        effective.repoCatalog = repoCatalog;
+        effective.etagCache = etagCache;
+        effective.retry = retry;
+        effective.coalescing = coalescing;
+        effective.replica = replica;
+        effective.fullText = fullText;
+        effective.repoSnapshot = repoSnapshot;
+        effective.gitObjectCache = gitObjectCache;
+        return effective;
+    }
+
+    /** Base URL: {host}/{organization}/{project} */
     public String getBaseUrl() {
-        return "https://dev.azure.com/" + organization + "/" + project;
+        return getOrgBaseUrl() + "/" + project;
     }
 
-    /** Base URL per API team-scoped: https://dev.azure.com/{org}/{project}/{team} */
+    /** Base URL per API team-scoped: {host}/{org}/{project}/{team} */
     public String getTeamBaseUrl() {
         return getBaseUrl() + "/" + team;
     }
 
-    /** Base URL per API org-scoped: https://dev.azure.com/{organization} */
+    /** Base URL per API org-scoped: {host}/{organization} */
     public String getOrgBaseUrl() {
-        return "https://dev.azure.com/" + organization;
+        String base = host.endsWith("/") ? host.substring(0, host.length() - 1) : host;
+        return base + "/" + organization;
+    }
+
+    /**
+     * Profilo di un'organizzazione aggiuntiva. Host, progetto, team e PAT assenti vengono ereditati
+     * dalla configurazione principale; pool di connessioni e budget di throttling sono sempre propri,
+     * cosi' un'organizzazione satura non rallenta le altre.
+     */
+    public static class OrganizationProfile {
+
+        private String host;
+        private String organization;
+        private String project;
+        private String team;
+        private String pat;
+        private final Http http = new Http();
+        private final Throttle throttle = new Throttle();
+
+        public String getHost() { return host; }
+        public void setHost(String host) { this.host = host; }
+
+        /** Nome dell'organizzazione su Azure DevOps (default: il nome del profilo) */
+        public String getOrganization() { return organization; }
+        public void setOrganization(String organization) { this.organization = organization; }
+
+        public String getProject() { return project; }
+        public void setProject(String project) { this.project = project; }
+
+        public String getTeam() { return team; }
+        public void setTeam(String team) { this.team = team; }
+
+        public String getPat() { return pat; }
+        public void setPat(String pat) { this.pat = pat; }
+
+        public Http getHttp() { return http; }
+
+        public Throttle getThrottle() { return throttle; }
+    }
+
+    /** Pool di connessioni Reactor Netty e protocollo HTTP del devOpsWebClient (mcp.devops.http.*) */
+    public static class Http {
+
+        private int maxConnections = 50;
+        private int pendingAcquireMaxCount = 500;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(45);
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+        private Duration evictInBackground = Duration.ofSeconds(30);
+        private Duration connectTimeout = Duration.ofSeconds(10);
+        private Duration responseTimeout = Duration.ofSeconds(60);
+        private boolean http2 = true;
+        private boolean compression = true;
+
+        public int getMaxConnections() { return maxConnections; }
+        public void setMaxConnections(int maxConnections) { this.maxConnections = maxConnections; }
+
+        public int getPendingAcquireMaxCount() { return pendingAcquireMaxCount; }
+        public void setPendingAcquireMaxCount(int pendingAcquireMaxCount) { this.pendingAcquireMaxCount = pendingAcquireMaxCount; }
+
+        public Duration getPendingAcquireTimeout() { return pendingAcquireTimeout; }
+        public void setPendingAcquireTimeout(Duration pendingAcquireTimeout) { this.pendingAcquireTimeout = pendingAcquireTimeout; }
+
+        public Duration getMaxIdleTime() { return maxIdleTime; }
+        public void setMaxIdleTime(Duration maxIdleTime) { this.maxIdleTime = maxIdleTime; }
+
+        public Duration getMaxLifeTime() { return maxLifeTime; }
+        public void setMaxLifeTime(Duration maxLifeTime) { this.maxLifeTime = maxLifeTime; }
+
+        public Duration getEvictInBackground() { return evictInBackground; }
+        public void setEvictInBackground(Duration evictInBackground) { this.evictInBackground = evictInBackground; }
+
+        public Duration getConnectTimeout() { return connectTimeout; }
+        public void setConnectTimeout(Duration connectTimeout) { this.connectTimeout = connectTimeout; }
+
+        public Duration getResponseTimeout() { return responseTimeout; }
+        public void setResponseTimeout(Duration responseTimeout) { this.responseTimeout = responseTimeout; }
+
+        /** HTTP/2 negoziato via ALPN su TLS, con fallback a HTTP/1.1 */
+        public boolean isHttp2() { return http2; }
+        public void setHttp2(boolean http2) { this.http2 = http2; }
+
+        /** Accept-Encoding: gzip con decompressione trasparente delle risposte */
+        public boolean isCompression() { return compression; }
+        public void setCompression(boolean compression) { this.compression = compression; }
+    }
+
+    /** Paginazione dei tool lista (mcp.devops.pagination.*) */
+    public static class Pagination {
+
+        private int defaultPageSize = 100;
+        private int defaultMaxItems = 0;
+        private int prefetchPages = 1;
+
+        public int getDefaultPageSize() { return defaultPageSize; }
+        public void setDefaultPageSize(int defaultPageSize) { this.defaultPageSize = defaultPageSize; }
+
+        /** Limite per le liste chiamate senza maxItems; 0 = nessun limite, fino all'ultima pagina */
+        public int getDefaultMaxItems() { return defaultMaxItems; }
+        public void setDefaultMaxItems(int defaultMaxItems) { this.defaultMaxItems = defaultMaxItems; }
+
+        /** Pagine richieste in anticipo rispetto a quella in consumo */
+        public int getPrefetchPages() { return prefetchPages; }
+        public void setPrefetchPages(int prefetchPages) { this.prefetchPages = prefetchPages; }
+    }
+
+    /** Chiamate batch verso Azure DevOps (mcp.devops.batch.*) */
+    public static class Batch {
+
+        private int concurrency = 4;
+        private int writeConcurrency = 2;
+
+        /** Blocchi batch (es. workitemsbatch da 200 ID) eseguiti in parallelo */
+        public int getConcurrency() { return concurrency; }
+        public void setConcurrency(int concurrency) { this.concurrency = concurrency; }
+
+        /** Richieste $batch di scrittura (fino a 200 operazioni ciascuna) eseguite in parallelo */
+        public int getWriteConcurrency() { return writeConcurrency; }
+        public void setWriteConcurrency(int writeConcurrency) { this.writeConcurrency = writeConcurrency; }
+    }
+
+    /** Catalogo condiviso dei repository (mcp.devops.repo-catalog.*) */
+    public static class RepoCatalog {
+
+        private Duration ttl = Duration.ofMinutes(10);
+
+        /** Eta' oltre la quale lo snapshot viene rinfrescato in background */
+        public Duration getTtl() { return ttl; }
+        public void setTtl(Duration ttl) { this.ttl = ttl; }
+    }
+
+    /** Cache condizionale ETag / If-None-Match delle GET (mcp.devops.etag-cache.*) */
+    public static class EtagCache {
+
+        private boolean enabled = true;
+        private DataSize maxSize = DataSize.ofMegabytes(32);
+        private DataSize maxEntrySize = DataSize.ofMegabytes(2);
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        /** Byte totali dei body in cache, oltre si scartano i meno usati di recente */
+        public DataSize getMaxSize() { return maxSize; }
+        public void setMaxSize(DataSize maxSize) { this.maxSize = maxSize; }
+
+        /** Body piu' grandi non vengono messi in cache */
+        public DataSize getMaxEntrySize() { return maxEntrySize; }
+        public void setMaxEntrySize(DataSize maxEntrySize) { this.maxEntrySize = maxEntrySize; }
+    }
+
+    /** Limitatore adattivo sugli header di rate limit (mcp.devops.throttle.*) */
+    public static class Throttle {
+
+        private boolean enabled = true;
+        private double maxRequestsPerSecond = 20;
+        private double minRequestsPerSecond = 1;
+        private int burst = 20;
+        private Duration maxWait = Duration.ofSeconds(60);
+        private int maxRetries = 3;
+        private Duration defaultRetryAfter = Duration.ofSeconds(2);
+        private double lowRemainingRatio = 0.1;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        /** Ritmo massimo, applicato fin dall'avvio anche senza segnali di throttling dal server */
+        public double getMaxRequestsPerSecond() { return maxRequestsPerSecond; }
+        public void setMaxRequestsPerSecond(double maxRequestsPerSecond) { this.maxRequestsPerSecond = maxRequestsPerSecond; }
+
+        /** Ritmo minimo sotto cui l'adattamento non scende */
+        public double getMinRequestsPerSecond() { return minRequestsPerSecond; }
+        public void setMinRequestsPerSecond(double minRequestsPerSecond) { this.minRequestsPerSecond = minRequestsPerSecond; }
+
+        /** Richieste inviabili subito dopo un periodo di inattivita' */
+        public int getBurst() { return burst; }
+        public void setBurst(int burst) { this.burst = burst; }
+
+        /** Attesa massima in coda, oltre la richiesta fallisce subito */
+        public Duration getMaxWait() { return maxWait; }
+        public void setMaxWait(Duration maxWait) { this.maxWait = maxWait; }
+
+        /** Tentativi ripetuti dopo un 429 */
+        public int getMaxRetries() { return maxRetries; }
+        public void setMaxRetries(int maxRetries) { this.maxRetries = maxRetries; }
+
+        /** Pausa dopo un 429 senza header Retry-After */
+        public Duration getDefaultRetryAfter() { return defaultRetryAfter; }
+        public void setDefaultRetryAfter(Duration defaultRetryAfter) { this.defaultRetryAfter = defaultRetryAfter; }
+
+        /** Sotto questa frazione di X-RateLimit-Remaining / X-RateLimit-Limit il ritmo rallenta */
+        public double getLowRemainingRatio() { return lowRemainingRatio; }
+        public void setLowRemainingRatio(double lowRemainingRatio) { this.lowRemainingRatio = lowRemainingRatio; }
+    }
+
+    /** Retry e hedging delle richieste idempotenti (mcp.devops.retry.*) */
+    public static class Retry {
+
+        private boolean enabled = true;
+        private int maxRetries = 3;
+        private Duration initialBackoff = Duration.ofMillis(200);
+        private Duration maxBackoff = Duration.ofSeconds(5);
+        private double jitter = 0.5;
+        private boolean hedging = false;
+        private Duration hedgeMinDelay = Duration.ofMillis(100);
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        /** Tentativi ripetuti dopo il primo (5xx transitori, errori di connessione) */
+        public int getMaxRetries() { return maxRetries; }
+        public void setMaxRetries(int maxRetries) { this.maxRetries = maxRetries; }
+
+        /** Attesa prima del primo retry, raddoppiata a ogni tentativo */
+        public Duration getInitialBackoff() { return initialBackoff; }
+        public void setInitialBackoff(Duration initialBackoff) { this.initialBackoff = initialBackoff; }
+
+        public Duration getMaxBackoff() { return maxBackoff; }
+        public void setMaxBackoff(Duration maxBackoff) { this.maxBackoff = maxBackoff; }
+
+        /** Frazione dell'attesa resa casuale (0 = nessun jitter, 1 = full jitter) */
+        public double getJitter() { return jitter; }
+        public void setJitter(double jitter) { this.jitter = jitter; }
+
+        /** Seconda GET in parallelo quando la prima supera il p95 osservato */
+        public boolean isHedging() { return hedging; }
+        public void setHedging(boolean hedging) { this.hedging = hedging; }
+
+        /** Ritardo minimo prima della richiesta hedged */
+        public Duration getHedgeMinDelay() { return hedgeMinDelay; }
+        public void setHedgeMinDelay(Duration hedgeMinDelay) { this.hedgeMinDelay = hedgeMinDelay; }
+    }
+
+    /** Condivisione delle letture identiche in corso (mcp.devops.coalescing.*) */
+    public static class Coalescing {
+
+        private boolean enabled = true;
+        private DataSize maxBufferSize = DataSize.ofMegabytes(32);
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        /** Limite del body condiviso, tenuto in memoria fino alla consegna a tutti i chiamanti */
+        public DataSize getMaxBufferSize() { return maxBufferSize; }
+        public void setMaxBufferSize(DataSize maxBufferSize) { this.maxBufferSize = maxBufferSize; }
+    }
+
+    /** Replica locale dei work item del progetto principale (mcp.devops.replica.*) */
+    public static class Replica {
+
+        private boolean enabled = false;
+        private Duration syncInterval = Duration.ofMinutes(1);
+        private Duration maxStaleness = Duration.ofMinutes(5);
+        private int pageSize = 200;
+
+        /** Sincronizzazione in background e risposte di devops_search_work_items dalla replica */
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        /** Intervallo tra una sincronizzazione incrementale e la successiva */
+        public Duration getSyncInterval() { return syncInterval; }
+        public void setSyncInterval(Duration syncInterval) { this.syncInterval = syncInterval; }
+
+        /** Oltre questa eta' dell'ultima sincronizzazione riuscita le ricerche tornano al server */
+        public Duration getMaxStaleness() { return maxStaleness; }
+        public void setMaxStaleness(Duration maxStaleness) { this.maxStaleness = maxStaleness; }
+
+        /** Revisioni per pagina ($maxPageSize) dell'API di reporting */
+        public int getPageSize() { return pageSize; }
+        public void setPageSize(int pageSize) { this.pageSize = pageSize; }
+    }
+
+    /** Indice full-text dei work item del progetto principale (mcp.devops.full-text.*) */
+    public static class FullText {
+
+        private boolean enabled = false;
+        private Duration syncInterval = Duration.ofMinutes(2);
+        private int pageSize = 1000;
+
+        /** Indicizzazione in background e tool devops_fulltext_search_work_items */
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        /** Intervallo tra un aggiornamento incrementale dell'indice e il successivo */
+        public Duration getSyncInterval() { return syncInterval; }
+        public void setSyncInterval(Duration syncInterval) { this.syncInterval = syncInterval; }
+
+        /** Work item modificati letti per ogni query WIQL ($top) prima dell'idratazione in workitemsbatch */
+        public int getPageSize() { return pageSize; }
+        public void setPageSize(int pageSize) { this.pageSize = pageSize; }
+    }
+
+    /** Snapshot zip dei repository scaricati su disco (mcp.devops.repo-snapshot.*) */
+    public static class RepoSnapshot {
+
+        private String directory = System.getProperty("java.io.tmpdir") + "/mcp-devops-snapshots";
+        private DataSize maxReadSize = DataSize.ofMegabytes(1);
+
+        /** Directory degli archivi; il nome del file deriva da organizzazione, repository, branch e percorso */
+        public String getDirectory() { return directory; }
+        public void setDirectory(String directory) { this.directory = directory; }
+
+        /** Dimensione massima del contenuto di un file restituito dai tool (snapshot e devops_get_file_content) */
+        public DataSize getMaxReadSize() { return maxReadSize; }
+        public void setMaxReadSize(DataSize maxReadSize) { this.maxReadSize = maxReadSize; }
+    }
+
+    /** Cache su disco degli oggetti Git immutabili, indirizzati per SHA (mcp.devops.git-object-cache.*) */
+    public static class GitObjectCache {
+
+        private boolean enabled = true;
+        private String directory = System.getProperty("java.io.tmpdir") + "/mcp-devops-git-objects";
+        private DataSize maxSize = DataSize.ofMegabytes(256);
+        private DataSize segmentSize = DataSize.ofMegabytes(16);
+
+        /** Commit, blob e percorsi per commit serviti dal disco senza richieste ne' rivalidazione */
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        /** Directory dei segmenti; l'indice viene ricostruito dai segmenti presenti all'avvio */
+        public String getDirectory() { return directory; }
+        public void setDirectory(String directory) { this.directory = directory; }
+
+        /** Spazio su disco complessivo oltre il quale si scarta il segmento meno recente */
+        public DataSize getMaxSize() { return maxSize; }
+        public void setMaxSize(DataSize maxSize) { this.maxSize = maxSize; }
+
+        /** Dimensione di un segmento mappato in memoria; oggetti piu' grandi non vengono memorizzati */
+        public DataSize getSegmentSize() { return segmentSize; }
+        public void setSegmentSize(DataSize segmentSize) { this.segmentSize = segmentSize; }
     }
 }
@@ -0,0 +1,223 @@
+package io.github.massimilianopili.mcp.devops;
+
+import io.github.massimilianopili.mcp.devops.model.GitCommitDiffs;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Confronto tra due versioni di un repository su /diffs/commits. Le pagine ($top/$skip) vengono
+ * consumate in sequenza e aggregate al volo (conteggi per tipo di modifica e per cartella), senza
+ * tenere in memoria l'elenco completo delle modifiche.
+ * <p>
+ * Il diff tra due commit e' immutabile: il risultato aggregato viene memorizzato nella
+ * DevOpsGitObjectCache con la coppia (baseCommit, targetCommit). Se le versioni sono gia' SHA la cache
+ * viene consultata prima di qualsiasi richiesta; per branch e tag la prima pagina fornisce gli SHA e
+ * le pagine successive vengono lette solo in caso di miss, sempre per SHA (un branch che si muove
+ * durante la scansione non mescola due diff diversi).
+ * <p>
+ * Il server puo' restituire meno di $top modifiche per pagina: $skip segue le modifiche ricevute e la
+ * scansione termina con una pagina vuota, l'unico segnale affidabile che il diff e' completo.
+ */
+final class DevOpsRefComparison {
+
+    private static final String[] CHANGE_TYPES = {"add", "edit", "delete", "rename"};
+    private static final int OTHER = CHANGE_TYPES.length;
+
+    /** Parametri che determinano il risultato, quindi parte della chiave di cache */
+    record Request(String repoId, String baseVersion, String baseVersionType,
+                   String targetVersion, String targetVersionType,
+                   int pageSize, int maxChanges, int maxScan, int folderDepth) {
+
+        String cacheId(String baseCommit, String targetCommit) {
+            return baseCommit.toLowerCase(Locale.ROOT) + ".." + targetCommit.toLowerCase(Locale.ROOT)
+                    + "?depth=" + folderDepth + "&changes=" + maxChanges + "&scan=" + maxScan;
+        }
+    }
+
+    private final Request request;
+    private final Map<String, int[]> folders = new HashMap<>();
+    private final int[] totals = new int[CHANGE_TYPES.length + 1];
+    private final List<Map<String, Object>> changes = new ArrayList<>();
+    private GitCommitDiffs first;
+    private int scanned;
+    private int pages;
+    private int received;
+    private boolean complete = true;
+
+    private DevOpsRefComparison(Request request) {
+        this.request = request;
+    }
+
+    static Mono<Map<String, Object>> compare(DevOpsOrganizations.Organization org, DevOpsGitObjectCache cache,
+                                             Request request) {
+        Mono<byte[]> pinned = DevOpsGitObjectCache.isSha(request.baseVersion()) && DevOpsGitObjectCache.isSha(request.targetVersion())
+                ? cache.get(DevOpsGitObjectCache.key(org.name(), "diff", request.cacheId(request.baseVersion(), request.targetVersion())))
+                : Mono.empty();
+        DevOpsRefComparison comparison = new DevOpsRefComparison(request);
+        return pinned.map(DevOpsRefComparison::fromCache).switchIfEmpty(Mono.defer(() -> comparison.page(org,
+                request.baseVersion(), request.baseVersionType(), request.targetVersion(), request.targetVersionType())
+                .flatMap(firstPage -> {
+                    String key = firstPage.baseCommit() != null && firstPage.targetCommit() != null
+                            ? DevOpsGitObjectCache.key(org.name(), "diff",
+                                    request.cacheId(firstPage.baseCommit(), firstPage.targetCommit()))
+                            : null;
+                    comparison.first = firstPage;
+                    Mono<Map<String, Object>> scan = Mono.just(firstPage)
+                            .expand(page -> comparison.hasMore(page) ? comparison.nextPage(org) : Mono.empty())
+                            .doOnNext(comparison::accumulate)
+                            .then(Mono.defer(() -> {
+                                Map<String, Object> result = comparison.toMap();
+                                // un confronto interrotto da maxScan non e' il diff completo: non va in cache
+                                Mono<Void> store = key != null && comparison.complete
+                                        ? Mono.fromCallable(() -> DevOpsJsonStream.MAPPER.writeValueAsBytes(result))
+                                                .flatMap(json -> cache.put(key, json))
+                                        : Mono.empty();
+                                return store.then(Mono.fromCallable(() -> {
+                                    result.put("cached", false);
+                                    return result;
+                                }));
+                            }));
+                    return key == null ? scan : cache.get(key).map(DevOpsRefComparison::fromCache).switchIfEmpty(scan);
+                })));
+    }
+
+    /** Pagine successive alla prima: per SHA, se la prima li ha risolti. */
+    private Mono<GitCommitDiffs> nextPage(DevOpsOrganizations.Organization org) {
+        if (first.baseCommit() != null && first.targetCommit() != null) {
+            return page(org, first.baseCommit(), "commit", first.targetCommit(), "commit");
+        }
+        return page(org, request.baseVersion(), request.baseVersionType(),
+                request.targetVersion(), request.targetVersionType());
+    }
+
+    private Mono<GitCommitDiffs> page(DevOpsOrganizations.Organization org, String base, String baseType,
+                                      String target, String targetType) {
+        int skip = received;
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("repo", request.repoId());
+        variables.put("base", base);
+        variables.put("baseType", baseType);
+        variables.put("target", target);
+        variables.put("targetType", targetType);
+        return org.webClient().get()
+                .uri(org.props().getBaseUrl() + "/_apis/git/repositories/{repo}/diffs/commits"
+                        + "?baseVersion={base}&baseVersionType={baseType}"
+                        + "&targetVersion={target}&targetVersionType={targetType}"
+                        + "&diffCommonCommit=true&$top=" + request.pageSize() + "&$skip=" + skip
+                        + "&api-version=" + org.props().getApiVersion(), variables)
+                .retrieve()
+                .bodyToMono(GitCommitDiffs.class);
+    }
+
+    /** Chiamato una volta per pagina, prima della richiesta successiva. */
+    private boolean hasMore(GitCommitDiffs page) {
+        if (page.changesOrEmpty().isEmpty()) return false;
+        received += page.changesOrEmpty().size();
+        if (received >= request.maxScan()) {
+            complete = false;
+            return false;
+        }
+        return true;
+    }
+
+    private void accumulate(GitCommitDiffs page) {
+        pages++;
+        for (GitCommitDiffs.Change change : page.changesOrEmpty()) {
+            if (change.item() == null || change.item().isFolder() || change.item().path() == null) continue;
+            scanned++;
+            int type = changeType(change.changeType());
+            totals[type]++;
+            folders.computeIfAbsent(folder(change.item().path(), request.folderDepth()),
+                    f -> new int[CHANGE_TYPES.length + 1])[type]++;
+            if (changes.size() < request.maxChanges()) {
+                changes.add(Map.of("path", change.item().path(),
+                        "changeType", change.changeType() != null ? change.changeType() : ""));
+            }
+        }
+    }
+
+    private Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("base", Map.of("version", request.baseVersion(), "commitId", nullToEmpty(first.baseCommit())));
+        result.put("target", Map.of("version", request.targetVersion(), "commitId", nullToEmpty(first.targetCommit())));
+        if (first.commonCommit() != null) result.put("commonCommit", first.commonCommit());
+        if (first.aheadCount() != null) result.put("aheadCount", first.aheadCount());
+        if (first.behindCount() != null) result.put("behindCount", first.behindCount());
+        result.put("totalChanges", scanned);
+        result.put("changeCounts", counts(totals));
+
+        List<Map.Entry<String, int[]>> sorted = new ArrayList<>(folders.entrySet());
+        sorted.sort(Comparator.<Map.Entry<String, int[]>>comparingInt(e -> -sum(e.getValue()))
+                .thenComparing(Map.Entry::getKey));
+        List<Map<String, Object>> folderList = new ArrayList<>(sorted.size());
+        for (Map.Entry<String, int[]> entry : sorted) {
+            Map<String, Object> folder = new LinkedHashMap<>();
+            folder.put("folder", entry.getKey());
+            folder.put("total", sum(entry.getValue()));
+            folder.putAll(counts(entry.getValue()));
+            folderList.add(folder);
+        }
+        result.put("folders", folderList);
+        result.put("changes", changes);
+        result.put("changesTruncated", scanned > changes.size());
+        result.put("complete", complete);
+        result.put("pages", pages);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> fromCache(byte[] json) {
+        try {
+            Map<String, Object> result = DevOpsJsonStream.MAPPER.readValue(json, LinkedHashMap.class);
+            result.put("cached", true);
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<String, Object> counts(int[] byType) {
+        Map<String, Object> counts = new LinkedHashMap<>();
+        for (int t = 0; t < CHANGE_TYPES.length; t++) {
+            if (byType[t] > 0) counts.put(CHANGE_TYPES[t], byType[t]);
+        }
+        if (byType[OTHER] > 0) counts.put("other", byType[OTHER]);
+        return counts;
+    }
+
+    /** changeType puo' combinare piu' valori, es. "edit, rename": conta il primo riconosciuto. */
+    private static int changeType(String changeType) {
+        if (changeType == null) return OTHER;
+        String lower = changeType.toLowerCase(Locale.ROOT);
+        for (int t = 0; t < CHANGE_TYPES.length; t++) {
+            if (lower.contains(CHANGE_TYPES[t])) return t;
+        }
+        return OTHER;
+    }
+
+    /** Primi depth segmenti della cartella del file, es. /src/main per /src/main/java/App.java con depth 2. */
+    static String folder(String path, int depth) {
+        int end = path.lastIndexOf('/');
+        if (end <= 0) return "/";
+        int slash = 0;
+        for (int level = 0; level < depth; level++) {
+            int next = path.indexOf('/', slash + 1);
+            if (next < 0 || next > end) return path.substring(0, end);
+            slash = next;
+        }
+        return slash > 0 ? path.substring(0, slash) : "/";
+    }
+
+    private static int sum(int[] values) {
+        int total = 0;
+        for (int v : values) total += v;
+        return total;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
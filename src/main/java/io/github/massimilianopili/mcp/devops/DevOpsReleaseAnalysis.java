@@ -0,0 +1,309 @@
+package io.github.massimilianopili.mcp.devops;
+
+import io.github.massimilianopili.mcp.devops.model.WorkItem;
+import io.github.massimilianopili.mcp.devops.model.WorkItemRelation;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Raggruppamento per repository degli ArtifactLink Git dei work item di un rilascio.
+ * <p>
+ * Gli URL vstfs:///Git/{tipo}/{progetto}%2F{repository}%2F{ref} vengono letti per indici direttamente
+ * sulla stringa codificata, in un solo passaggio e senza URLDecoder ne' split: tipo, repository e ref
+ * sono intervalli della stringa originale. Le stringhe vengono create (e decodificate) solo la prima
+ * volta che un intervallo compare, poi ogni occorrenza si riduce a un ordinale; per ogni repository
+ * work item, tipi, branch, commit e pull request sono insiemi di int.
+ */
+final class DevOpsReleaseAnalysis {
+
+    static final String VSTFS_GIT = "vstfs:///Git/";
+
+    /** Posizioni in out[] valorizzate da parse */
+    static final int TYPE_START = 0, TYPE_END = 1, REPO_START = 2, REPO_END = 3, REF_START = 4, REF_END = 5;
+
+    private final Interner types = new Interner();
+    private final Interner repoIds = new Interner();
+    private final Interner branches = new Interner();
+    private final Interner commits = new Interner();
+    private final List<Repo> repos = new ArrayList<>();
+    private final IntSet workItemsWithoutLinks = new IntSet();
+    private final int[] bounds = new int[6];
+
+    /** Work item, tipi di artefatto e riferimenti Git di un repository, come ordinali */
+    static final class Repo {
+
+        final int ordinal;
+        final IntSet workItemIds = new IntSet();
+        final IntSet types = new IntSet();
+        final IntSet branches = new IntSet();
+        final IntSet commits = new IntSet();
+        final IntSet pullRequestIds = new IntSet();
+
+        Repo(int ordinal) {
+            this.ordinal = ordinal;
+        }
+    }
+
+    void add(WorkItem workItem) {
+        boolean hasGitLink = false;
+        for (WorkItemRelation rel : workItem.relationsOrEmpty()) {
+            if (!"ArtifactLink".equals(rel.rel())) continue;
+            String url = rel.url();
+            if (!parse(url, bounds)) continue;
+            hasGitLink = true;
+
+            int repoOrdinal = repoIds.ordinal(url, bounds[REPO_START], bounds[REPO_END], false);
+            Repo repo = repoOrdinal < repos.size() ? repos.get(repoOrdinal) : newRepo(repoOrdinal);
+            repo.workItemIds.add(workItem.id());
+            repo.types.add(types.ordinal(url, bounds[TYPE_START], bounds[TYPE_END], false));
+
+            int refStart = bounds[REF_START], refEnd = bounds[REF_END];
+            if (refStart == refEnd) continue;
+            if (is(url, bounds[TYPE_START], bounds[TYPE_END], "Ref")) {
+                // GB = branch (GBfeature%2Fx); refs/heads/ per i link scritti a mano
+                if (url.startsWith("GB", refStart)) refStart += 2;
+                else if (url.startsWith("refs/heads/", refStart)) refStart += "refs/heads/".length();
+                if (refStart < refEnd) repo.branches.add(branches.ordinal(url, refStart, refEnd, true));
+            } else if (is(url, bounds[TYPE_START], bounds[TYPE_END], "Commit")) {
+                repo.commits.add(commits.ordinal(url, refStart, refEnd, false));
+            } else if (is(url, bounds[TYPE_START], bounds[TYPE_END], "PullRequestId")) {
+                int id = parseId(url, refStart, refEnd);
+                if (id >= 0) repo.pullRequestIds.add(id);
+            }
+        }
+        if (!hasGitLink) workItemsWithoutLinks.add(workItem.id());
+    }
+
+    private Repo newRepo(int ordinal) {
+        Repo repo = new Repo(ordinal);
+        repos.add(repo);
+        return repo;
+    }
+
+    List<Repo> repos() {
+        return repos;
+    }
+
+    String repoId(Repo repo) {
+        return repoIds.value(repo.ordinal);
+    }
+
+    String commitId(int ordinal) {
+        return commits.value(ordinal);
+    }
+
+    /** Il repository dei link (di solito l'ID, per nome nei link scritti a mano) e' risolto con il catalogo. */
+    Map<String, Object> toMap(int totalWorkItems, DevOpsRepositoryCatalog.Snapshot catalog) {
+        List<Map<String, Object>> repositories = new ArrayList<>(repos.size());
+        for (Repo repo : repos) {
+            String repoId = catalog.repositoryId(repoId(repo));
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("repoName", catalog.idToName().getOrDefault(repoId, repoId));
+            entry.put("repoId", repoId);
+            entry.put("branches", strings(repo.branches, branches));
+            entry.put("workItemIds", repo.workItemIds.toList());
+            entry.put("artifactTypes", strings(repo.types, types));
+            if (repo.commits.size() > 0) entry.put("commits", strings(repo.commits, commits));
+            if (repo.pullRequestIds.size() > 0) entry.put("pullRequestIds", repo.pullRequestIds.toList());
+            repositories.add(entry);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("totalWorkItems", totalWorkItems);
+        result.put("totalRepositories", repositories.size());
+        result.put("repositories", repositories);
+        if (workItemsWithoutLinks.size() > 0) {
+            result.put("workItemsWithoutLinks", workItemsWithoutLinks.toList());
+        }
+        return result;
+    }
+
+    private static List<String> strings(IntSet ordinals, Interner interner) {
+        List<String> values = new ArrayList<>(ordinals.size());
+        for (int i = 0; i < ordinals.size(); i++) values.add(interner.value(ordinals.get(i)));
+        return values;
+    }
+
+    /**
+     * Individua tipo, repository e ref in un URL vstfs:///Git/ ancora codificato, senza allocare:
+     * i separatori dopo il tipo possono essere "/" o "%2F". out riceve gli intervalli [start, end)
+     * agli indici TYPE_START..REF_END; ref vuoto se l'URL termina con il repository.
+     */
+    static boolean parse(String url, int[] out) {
+        if (url == null) return false;
+        int at = url.startsWith(VSTFS_GIT) ? 0 : url.indexOf(VSTFS_GIT);
+        if (at < 0) return false;
+        int typeStart = at + VSTFS_GIT.length();
+        int typeEnd = url.indexOf('/', typeStart);
+        if (typeEnd <= typeStart) return false;
+
+        int projectEnd = separator(url, typeEnd + 1);
+        if (projectEnd < 0) return false;
+        int repoStart = skip(url, projectEnd);
+        int repoEnd = separator(url, repoStart);
+        int refStart;
+        if (repoEnd < 0) {
+            repoEnd = url.length();
+            refStart = repoEnd;
+        } else {
+            refStart = skip(url, repoEnd);
+        }
+        if (repoEnd == repoStart) return false;
+
+        out[TYPE_START] = typeStart;
+        out[TYPE_END] = typeEnd;
+        out[REPO_START] = repoStart;
+        out[REPO_END] = repoEnd;
+        out[REF_START] = refStart;
+        out[REF_END] = url.length();
+        return true;
+    }
+
+    /** Indice del prossimo "/" o "%2F" da from, -1 se assente. */
+    private static int separator(String url, int from) {
+        for (int i = from; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '/') return i;
+            if (c == '%' && i + 2 < url.length() && url.charAt(i + 1) == '2'
+                    && (url.charAt(i + 2) == 'F' || url.charAt(i + 2) == 'f')) return i;
+        }
+        return -1;
+    }
+
+    private static int skip(String url, int separator) {
+        return separator + (url.charAt(separator) == '/' ? 1 : 3);
+    }
+
+    private static boolean is(String url, int start, int end, String value) {
+        return end - start == value.length() && url.startsWith(value, start);
+    }
+
+    private static int parseId(String url, int start, int end) {
+        int id = 0;
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (c < '0' || c > '9' || id > (Integer.MAX_VALUE - 9) / 10) return -1;
+            id = id * 10 + (c - '0');
+        }
+        return id;
+    }
+
+    /**
+     * Ordinali per intervalli di stringhe, nell'ordine di prima comparsa. La tabella (indirizzamento
+     * aperto) confronta l'intervallo con regionMatches: la sottostringa viene creata solo per i nuovi valori.
+     */
+    static final class Interner {
+
+        private String[] keys = new String[16];
+        private int[] slots = new int[32];
+        private final List<String> values = new ArrayList<>();
+
+        int ordinal(String source, int start, int end, boolean decode) {
+            int length = end - start;
+            int hash = 0;
+            for (int i = start; i < end; i++) hash = 31 * hash + source.charAt(i);
+            int mask = slots.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            for (int entry; (entry = slots[slot]) != 0; slot = (slot + 1) & mask) {
+                String key = keys[entry - 1];
+                if (key.length() == length && source.regionMatches(start, key, 0, length)) return entry - 1;
+            }
+
+            int ordinal = values.size();
+            String key = source.substring(start, end);
+            if (ordinal == keys.length) keys = Arrays.copyOf(keys, ordinal * 2);
+            keys[ordinal] = key;
+            values.add(decode && key.indexOf('%') >= 0 ? decode(key) : key);
+            slots[slot] = ordinal + 1;
+            if (values.size() * 2 > slots.length) rehash();
+            return ordinal;
+        }
+
+        String value(int ordinal) {
+            return values.get(ordinal);
+        }
+
+        private void rehash() {
+            int[] resized = new int[slots.length * 2];
+            int mask = resized.length - 1;
+            for (int ordinal = 0; ordinal < values.size(); ordinal++) {
+                int hash = keys[ordinal].hashCode();
+                int slot = (hash ^ (hash >>> 16)) & mask;
+                while (resized[slot] != 0) slot = (slot + 1) & mask;
+                resized[slot] = ordinal + 1;
+            }
+            slots = resized;
+        }
+
+        private static String decode(String value) {
+            try {
+                return URLDecoder.decode(value, StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                return value;
+            }
+        }
+    }
+
+    /** Insieme di int che conserva l'ordine di inserimento (valori in array, indici in tabella aperta). */
+    static final class IntSet {
+
+        private int[] values = new int[4];
+        private int[] slots = new int[8];
+        private int size;
+
+        boolean add(int value) {
+            // i link di un work item arrivano consecutivi: l'ultimo valore e' il duplicato piu' probabile
+            if (size > 0 && values[size - 1] == value) return false;
+            int mask = slots.length - 1;
+            int slot = mix(value) & mask;
+            for (int entry; (entry = slots[slot]) != 0; slot = (slot + 1) & mask) {
+                if (values[entry - 1] == value) return false;
+            }
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+            slots[slot] = size;
+            if (size * 2 > slots.length) rehash();
+            return true;
+        }
+
+        boolean contains(int value) {
+            int mask = slots.length - 1;
+            for (int slot = mix(value) & mask, entry; (entry = slots[slot]) != 0; slot = (slot + 1) & mask) {
+                if (values[entry - 1] == value) return true;
+            }
+            return false;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        List<Integer> toList() {
+            List<Integer> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) list.add(values[i]);
+            return list;
+        }
+
+        private void rehash() {
+            int[] resized = new int[slots.length * 2];
+            int mask = resized.length - 1;
+            for (int i = 0; i < size; i++) {
+                int slot = mix(values[i]) & mask;
+                while (resized[slot] != 0) slot = (slot + 1) & mask;
+                resized[slot] = i + 1;
+            }
+            slots = resized;
+        }
+
+        private static int mix(int value) {
+            int h = value * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package io.github.massimilianopili.mcp.devops;
+
+import io.github.massimilianopili.mcp.devops.model.GitCommitRef;
+import io.github.massimilianopili.mcp.devops.model.GitPullRequest;
+import io.github.massimilianopili.mcp.devops.model.GitPullRequestQuery;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+
+/**
+ * Risoluzione degli artefatti Git di un rilascio (commit e pull request collegati ai work item),
+ * raggruppati per repository: per ogni repository un commitsbatch con i commit e una pullrequestquery
+ * (tipi commit e lastMergeCommit) che restituisce le PR che li hanno introdotti, in parallelo. Le PR
+ * collegate per ID e non ancora trovate vengono cercate, dopo le query di tutti i repository,
+ * nell'elenco paginato delle PR del repository, o lette per ID se sono poche. Ogni fase e' limitata
+ * a mcp.devops.batch.concurrency repository o richieste in corso.
+ */
+final class DevOpsReleaseResolver {
+
+    /** Commit e PR risolti al piu' per repository; gli eccedenti restano non risolti */
+    static final int MAX_LOOKUPS = 200;
+
+    /** Oltre questo numero di PR mancanti in un repository si scorre l'elenco invece di leggerle per ID */
+    static final int MAX_SINGLE_LOOKUPS = 3;
+
+    /** PR dell'elenco del repository esaminate al piu' per trovare quelle mancanti */
+    static final int MAX_LISTED_PULL_REQUESTS = 1000;
+
+    private static final String[] QUERY_TYPES = {"commit", "lastMergeCommit"};
+
+    private record Resolution(int index, String repoUrl, Map<Integer, GitPullRequest> pullRequests,
+                              Map<String, GitCommitRef> commits, Map<String, List<Integer>> commitPullRequests,
+                              Set<Integer> unresolved, String error) {
+    }
+
+    private DevOpsReleaseResolver() {
+    }
+
+    /**
+     * Aggiunge a ogni repository del risultato di DevOpsReleaseAnalysis.toMap stato, branch di
+     * destinazione e merge commit delle PR, e i dettagli dei commit; riporta i repository con PR
+     * ancora attive in repositoriesWithUnmergedPullRequests (le abbandonate sono a parte, in
+     * abandonedPullRequestIds del repository).
+     */
+    @SuppressWarnings("unchecked")
+    static Mono<Map<String, Object>> enrich(DevOpsOrganizations.Organization org,
+                                            DevOpsReleaseAnalysis analysis, Map<String, Object> result) {
+        List<DevOpsReleaseAnalysis.Repo> repos = analysis.repos();
+        List<Map<String, Object>> repositories = (List<Map<String, Object>>) result.get("repositories");
+        int concurrency = Math.max(1, org.props().getBatch().getConcurrency());
+
+        return Flux.range(0, repos.size())
+                .filter(i -> repos.get(i).commits.size() > 0 || repos.get(i).pullRequestIds.size() > 0)
+                .flatMap(i -> resolve(org, analysis, repos.get(i), (String) repositories.get(i).get("repoId"), i), concurrency)
+                .collectList()
+                .flatMap(resolutions -> fetchMissing(org, resolutions, concurrency).thenReturn(resolutions))
+                .flatMapIterable(resolutions -> resolutions)
+                .doOnNext(resolution -> apply(repositories.get(resolution.index()), repos.get(resolution.index()), analysis, resolution))
+                .then(Mono.fromCallable(() -> {
+                    List<Object> unmerged = new ArrayList<>();
+                    for (Map<String, Object> repo : repositories) {
+                        if (repo.containsKey("unmergedPullRequestIds")) unmerged.add(repo.get("repoName"));
+                    }
+                    result.put("repositoriesWithUnmergedPullRequests", unmerged);
+                    return result;
+                }));
+    }
+
+    private static Mono<Resolution> resolve(DevOpsOrganizations.Organization org, DevOpsReleaseAnalysis analysis,
+                                            DevOpsReleaseAnalysis.Repo repo, String repoId, int index) {
+        String repoUrl = org.props().getBaseUrl() + "/_apis/git/repositories/" + repoId;
+        List<String> shas = new ArrayList<>();
+        for (int i = 0; i < Math.min(repo.commits.size(), MAX_LOOKUPS); i++) shas.add(analysis.commitId(repo.commits.get(i)));
+
+        Mono<Map<String, GitCommitRef>> commits = shas.isEmpty() ? Mono.just(Map.of()) : commitsBatch(org, repoUrl, shas);
+        Mono<GitPullRequestQuery> byCommit = shas.isEmpty() ? Mono.just(new GitPullRequestQuery(List.of()))
+                : pullRequestQuery(org, repoUrl, shas);
+
+        return Mono.zip(commits, byCommit).flatMap(tuple -> {
+            Map<Integer, GitPullRequest> pullRequests = new LinkedHashMap<>();
+            Map<String, List<Integer>> commitPullRequests = new HashMap<>();
+            for (Map<String, List<GitPullRequest>> query : tuple.getT2().resultsOrEmpty()) {
+                query.forEach((sha, prs) -> {
+                    for (GitPullRequest pr : prs) {
+                        pullRequests.putIfAbsent(pr.pullRequestId(), pr);
+                        List<Integer> ids = commitPullRequests.computeIfAbsent(sha.toLowerCase(Locale.ROOT), k -> new ArrayList<>());
+                        if (!ids.contains(pr.pullRequestId())) ids.add(pr.pullRequestId());
+                    }
+                });
+            }
+
+            // PR collegate non trovate dalle query: lette da fetchMissing
+            Set<Integer> unresolved = new LinkedHashSet<>();
+            for (int i = 0; i < Math.min(repo.pullRequestIds.size(), MAX_LOOKUPS); i++) {
+                int id = repo.pullRequestIds.get(i);
+                if (!pullRequests.containsKey(id)) unresolved.add(id);
+            }
+            return Mono.just(new Resolution(index, repoUrl, pullRequests, tuple.getT1(),
+                    commitPullRequests, unresolved, null));
+        }).onErrorResume(e -> Mono.just(new Resolution(index, repoUrl, Map.of(), Map.of(), Map.of(), Set.of(),
+                e.getMessage())));
+    }
+
+    /**
+     * Risolve le PR rimaste in unresolved. Per i repository con piu' di MAX_SINGLE_LOOKUPS ID mancanti
+     * scorre l'elenco delle PR del repository (searchCriteria.status=all, pagine $top/$skip, al piu'
+     * MAX_LISTED_PULL_REQUESTS, fermandosi appena le ha trovate tutte); le poche rimaste, e quelle non
+     * trovate nell'elenco, sono lette per ID. Ogni fase e' un solo flatMap per l'intera analisi, quindi
+     * il limite di concorrenza non si moltiplica per i repository.
+     */
+    private static Mono<Void> fetchMissing(DevOpsOrganizations.Organization org, List<Resolution> resolutions,
+                                           int concurrency) {
+        Mono<Void> listed = Flux.fromIterable(resolutions)
+                .filter(resolution -> resolution.unresolved().size() > MAX_SINGLE_LOOKUPS)
+                .flatMap(resolution -> {
+                    Set<Integer> wanted = Set.copyOf(resolution.unresolved());
+                    return org.paginator().fetch(resolution.repoUrl() + "/pullrequests?searchCriteria.status=all"
+                                            + "&api-version=" + org.props().getApiVersion(), GitPullRequest.class,
+                                    DevOpsPaginator.Paging.SKIP, MAX_LISTED_PULL_REQUESTS, null)
+                            .filter(pr -> wanted.contains(pr.pullRequestId()))
+                            .take(wanted.size())
+                            .map(pr -> Map.entry(resolution, pr))
+                            .onErrorResume(e -> Mono.empty());
+                }, concurrency)
+                .doOnNext(DevOpsReleaseResolver::found)
+                .then();
+
+        return listed.then(Flux.fromIterable(resolutions)
+                .flatMapIterable(resolution -> {
+                    List<Map.Entry<Resolution, Integer>> missing = new ArrayList<>(resolution.unresolved().size());
+                    for (int id : resolution.unresolved()) missing.add(Map.entry(resolution, id));
+                    return missing;
+                })
+                .flatMap(missing -> org.webClient().get()
+                        .uri(missing.getKey().repoUrl() + "/pullrequests/" + missing.getValue()
+                                + "?api-version=" + org.props().getApiVersion())
+                        .retrieve()
+                        .bodyToMono(GitPullRequest.class)
+                        .map(pr -> Map.entry(missing.getKey(), pr))
+                        .onErrorResume(e -> Mono.empty()), concurrency)
+                .doOnNext(DevOpsReleaseResolver::found)
+                .then());
+    }
+
+    /** Chiamato dopo il flatMap, con i segnali gia' serializzati: le mappe della Resolution non sono concorrenti. */
+    private static void found(Map.Entry<Resolution, GitPullRequest> found) {
+        GitPullRequest pr = found.getValue();
+        found.getKey().pullRequests().put(pr.pullRequestId(), pr);
+        found.getKey().unresolved().remove(pr.pullRequestId());
+    }
+
+    private static Mono<Map<String, GitCommitRef>> commitsBatch(DevOpsOrganizations.Organization org,
+                                                                String repoUrl, List<String> shas) {
+        Map<String, Object> criteria = Map.of("ids", shas);
+        return org.webClient().post()
+                .uri(repoUrl + "/commitsbatch?$top=" + shas.size() + "&api-version=" + org.props().getApiVersion())
+                .attribute(DevOpsCoalescingFilter.BODY_KEY, DevOpsCoalescingFilter.bodyKey(criteria))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(criteria)
+                .retrieve()
+                .bodyToFlux(DataBuffer.class)
+                .transform(body -> DevOpsJsonStream.values(body, GitCommitRef.class))
+                .filter(commit -> commit.commitId() != null)
+                .collectMap(commit -> commit.commitId().toLowerCase(Locale.ROOT), commit -> commit);
+    }
+
+    private static Mono<GitPullRequestQuery> pullRequestQuery(DevOpsOrganizations.Organization org,
+                                                              String repoUrl, List<String> shas) {
+        List<Map<String, Object>> queries = new ArrayList<>(QUERY_TYPES.length);
+        for (String type : QUERY_TYPES) queries.add(Map.of("type", type, "items", shas));
+        Map<String, Object> body = Map.of("queries", queries);
+        return org.webClient().post()
+                .uri(repoUrl + "/pullrequestquery?api-version=" + org.props().getApiVersion())
+                .attribute(DevOpsCoalescingFilter.BODY_KEY, DevOpsCoalescingFilter.bodyKey(body))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(GitPullRequestQuery.class);
+    }
+
+    private static void apply(Map<String, Object> entry, DevOpsReleaseAnalysis.Repo repo,
+                              DevOpsReleaseAnalysis analysis, Resolution resolution) {
+        if (resolution.error() != null) {
+            entry.put("resolutionError", resolution.error());
+            return;
+        }
+
+        List<Map<String, Object>> pullRequests = new ArrayList<>(resolution.pullRequests().size());
+        List<Integer> unmerged = new ArrayList<>();
+        List<Integer> abandoned = new ArrayList<>();
+        for (GitPullRequest pr : resolution.pullRequests().values()) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("pullRequestId", pr.pullRequestId());
+            map.put("title", pr.title());
+            map.put("status", pr.status());
+            map.put("sourceBranch", branch(pr.sourceRefName()));
+            map.put("targetBranch", branch(pr.targetRefName()));
+            if (pr.lastMergeCommit() != null) map.put("mergeCommitId", pr.lastMergeCommit().commitId());
+            if (pr.closedDate() != null) map.put("closedDate", pr.closedDate());
+            // linked = collegata al work item; false se trovata tramite uno dei commit collegati
+            map.put("linked", repo.pullRequestIds.contains(pr.pullRequestId()));
+            pullRequests.add(map);
+            if ("active".equals(pr.status())) unmerged.add(pr.pullRequestId());
+            else if ("abandoned".equals(pr.status())) abandoned.add(pr.pullRequestId());
+        }
+        entry.put("pullRequests", pullRequests);
+        if (!unmerged.isEmpty()) entry.put("unmergedPullRequestIds", unmerged);
+        if (!abandoned.isEmpty()) entry.put("abandonedPullRequestIds", abandoned);
+        if (!resolution.unresolved().isEmpty()) entry.put("unresolvedPullRequestIds", new ArrayList<>(resolution.unresolved()));
+
+        if (repo.commits.size() > 0) {
+            List<Map<String, Object>> commits = new ArrayList<>(repo.commits.size());
+            for (int i = 0; i < repo.commits.size(); i++) {
+                String sha = analysis.commitId(repo.commits.get(i));
+                String key = sha.toLowerCase(Locale.ROOT);
+                Map<String, Object> map = new LinkedHashMap<>();
+                map.put("commitId", sha);
+                GitCommitRef commit = resolution.commits().get(key);
+                if (commit != null) {
+                    if (commit.author() != null) {
+                        map.put("author", commit.author().name());
+                        map.put("date", commit.author().date());
+                    }
+                    map.put("comment", firstLine(commit.comment()));
+                }
+                map.put("pullRequestIds", resolution.commitPullRequests().getOrDefault(key, List.of()));
+                commits.add(map);
+            }
+            entry.put("commits", commits);
+        }
+        if (repo.commits.size() > MAX_LOOKUPS || repo.pullRequestIds.size() > MAX_LOOKUPS) {
+            entry.put("lookupsTruncated", true);
+        }
+    }
+
+    private static String branch(String refName) {
+        return refName != null && refName.startsWith("refs/heads/") ? refName.substring("refs/heads/".length()) : refName;
+    }
+
+    private static String firstLine(String comment) {
+        if (comment == null) return null;
+        int newline = comment.indexOf('\n');
+        return newline < 0 ? comment : comment.substring(0, newline).strip();
+    }
+}
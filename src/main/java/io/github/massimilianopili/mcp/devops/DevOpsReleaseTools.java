@@ -1,17 +1,13 @@
 package io.github.massimilianopili.mcp.devops;
 
 import io.github.massimilianopili.ai.reactive.annotation.ReactiveTool;
+import io.github.massimilianopili.mcp.devops.model.WorkItem;
 import org.springframework.ai.tool.annotation.ToolParam;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -19,19 +15,21 @@ import java.util.stream.Collectors;
 @ConditionalOnProperty(name = "mcp.devops.pat")
 public class DevOpsReleaseTools {
 
-    private final WebClient webClient;
-    private final DevOpsProperties props;
+    private final DevOpsOrganizations organizations;
+    private final DevOpsMetrics metrics;
 
     public DevOpsReleaseTools(
-            @Qualifier("devOpsWebClient") WebClient webClient,
-            DevOpsProperties props) {
-        this.webClient = webClient;
-        this.props = props;
+            DevOpsOrganizations organizations,
+            DevOpsMetrics metrics) {
+        this.organizations = organizations;
+        this.metrics = metrics;
     }
 
     @ReactiveTool(name = "devops_analyze_release",
           description = "Analyzes a list of work items (task/user story/bug) and returns the repositories (microservices) to release, " +
                         "based on the branches, commits, and pull requests linked to each work item. " +
+                        "Linked pull requests and commits are resolved (status, target branch, merge commit) and repositories " +
+                        "with pull requests not yet completed are listed. " +
                         "Provide comma-separated work item IDs OR a WIQL query.",
           timeoutMs = 60000)
     @SuppressWarnings("unchecked")
@@ -40,31 +38,43 @@ public class DevOpsReleaseTools {
             String workItemIds,
             @ToolParam(description = "Alternative: WIQL query to select work items (if provided, workItemIds is ignored)",
                        required = false)
-            String wiqlQuery) {
-        return resolveWorkItemIds(workItemIds, wiqlQuery)
-                .flatMap(ids -> {
-                    if (ids.isEmpty()) {
-                        return Mono.just(Map.<String, Object>of("error", "Nessun work item trovato"));
-                    }
-
-                    Mono<List<Map<String, Object>>> workItemsMono = fetchWorkItemsWithRelations(ids);
-                    Mono<Map<String, String>> repoMapMono = fetchRepoMap();
-
-                    return Mono.zip(workItemsMono, repoMapMono)
-                            .map(tuple -> buildReleaseResult(ids, tuple.getT1(), tuple.getT2()));
-                })
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore analisi rilascio: " + e.getMessage())));
+            String wiqlQuery,
+            @ToolParam(description = "Resolve linked pull requests and commits per repository (default: true)", required = false)
+            Boolean resolveArtifacts,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMap(org -> resolveWorkItemIds(org, workItemIds, wiqlQuery)
+                        .flatMap(ids -> {
+                            if (ids.isEmpty()) {
+                                return Mono.just(Map.<String, Object>of("error", "Nessun work item trovato"));
+                            }
+
+                            Mono<List<WorkItem>> workItemsMono = fetchWorkItemsWithRelations(org, ids);
+                            Mono<DevOpsRepositoryCatalog.Snapshot> catalogMono = fetchCatalog(org);
+
+                            return Mono.zip(workItemsMono, catalogMono).flatMap(tuple -> {
+                                DevOpsReleaseAnalysis analysis = analyze(tuple.getT1());
+                                Map<String, Object> result = analysis.toMap(ids.size(), tuple.getT2());
+                                return Boolean.FALSE.equals(resolveArtifacts) ? Mono.just(result)
+                                        : DevOpsReleaseResolver.enrich(org, analysis, result);
+                            });
+                        }))
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore analisi rilascio: " + e.getMessage())))
+                .transform(metrics.tool("devops_analyze_release"));
     }
 
     // --- Metodi privati ---
 
     @SuppressWarnings("unchecked")
-    private Mono<List<Integer>> resolveWorkItemIds(String workItemIds, String wiqlQuery) {
+    private Mono<List<Integer>> resolveWorkItemIds(DevOpsOrganizations.Organization org,
+                                                   String workItemIds, String wiqlQuery) {
         if (wiqlQuery != null && !wiqlQuery.isBlank()) {
-            return webClient.post()
-                    .uri(props.getBaseUrl() + "/_apis/wit/wiql?api-version=" + props.getApiVersion())
+            Map<String, Object> wiql = Map.of("query", wiqlQuery);
+            return org.webClient().post()
+                    .uri(org.props().getBaseUrl() + "/_apis/wit/wiql?api-version=" + org.props().getApiVersion())
+                    .attribute(DevOpsCoalescingFilter.BODY_KEY, DevOpsCoalescingFilter.bodyKey(wiql))
                     .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(Map.of("query", wiqlQuery))
+                    .bodyValue(wiql)
                     .retrieve()
                     .bodyToMono(Map.class)
                     .map(result -> {
@@ -72,7 +82,6 @@ public class DevOpsReleaseTools {
                             List<Map<String, Object>> items = (List<Map<String, Object>>) result.get("workItems");
                             return items.stream()
                                     .map(item -> (Integer) item.get("id"))
-                                    .limit(200)
                                     .collect(Collectors.toList());
                         }
                         return List.<Integer>of();
@@ -84,151 +93,35 @@ public class DevOpsReleaseTools {
                 .map(String::trim)
                 .filter(s -> !s.isEmpty())
                 .map(Integer::parseInt)
-                .limit(200)
                 .collect(Collectors.toList()));
     }
 
-    @SuppressWarnings("unchecked")
-    private Mono<List<Map<String, Object>>> fetchWorkItemsWithRelations(List<Integer> ids) {
-        return Flux.fromIterable(ids)
-                .flatMap(id -> webClient.get()
-                        .uri(props.getBaseUrl() + "/_apis/wit/workitems/" + id
-                                + "?$expand=Relations&api-version=" + props.getApiVersion())
-                        .retrieve()
-                        .bodyToMono(Map.class)
-                        .map(r -> (Map<String, Object>) r)
-                        .onErrorResume(e -> Mono.empty()),
-                        5)  // concurrency limit
+    private Mono<List<WorkItem>> fetchWorkItemsWithRelations(DevOpsOrganizations.Organization org, List<Integer> ids) {
+        // workitemsbatch da 200 ID con $expand=Relations invece di una GET per work item
+        return org.workItemBatch().fetchExpanded(ids, "Relations")
                 .collectList();
     }
 
-    @SuppressWarnings("unchecked")
-    private Mono<Map<String, String>> fetchRepoMap() {
-        return webClient.get()
-                .uri(props.getBaseUrl() + "/_apis/git/repositories?api-version=" + props.getApiVersion())
-                .retrieve()
-                .bodyToMono(Map.class)
-                .map(response -> {
-                    Map<String, String> map = new HashMap<>();
-                    if (response.containsKey("value")) {
-                        List<Map<String, Object>> repos = (List<Map<String, Object>>) response.get("value");
-                        for (Map<String, Object> repo : repos) {
-                            String id = (String) repo.getOrDefault("id", "");
-                            String name = (String) repo.getOrDefault("name", "");
-                            if (!id.isEmpty()) map.put(id, name);
-                        }
-                    }
-                    return map;
-                })
-                .onErrorResume(e -> Mono.just(new HashMap<>()));
+    private Mono<DevOpsRepositoryCatalog.Snapshot> fetchCatalog(DevOpsOrganizations.Organization org) {
+        return org.repositoryCatalog().snapshot()
+                .onErrorResume(e -> Mono.just(catalog(Map.of())));
     }
 
-    @SuppressWarnings("unchecked")
-    private Map<String, Object> buildReleaseResult(
-            List<Integer> ids,
-            List<Map<String, Object>> workItems,
-            Map<String, String> repoIdToName) {
-
-        Map<String, Map<String, Object>> repoMap = new LinkedHashMap<>();
-        List<Integer> workItemsWithoutLinks = new ArrayList<>();
-
-        for (Map<String, Object> wi : workItems) {
-            int wiId = (int) wi.getOrDefault("id", 0);
-            List<Map<String, Object>> relations = extractRelations(wi);
-            boolean hasGitLink = false;
-
-            for (Map<String, Object> rel : relations) {
-                String url = (String) rel.getOrDefault("url", "");
-                String relType = (String) rel.getOrDefault("rel", "");
-
-                if (!"ArtifactLink".equals(relType)) continue;
-
-                GitArtifact artifact = parseGitArtifactUrl(url);
-                if (artifact == null) continue;
-
-                hasGitLink = true;
-                String repoId = artifact.repoId;
-                String repoName = repoIdToName.getOrDefault(repoId, repoId);
-
-                repoMap.computeIfAbsent(repoId, k -> {
-                    Map<String, Object> entry = new LinkedHashMap<>();
-                    entry.put("repoName", repoName);
-                    entry.put("repoId", repoId);
-                    entry.put("branches", new LinkedHashSet<String>());
-                    entry.put("workItemIds", new LinkedHashSet<Integer>());
-                    entry.put("artifactTypes", new LinkedHashSet<String>());
-                    return entry;
-                });
-
-                Map<String, Object> entry = repoMap.get(repoId);
-                ((Set<Integer>) entry.get("workItemIds")).add(wiId);
-                ((Set<String>) entry.get("artifactTypes")).add(artifact.type);
-                if (artifact.ref != null && !artifact.ref.isEmpty()) {
-                    ((Set<String>) entry.get("branches")).add(artifact.ref);
-                }
-            }
-
-            if (!hasGitLink) {
-                workItemsWithoutLinks.add(wiId);
-            }
-        }
-
-        List<Map<String, Object>> repositories = repoMap.values().stream().map(entry -> {
-            Map<String, Object> result = new LinkedHashMap<>();
-            result.put("repoName", entry.get("repoName"));
-            result.put("repoId", entry.get("repoId"));
-            result.put("branches", new ArrayList<>((Set<String>) entry.get("branches")));
-            result.put("workItemIds", new ArrayList<>((Set<Integer>) entry.get("workItemIds")));
-            result.put("artifactTypes", new ArrayList<>((Set<String>) entry.get("artifactTypes")));
-            return result;
-        }).collect(Collectors.toList());
-
-        Map<String, Object> result = new LinkedHashMap<>();
-        result.put("totalWorkItems", ids.size());
-        result.put("totalRepositories", repositories.size());
-        result.put("repositories", repositories);
-        if (!workItemsWithoutLinks.isEmpty()) {
-            result.put("workItemsWithoutLinks", workItemsWithoutLinks);
-        }
-        return result;
-    }
-
-    @SuppressWarnings("unchecked")
-    private List<Map<String, Object>> extractRelations(Map<String, Object> workItem) {
-        Object relations = workItem.get("relations");
-        if (relations instanceof List) {
-            return (List<Map<String, Object>>) relations;
-        }
-        return List.of();
+    private static DevOpsRepositoryCatalog.Snapshot catalog(Map<String, String> repoIdToName) {
+        return new DevOpsRepositoryCatalog.Snapshot(List.of(), repoIdToName, Map.of(), 0);
     }
 
-    private GitArtifact parseGitArtifactUrl(String url) {
-        if (url == null || !url.contains("vstfs:///Git/")) return null;
-
-        try {
-            String decoded = URLDecoder.decode(url, StandardCharsets.UTF_8);
-            String gitPart = decoded.substring(decoded.indexOf("vstfs:///Git/") + "vstfs:///Git/".length());
-            String[] parts = gitPart.split("/", 4);
-
-            if (parts.length >= 3) {
-                GitArtifact artifact = new GitArtifact();
-                artifact.type = parts[0];
-                artifact.repoId = parts[2];
-                artifact.ref = parts.length > 3 ? parts[3] : "";
-                if (artifact.ref.startsWith("refs/heads/")) {
-                    artifact.ref = artifact.ref.substring("refs/heads/".length());
-                }
-                return artifact;
-            }
-        } catch (Exception e) {
-            // URL non parsabile
-        }
-        return null;
+    /** Raggruppa i work item per repository dai loro ArtifactLink Git (package-private per i benchmark). */
+    static Map<String, Object> buildReleaseResult(
+            List<Integer> ids,
+            List<WorkItem> workItems,
+            Map<String, String> repoIdToName) {
+        return analyze(workItems).toMap(ids.size(), catalog(repoIdToName));
     }
 
-    private static class GitArtifact {
-        String type;
-        String repoId;
-        String ref;
+    private static DevOpsReleaseAnalysis analyze(List<WorkItem> workItems) {
+        DevOpsReleaseAnalysis analysis = new DevOpsReleaseAnalysis();
+        for (WorkItem wi : workItems) analysis.add(wi);
+        return analysis;
     }
 }
@@ -1,92 +1,129 @@
 package io.github.massimilianopili.mcp.devops;
 
 import io.github.massimilianopili.ai.reactive.annotation.ReactiveTool;
+import io.github.massimilianopili.mcp.devops.model.GitCommitRef;
 import org.springframework.ai.tool.annotation.ToolParam;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.function.Supplier;
 
 @Service
 @ConditionalOnProperty(name = "mcp.devops.pat")
 public class DevOpsRepoAdvancedTools {
 
-    private final WebClient webClient;
-    private final DevOpsProperties props;
+    private final DevOpsOrganizations organizations;
+    private final DevOpsMetrics metrics;
+    private final DevOpsGitObjectCache objectCache;
 
     public DevOpsRepoAdvancedTools(
-            @Qualifier("devOpsWebClient") WebClient webClient,
-            DevOpsProperties props) {
-        this.webClient = webClient;
-        this.props = props;
+            DevOpsOrganizations organizations,
+            DevOpsMetrics metrics,
+            DevOpsGitObjectCache objectCache) {
+        this.organizations = organizations;
+        this.metrics = metrics;
+        this.objectCache = objectCache;
     }
 
     @ReactiveTool(name = "devops_create_repository",
           description = "Creates a new Git repository in the Azure DevOps project")
     @SuppressWarnings("unchecked")
     public Mono<Map<String, Object>> createRepository(
-            @ToolParam(description = "New repository name") String name) {
-        Map<String, Object> body = new LinkedHashMap<>();
-        body.put("name", name);
-        body.put("project", Map.of("id", props.getProject()));
-
-        return webClient.post()
-                .uri(props.getBaseUrl() + "/_apis/git/repositories?api-version=" + props.getApiVersion())
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(body)
-                .retrieve()
-                .bodyToMono(Map.class)
+            @ToolParam(description = "New repository name") String name,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMap(org -> {
+                    Map<String, Object> body = new LinkedHashMap<>();
+                    body.put("name", name);
+                    body.put("project", Map.of("id", org.props().getProject()));
+
+                    return org.webClient().post()
+                            .uri(org.props().getBaseUrl() + "/_apis/git/repositories?api-version=" + org.props().getApiVersion())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .bodyValue(body)
+                            .retrieve()
+                            .bodyToMono(Map.class)
+                            .doOnNext(r -> org.repositoryCatalog().invalidate());
+                })
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore creazione repository: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore creazione repository: " + e.getMessage())))
+                .transform(metrics.tool("devops_create_repository"));
     }
 
     @ReactiveTool(name = "devops_delete_repository",
           description = "Deletes a Git repository from the Azure DevOps project")
     public Mono<Map<String, Object>> deleteRepository(
-            @ToolParam(description = "Repository ID or name to delete") String repoId) {
-        return webClient.delete()
-                .uri(props.getBaseUrl() + "/_apis/git/repositories/" + repoId + "?api-version=" + props.getApiVersion())
-                .retrieve()
-                .toBodilessEntity()
+            @ToolParam(description = "Repository ID or name to delete") String repoId,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMap(org -> org.repositoryCatalog().repositoryId(repoId)
+                        .flatMap(repo -> org.webClient().delete()
+                                .uri(org.props().getBaseUrl() + "/_apis/git/repositories/" + repo + "?api-version=" + org.props().getApiVersion())
+                                .retrieve()
+                                .toBodilessEntity()
+                                .doOnNext(r -> org.repositoryCatalog().invalidate())))
                 .map(r -> Map.<String, Object>of("status", r.getStatusCode().value(), "deleted", true))
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore eliminazione repository: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore eliminazione repository: " + e.getMessage())))
+                .transform(metrics.tool("devops_delete_repository"));
     }
 
     @ReactiveTool(name = "devops_get_commits",
           description = "Retrieves commits from an Azure DevOps Git repository, with optional path filter")
-    @SuppressWarnings("unchecked")
-    public Mono<List<Map<String, Object>>> getCommits(
+    public Mono<List<Object>> getCommits(
             @ToolParam(description = "Repository ID or name") String repoId,
             @ToolParam(description = "Maximum number of commits to return (default: 20)", required = false) Integer top,
-            @ToolParam(description = "Filter by file/directory path, e.g. /src/main", required = false) String itemPath) {
+            @ToolParam(description = "Filter by file/directory path, e.g. /src/main", required = false) String itemPath,
+            @ToolParam(description = "Page size requested per call (default: 100)", required = false) Integer pageSize,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
         int limit = (top != null && top > 0) ? top : 20;
-        String uri = props.getBaseUrl() + "/_apis/git/repositories/" + repoId
-                + "/commits?$top=" + limit + "&api-version=" + props.getApiVersion();
-        if (itemPath != null && !itemPath.isBlank()) {
-            uri += "&searchCriteria.itemPath=" + itemPath;
-        }
-
-        return webClient.get()
-                .uri(uri)
-                .retrieve()
-                .bodyToMono(Map.class)
-                .map(response -> {
-                    if (!response.containsKey("value")) return List.<Map<String, Object>>of();
-                    List<Map<String, Object>> commits = (List<Map<String, Object>>) response.get("value");
-                    return commits.stream().map(c -> {
-                        Map<String, Object> r = new LinkedHashMap<>();
-                        r.put("commitId", c.getOrDefault("commitId", ""));
-                        r.put("comment", c.getOrDefault("comment", ""));
-                        r.put("committer", extractName(c, "committer"));
-                        r.put("authorDate", extractDate(c, "committer"));
-                        return r;
-                    }).toList();
+        String query = itemPath != null && !itemPath.isBlank() ? "&searchCriteria.itemPath=" + itemPath : "";
+
+        return organizations.resolve(organization)
+                .flatMapMany(org -> org.repositoryCatalog().repositoryId(repoId)
+                        .flatMapMany(repo -> org.paginator().fetch(org.props().getBaseUrl() + "/_apis/git/repositories/" + repo
+                                        + "/commits?api-version=" + org.props().getApiVersion() + query, GitCommitRef.class,
+                                DevOpsPaginator.Paging.skip("searchCriteria.$top", "searchCriteria.$skip"), limit, pageSize)))
+                .cast(Object.class)
+                .collectList()
+                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore recupero commit: " + e.getMessage()))))
+                .transform(metrics.tool("devops_get_commits"));
+    }
+
+    @ReactiveTool(name = "devops_get_commit",
+          description = "Retrieves a single commit by SHA (author, committer, message, parents). "
+                      + "Commits are immutable and served from the local object cache after the first read.")
+    @SuppressWarnings("unchecked")
+    public Mono<Map<String, Object>> getCommit(
+            @ToolParam(description = "Repository ID or name") String repoId,
+            @ToolParam(description = "Commit SHA (40 hex characters)") String commitId,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMap(org -> org.repositoryCatalog().repositoryId(repoId)
+                        .flatMap(repo -> {
+                            Supplier<Mono<byte[]>> fetch = () -> org.webClient().get()
+                                    .uri(org.props().getBaseUrl() + "/_apis/git/repositories/" + repo + "/commits/" + commitId
+                                            + "?api-version=" + org.props().getApiVersion())
+                                    .retrieve()
+                                    .bodyToMono(byte[].class);
+                            // solo uno SHA completo identifica un contenuto immutabile
+                            return DevOpsGitObjectCache.isSha(commitId)
+                                    ? objectCache.getOrFetch(DevOpsGitObjectCache.key(org.name(), "commit", commitId), fetch)
+                                    : fetch.get();
+                        }))
+                .map(json -> {
+                    try {
+                        return (Map<String, Object>) DevOpsJsonStream.MAPPER.readValue(json, Map.class);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
                 })
-                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore recupero commit: " + e.getMessage()))));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore recupero commit " + commitId + ": " + e.getMessage())))
+                .transform(metrics.tool("devops_get_commit"));
     }
 
     @ReactiveTool(name = "devops_create_branch",
@@ -95,21 +132,25 @@ public class DevOpsRepoAdvancedTools {
     public Mono<Map<String, Object>> createBranch(
             @ToolParam(description = "Repository ID or name") String repoId,
             @ToolParam(description = "New branch name, e.g. feature/new-feature") String branchName,
-            @ToolParam(description = "Source commit SHA to create the branch from (objectId)") String sourceSha) {
+            @ToolParam(description = "Source commit SHA to create the branch from (objectId)") String sourceSha,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
         List<Map<String, String>> body = List.of(Map.of(
                 "name", "refs/heads/" + branchName,
                 "newObjectId", sourceSha,
                 "oldObjectId", "0000000000000000000000000000000000000000"
         ));
 
-        return webClient.post()
-                .uri(props.getBaseUrl() + "/_apis/git/repositories/" + repoId + "/refs?api-version=" + props.getApiVersion())
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(body)
-                .retrieve()
-                .bodyToMono(Map.class)
+        return organizations.resolve(organization)
+                .flatMap(org -> org.repositoryCatalog().repositoryId(repoId)
+                        .flatMap(repo -> org.webClient().post()
+                                .uri(org.props().getBaseUrl() + "/_apis/git/repositories/" + repo + "/refs?api-version=" + org.props().getApiVersion())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .bodyValue(body)
+                                .retrieve()
+                                .bodyToMono(Map.class)))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore creazione branch: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore creazione branch: " + e.getMessage())))
+                .transform(metrics.tool("devops_create_branch"));
     }
 
     @ReactiveTool(name = "devops_delete_branch",
@@ -118,21 +159,25 @@ public class DevOpsRepoAdvancedTools {
     public Mono<Map<String, Object>> deleteBranch(
             @ToolParam(description = "Repository ID or name") String repoId,
             @ToolParam(description = "Branch name to delete, e.g. feature/old-feature") String branchName,
-            @ToolParam(description = "Current branch SHA (objectId)") String currentSha) {
+            @ToolParam(description = "Current branch SHA (objectId)") String currentSha,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
         List<Map<String, String>> body = List.of(Map.of(
                 "name", "refs/heads/" + branchName,
                 "newObjectId", "0000000000000000000000000000000000000000",
                 "oldObjectId", currentSha
         ));
 
-        return webClient.post()
-                .uri(props.getBaseUrl() + "/_apis/git/repositories/" + repoId + "/refs?api-version=" + props.getApiVersion())
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(body)
-                .retrieve()
-                .bodyToMono(Map.class)
+        return organizations.resolve(organization)
+                .flatMap(org -> org.repositoryCatalog().repositoryId(repoId)
+                        .flatMap(repo -> org.webClient().post()
+                                .uri(org.props().getBaseUrl() + "/_apis/git/repositories/" + repo + "/refs?api-version=" + org.props().getApiVersion())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .bodyValue(body)
+                                .retrieve()
+                                .bodyToMono(Map.class)))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore eliminazione branch: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore eliminazione branch: " + e.getMessage())))
+                .transform(metrics.tool("devops_delete_branch"));
     }
 
     @ReactiveTool(name = "devops_create_pull_request",
@@ -143,7 +188,8 @@ public class DevOpsRepoAdvancedTools {
             @ToolParam(description = "Pull request title") String title,
             @ToolParam(description = "Source branch (with refs/heads/ prefix, e.g. refs/heads/feature/x)") String sourceRefName,
             @ToolParam(description = "Target branch (e.g. refs/heads/main)") String targetRefName,
-            @ToolParam(description = "Pull request description", required = false) String description) {
+            @ToolParam(description = "Pull request description", required = false) String description,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
         Map<String, Object> body = new LinkedHashMap<>();
         body.put("title", title);
         body.put("sourceRefName", sourceRefName);
@@ -151,14 +197,17 @@ public class DevOpsRepoAdvancedTools {
         body.put("description", description != null ? description : "");
         body.put("reviewers", List.of());
 
-        return webClient.post()
-                .uri(props.getBaseUrl() + "/_apis/git/repositories/" + repoId + "/pullrequests?api-version=" + props.getApiVersion())
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(body)
-                .retrieve()
-                .bodyToMono(Map.class)
+        return organizations.resolve(organization)
+                .flatMap(org -> org.repositoryCatalog().repositoryId(repoId)
+                        .flatMap(repo -> org.webClient().post()
+                                .uri(org.props().getBaseUrl() + "/_apis/git/repositories/" + repo + "/pullrequests?api-version=" + org.props().getApiVersion())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .bodyValue(body)
+                                .retrieve()
+                                .bodyToMono(Map.class)))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore creazione pull request: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore creazione pull request: " + e.getMessage())))
+                .transform(metrics.tool("devops_create_pull_request"));
     }
 
     @ReactiveTool(name = "devops_complete_pull_request",
@@ -167,20 +216,24 @@ public class DevOpsRepoAdvancedTools {
     public Mono<Map<String, Object>> completePullRequest(
             @ToolParam(description = "Repository ID or name") String repoId,
             @ToolParam(description = "Pull request ID") int pullRequestId,
-            @ToolParam(description = "Commit SHA of the last commit on the source branch") String lastSourceCommitId) {
+            @ToolParam(description = "Commit SHA of the last commit on the source branch") String lastSourceCommitId,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
         Map<String, Object> body = new LinkedHashMap<>();
         body.put("status", "completed");
         body.put("lastMergeSourceCommit", Map.of("commitId", lastSourceCommitId));
 
-        return webClient.patch()
-                .uri(props.getBaseUrl() + "/_apis/git/repositories/" + repoId
-                        + "/pullrequests/" + pullRequestId + "?api-version=" + props.getApiVersion())
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(body)
-                .retrieve()
-                .bodyToMono(Map.class)
+        return organizations.resolve(organization)
+                .flatMap(org -> org.repositoryCatalog().repositoryId(repoId)
+                        .flatMap(repo -> org.webClient().patch()
+                                .uri(org.props().getBaseUrl() + "/_apis/git/repositories/" + repo
+                                + "/pullrequests/" + pullRequestId + "?api-version=" + org.props().getApiVersion())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .bodyValue(body)
+                                .retrieve()
+                                .bodyToMono(Map.class)))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore completamento PR: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore completamento PR: " + e.getMessage())))
+                .transform(metrics.tool("devops_complete_pull_request"));
     }
 
     @ReactiveTool(name = "devops_abandon_pull_request",
@@ -188,16 +241,20 @@ public class DevOpsRepoAdvancedTools {
     @SuppressWarnings("unchecked")
     public Mono<Map<String, Object>> abandonPullRequest(
             @ToolParam(description = "Repository ID or name") String repoId,
-            @ToolParam(description = "Pull request ID") int pullRequestId) {
-        return webClient.patch()
-                .uri(props.getBaseUrl() + "/_apis/git/repositories/" + repoId
-                        + "/pullrequests/" + pullRequestId + "?api-version=" + props.getApiVersion())
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(Map.of("status", "abandoned"))
-                .retrieve()
-                .bodyToMono(Map.class)
+            @ToolParam(description = "Pull request ID") int pullRequestId,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMap(org -> org.repositoryCatalog().repositoryId(repoId)
+                        .flatMap(repo -> org.webClient().patch()
+                                .uri(org.props().getBaseUrl() + "/_apis/git/repositories/" + repo
+                                + "/pullrequests/" + pullRequestId + "?api-version=" + org.props().getApiVersion())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .bodyValue(Map.of("status", "abandoned"))
+                                .retrieve()
+                                .bodyToMono(Map.class)))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore abbandono PR: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore abbandono PR: " + e.getMessage())))
+                .transform(metrics.tool("devops_abandon_pull_request"));
     }
 
     @ReactiveTool(name = "devops_add_pr_comment",
@@ -206,37 +263,23 @@ public class DevOpsRepoAdvancedTools {
     public Mono<Map<String, Object>> addPrComment(
             @ToolParam(description = "Repository ID or name") String repoId,
             @ToolParam(description = "Pull request ID") int pullRequestId,
-            @ToolParam(description = "Comment text") String content) {
+            @ToolParam(description = "Comment text") String content,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
         Map<String, Object> body = new LinkedHashMap<>();
         body.put("comments", List.of(Map.of("content", content, "commentType", 1)));
         body.put("status", 1);
 
-        return webClient.post()
-                .uri(props.getBaseUrl() + "/_apis/git/repositories/" + repoId
-                        + "/pullrequests/" + pullRequestId + "/threads?api-version=" + props.getApiVersion())
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(body)
-                .retrieve()
-                .bodyToMono(Map.class)
+        return organizations.resolve(organization)
+                .flatMap(org -> org.repositoryCatalog().repositoryId(repoId)
+                        .flatMap(repo -> org.webClient().post()
+                                .uri(org.props().getBaseUrl() + "/_apis/git/repositories/" + repo
+                                + "/pullrequests/" + pullRequestId + "/threads?api-version=" + org.props().getApiVersion())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .bodyValue(body)
+                                .retrieve()
+                                .bodyToMono(Map.class)))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore aggiunta commento PR: " + e.getMessage())));
-    }
-
-    @SuppressWarnings("unchecked")
-    private String extractName(Map<String, Object> commit, String key) {
-        Object obj = commit.get(key);
-        if (obj instanceof Map) {
-            return (String) ((Map<String, Object>) obj).getOrDefault("name", "");
-        }
-        return "";
-    }
-
-    @SuppressWarnings("unchecked")
-    private String extractDate(Map<String, Object> commit, String key) {
-        Object obj = commit.get(key);
-        if (obj instanceof Map) {
-            return (String) ((Map<String, Object>) obj).getOrDefault("date", "");
-        }
-        return "";
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore aggiunta commento PR: " + e.getMessage())))
+                .transform(metrics.tool("devops_add_pr_comment"));
     }
 }
@@ -0,0 +1,249 @@
+package io.github.massimilianopili.mcp.devops;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Snapshot di un branch (o di un percorso) di un repository scaricato come zip (items?$format=zip).
+ * Il body non passa mai dall'heap: i DataBuffer di Reactor Netty vengono scritti cosi' come arrivano
+ * su un AsynchronousFileChannel (DataBufferUtils.write) e rilasciati subito dopo; coalescing,
+ * cache ETag e hedging sono disattivati per la richiesta. Le letture successive dei singoli file avvengono dall'archivio locale,
+ * quindi centinaia di file costano un solo trasferimento.
+ * <p>
+ * L'ID dello snapshot e' deterministico (organizzazione, repository, branch, percorso): dopo un
+ * riavvio gli archivi gia' presenti nella directory restano leggibili. Un nuovo download sostituisce
+ * l'archivio sotto il write lock dello snapshot: le letture in corso (read lock) terminano sul vecchio
+ * ZipFile, quelle successive aprono il nuovo.
+ */
+public class DevOpsRepoSnapshots {
+
+    private static final Pattern SNAPSHOT_ID = Pattern.compile("[A-Za-z0-9._-]+");
+
+    /** Archivio scaricato */
+    public record Snapshot(String id, String repository, String branch, String scopePath,
+                           long bytes, int files, Instant downloadedAt) {
+    }
+
+    /** Contenuto di un file dell'archivio; text e' null per i file binari o troppo grandi */
+    public record FileContent(String path, long size, boolean binary, boolean truncated, String text) {
+    }
+
+    private final DevOpsProperties.RepoSnapshot config;
+    private final ConcurrentHashMap<String, ZipFile> open = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ReadWriteLock> locks = new ConcurrentHashMap<>();
+
+    public DevOpsRepoSnapshots(DevOpsProperties props) {
+        this.config = props.getRepoSnapshot();
+    }
+
+    /** Scarica (o riscarica) lo zip di repository/branch/percorso e lo sostituisce atomicamente su disco. */
+    public Mono<Snapshot> download(DevOpsOrganizations.Organization org, String repoId, String branch, String scopePath) {
+        String path = scopePath != null && !scopePath.isBlank() ? scopePath : "/";
+        String id = snapshotId(org.name(), repoId, branch, path);
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("repo", repoId);
+        variables.put("path", path);
+        StringBuilder uri = new StringBuilder(org.props().getBaseUrl())
+                .append("/_apis/git/repositories/{repo}/items?path={path}&recursionLevel=Full&$format=zip&download=true");
+        if (branch != null && !branch.isBlank()) {
+            uri.append("&versionDescriptor.version={branch}&versionDescriptor.versionType=branch");
+            variables.put("branch", branch);
+        }
+        uri.append("&api-version=").append(org.props().getApiVersion());
+
+        return Mono.fromCallable(() -> Files.createDirectories(directory()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(dir -> {
+                    Path target = dir.resolve(id + ".zip");
+                    Path partial = dir.resolve(id + "." + UUID.randomUUID() + ".part");
+                    Flux<DataBuffer> body = org.webClient().get()
+                            .uri(uri.toString(), variables)
+                            .attribute(DevOpsCoalescingFilter.DISABLED, true)
+                            .attribute(DevOpsEtagCacheFilter.DISABLED, true)
+                            .attribute(DevOpsRetryFilter.NO_HEDGE, true)
+                            .accept(MediaType.valueOf("application/zip"), MediaType.APPLICATION_OCTET_STREAM)
+                            .retrieve()
+                            .bodyToFlux(DataBuffer.class);
+                    return DataBufferUtils.write(body, partial,
+                                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)
+                            .then(Mono.fromCallable(() -> {
+                                Lock lock = lock(id).writeLock();
+                                lock.lock();
+                                try {
+                                    close(id);
+                                    Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                                    return new Snapshot(id, repoId, branch, path, Files.size(target), files(zip(id)), Instant.now());
+                                } finally {
+                                    lock.unlock();
+                                }
+                            }).subscribeOn(Schedulers.boundedElastic()))
+                            .doOnError(e -> deleteQuietly(partial));
+                });
+    }
+
+    private static int files(ZipFile zip) {
+        int files = 0;
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            if (!entries.nextElement().isDirectory()) files++;
+        }
+        return files;
+    }
+
+    /** Percorsi dei file (non delle directory) con il prefisso indicato, al piu' maxItems. */
+    public Mono<List<String>> list(String snapshotId, String prefix, int maxItems) {
+        return Mono.fromCallable(() -> reading(snapshotId, () -> {
+            String normalized = prefix != null ? strip(prefix) : "";
+            List<String> paths = new ArrayList<>();
+            Enumeration<? extends ZipEntry> entries = zip(snapshotId).entries();
+            while (entries.hasMoreElements() && paths.size() < maxItems) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && entry.getName().startsWith(normalized)) paths.add("/" + entry.getName());
+            }
+            return paths;
+        })).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /** Legge un file dall'archivio locale, troncato a mcp.devops.repo-snapshot.max-read-size. */
+    public Mono<FileContent> read(String snapshotId, String path) {
+        return Mono.fromCallable(() -> reading(snapshotId, () -> {
+            ZipFile zip = zip(snapshotId);
+            ZipEntry entry = zip.getEntry(strip(path));
+            if (entry == null || entry.isDirectory()) {
+                throw new IllegalArgumentException("File non presente nello snapshot: " + path);
+            }
+            int limit = (int) Math.min(Integer.MAX_VALUE - 8, config.getMaxReadSize().toBytes());
+            byte[] bytes;
+            try (InputStream in = zip.getInputStream(entry)) {
+                bytes = in.readNBytes(limit);
+            }
+            boolean truncated = entry.getSize() < 0 ? bytes.length == limit : entry.getSize() > bytes.length;
+            String text = decodeText(bytes, truncated);
+            return new FileContent("/" + entry.getName(), entry.getSize(), text == null, truncated, text);
+        })).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /** Chiude gli archivi aperti; i file restano su disco. */
+    public void dispose() {
+        open.keySet().forEach(this::close);
+    }
+
+    /** Esegue una lettura sotto il read lock dello snapshot, che esclude la sostituzione dell'archivio. */
+    private <T> T reading(String snapshotId, Callable<T> read) throws Exception {
+        validate(snapshotId);
+        Lock lock = lock(snapshotId).readLock();
+        lock.lock();
+        try {
+            return read.call();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReadWriteLock lock(String snapshotId) {
+        return locks.computeIfAbsent(snapshotId, id -> new ReentrantReadWriteLock());
+    }
+
+    private static void validate(String snapshotId) {
+        if (snapshotId == null || !SNAPSHOT_ID.matcher(snapshotId).matches()) {
+            throw new IllegalArgumentException("ID snapshot non valido: " + snapshotId);
+        }
+    }
+
+    private ZipFile zip(String snapshotId) {
+        validate(snapshotId);
+        return open.computeIfAbsent(snapshotId, id -> {
+            Path file = directory().resolve(id + ".zip");
+            if (!Files.exists(file)) {
+                throw new IllegalArgumentException("Snapshot non trovato: " + id + " (scaricarlo con devops_download_repo_snapshot)");
+            }
+            try {
+                return new ZipFile(file.toFile());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void close(String snapshotId) {
+        ZipFile zip = open.remove(snapshotId);
+        if (zip == null) return;
+        try {
+            zip.close();
+        } catch (IOException ignored) {
+            // archivio gia' chiuso o sostituito
+        }
+    }
+
+    private Path directory() {
+        return Path.of(config.getDirectory());
+    }
+
+    /** Testo UTF-8; null se il contenuto ha byte NUL o non e' UTF-8 valido (a meno del troncamento). */
+    static String decodeText(byte[] bytes, boolean truncated) {
+        for (byte b : bytes) {
+            if (b == 0) return null;
+        }
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes))
+                    .toString();
+        } catch (CharacterCodingException e) {
+            // un carattere multibyte spezzato dal troncamento non rende binario il file
+            return truncated ? new String(bytes, StandardCharsets.UTF_8) : null;
+        }
+    }
+
+    private static String strip(String path) {
+        String p = path.replace('\\', '/');
+        while (p.startsWith("/")) p = p.substring(1);
+        return p;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // file parziale, verra' sovrascritto al prossimo download
+        }
+    }
+
+    static String snapshotId(String organization, String repoId, String branch, String scopePath) {
+        String key = organization + '\n' + repoId + '\n' + (branch != null ? branch : "") + '\n' + scopePath;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            String name = repoId.replaceAll("[^A-Za-z0-9._-]", "_");
+            return (name.length() > 40 ? name.substring(0, 40) : name) + "-" + HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.massimilianopili.mcp.devops;
+
+import io.github.massimilianopili.mcp.devops.model.GitRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Catalogo condiviso dei repository Git del progetto (ID -> nome, nome -> ID): i tool Git accettano
+ * un repository per ID o per nome e lo risolvono qui all'ID, cosi' URL e chiavi di cache non dipendono
+ * da come e' stato indicato.
+ * Il set di repository cambia raramente: lo snapshot viene servito dalla memoria e, scaduto il TTL,
+ * rinfrescato in background (stale-while-revalidate). createRepository/deleteRepository lo invalidano.
+ */
+public class DevOpsRepositoryCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(DevOpsRepositoryCatalog.class);
+
+    public record Snapshot(
+            List<GitRepository> repositories,
+            Map<String, String> idToName,
+            Map<String, String> nameToId,
+            long loadedAtNanos) {
+
+        /** ID del repository indicato per ID o per nome (senza distinzione di maiuscole); invariato se sconosciuto */
+        public String repositoryId(String idOrName) {
+            if (idToName.containsKey(idOrName)) return idOrName;
+            return nameToId.getOrDefault(idOrName.toLowerCase(Locale.ROOT), idOrName);
+        }
+    }
+
+    private final WebClient webClient;
+    private final DevOpsProperties props;
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    private final AtomicReference<Mono<Snapshot>> inflight = new AtomicReference<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    public DevOpsRepositoryCatalog(WebClient webClient, DevOpsProperties props) {
+        this.webClient = webClient;
+        this.props = props;
+    }
+
+    /** Snapshot corrente; la prima chiamata (o dopo un'invalidazione) attende il caricamento. */
+    public Mono<Snapshot> snapshot() {
+        Snapshot snapshot = current.get();
+        if (snapshot == null) {
+            return load();
+        }
+        if (System.nanoTime() - snapshot.loadedAtNanos() > props.getRepoCatalog().getTtl().toNanos()) {
+            load().subscribe(s -> {}, e -> log.warn("Refresh catalogo repository fallito: {}", e.getMessage()));
+        }
+        return Mono.just(snapshot);
+    }
+
+    public Mono<Map<String, String>> idToName() {
+        return snapshot().map(Snapshot::idToName);
+    }
+
+    /**
+     * ID del repository indicato per ID o per nome. Se il nome non e' nel catalogo (o il catalogo non si
+     * carica) il valore resta invariato e lo risolve il server, che accetta entrambi negli URL.
+     */
+    public Mono<String> repositoryId(String idOrName) {
+        if (idOrName == null || idOrName.isBlank()) {
+            return Mono.error(new IllegalArgumentException("Repository non indicato"));
+        }
+        String trimmed = idOrName.trim();
+        return snapshot()
+                .map(snapshot -> snapshot.repositoryId(trimmed))
+                .onErrorReturn(trimmed);
+    }
+
+    /** Scarta lo snapshot: la prossima richiesta ricarica l'elenco dal server. */
+    public void invalidate() {
+        generation.incrementAndGet();
+        current.set(null);
+        inflight.set(null);
+    }
+
+    private Mono<Snapshot> load() {
+        Mono<Snapshot> running = inflight.get();
+        if (running != null) return running;
+
+        long gen = generation.get();
+        // solo se e' ancora il caricamento corrente: dopo un'invalidazione inflight puo' gia' essere un altro
+        AtomicReference<Mono<Snapshot>> self = new AtomicReference<>();
+        Mono<Snapshot> loading = fetch()
+                .doOnNext(s -> {
+                    if (generation.get() == gen) current.set(s);
+                })
+                .doFinally(signal -> inflight.compareAndSet(self.get(), null))
+                .cache();
+        self.set(loading);
+        Mono<Snapshot> winner = inflight.compareAndExchange(null, loading);
+        return winner != null ? winner : loading;
+    }
+
+    private Mono<Snapshot> fetch() {
+        return webClient.get()
+                .uri(props.getBaseUrl() + "/_apis/git/repositories?api-version=" + props.getApiVersion())
+                .retrieve()
+                .bodyToFlux(DataBuffer.class)
+                .transform(body -> DevOpsJsonStream.values(body, GitRepository.class))
+                .collectList()
+                .map(repos -> {
+                    Map<String, String> idToName = new HashMap<>(repos.size() * 2);
+                    Map<String, String> nameToId = new HashMap<>(repos.size() * 2);
+                    for (GitRepository repo : repos) {
+                        if (repo.id() == null) continue;
+                        idToName.put(repo.id(), repo.name() != null ? repo.name() : "");
+                        if (repo.name() != null) nameToId.put(repo.name().toLowerCase(Locale.ROOT), repo.id());
+                    }
+                    return new Snapshot(List.copyOf(repos), Map.copyOf(idToName), Map.copyOf(nameToId),
+                            System.nanoTime());
+                });
+    }
+}
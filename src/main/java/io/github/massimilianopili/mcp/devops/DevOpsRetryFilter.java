@@ -0,0 +1,189 @@
+package io.github.massimilianopili.mcp.devops;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retry con backoff esponenziale e jitter per le sole richieste idempotenti: GET e le POST di lettura
+ * (WIQL, workitemsbatch, commitsbatch, pullrequestquery). PATCH, DELETE e le altre POST non vengono mai ripetute.
+ * Si ripetono i 5xx transitori e gli errori di connessione (reset, timeout); i 429 sono gestiti
+ * dal DevOpsThrottleFilter. Opzionalmente le GET vengono "hedged": se la risposta non arriva entro
+ * il p95 osservato parte una seconda richiesta identica e vince la prima che risponde.
+ * {@link #NO_HEDGE} esclude una richiesta dall'hedging (download grandi, che verrebbero scaricati due volte).
+ */
+public class DevOpsRetryFilter implements ExchangeFilterFunction {
+
+    private static final Logger log = LoggerFactory.getLogger(DevOpsRetryFilter.class);
+
+    /** Attributo della richiesta: true per non avviare mai la richiesta di hedging */
+    public static final String NO_HEDGE = DevOpsRetryFilter.class.getName() + ".noHedge";
+
+    /** Endpoint POST di sola lettura, sicuri da ripetere */
+    private static final String[] READ_ONLY_POST_PATHS = {"/_apis/wit/wiql", "/_apis/wit/workitemsbatch",
+            "/commitsbatch", "/pullrequestquery"};
+
+    public record Stats(long retried, long hedged, Duration hedgeDelay) {}
+
+    private final DevOpsProperties.Retry config;
+    private final LatencyWindow latencies = new LatencyWindow(256);
+
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+
+    public DevOpsRetryFilter(DevOpsProperties props) {
+        this.config = props.getRetry();
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (!config.isEnabled() || !isIdempotent(request)) {
+            return next.exchange(request);
+        }
+        return attempt(request, next, 0);
+    }
+
+    public Stats stats() {
+        return new Stats(retried.get(), hedged.get(), Duration.ofNanos(hedgeDelayNanos()));
+    }
+
+    static boolean isIdempotent(ClientRequest request) {
+        if (request.method() == HttpMethod.GET || request.method() == HttpMethod.HEAD) {
+            return true;
+        }
+        if (request.method() != HttpMethod.POST) {
+            return false;
+        }
+        String path = request.url().getPath();
+        for (String readOnly : READ_ONLY_POST_PATHS) {
+            if (path.endsWith(readOnly)) return true;
+        }
+        return false;
+    }
+
+    private Mono<ClientResponse> attempt(ClientRequest request, ExchangeFunction next, int attempt) {
+        boolean canRetry = attempt < config.getMaxRetries();
+        return exchange(request, next)
+                .flatMap(response -> {
+                    if (canRetry && isTransient(response.statusCode().value())) {
+                        log.debug("{} su {} {}, retry {}", response.statusCode().value(),
+                                request.method(), request.url(), attempt + 1);
+                        return response.releaseBody().then(retry(request, next, attempt));
+                    }
+                    return Mono.just(response);
+                })
+                .onErrorResume(e -> canRetry && e instanceof WebClientRequestException, e -> {
+                    log.debug("Errore di connessione su {} {} ({}), retry {}", request.method(), request.url(),
+                            e.getMessage(), attempt + 1);
+                    return retry(request, next, attempt);
+                });
+    }
+
+    private Mono<ClientResponse> retry(ClientRequest request, ExchangeFunction next, int attempt) {
+        retried.incrementAndGet();
+        return Mono.delay(backoff(attempt)).then(attempt(request, next, attempt + 1));
+    }
+
+    private Mono<ClientResponse> exchange(ClientRequest request, ExchangeFunction next) {
+        Mono<ClientResponse> primary = timed(next.exchange(request));
+        if (!config.isHedging() || request.method() != HttpMethod.GET || !latencies.isWarm()
+                || Boolean.TRUE.equals(request.attribute(NO_HEDGE).orElse(null))) {
+            return primary;
+        }
+        Mono<ClientResponse> hedge = Mono.delay(Duration.ofNanos(hedgeDelayNanos()))
+                .doOnNext(t -> hedged.incrementAndGet())
+                .then(next.exchange(request));
+        // la richiesta perdente viene cancellata e la sua connessione rilasciata
+        return Mono.firstWithValue(primary, hedge).onErrorMap(NoSuchElementException.class, DevOpsRetryFilter::hedgeError);
+    }
+
+    /**
+     * Se falliscono entrambe le richieste firstWithValue segnala NoSuchElementException con gli errori
+     * reali come cause/soppresse: si propaga l'errore di connessione, cosi' il retry resta possibile.
+     */
+    static Throwable hedgeError(NoSuchElementException e) {
+        List<Throwable> errors = new ArrayList<>(Arrays.asList(e.getSuppressed()));
+        if (e.getCause() != null) {
+            errors.addAll(Exceptions.unwrapMultiple(e.getCause()));
+            errors.addAll(Arrays.asList(e.getCause().getSuppressed()));
+        }
+        Throwable last = e;
+        for (Throwable error : errors) {
+            if (error instanceof WebClientRequestException) return error;
+            if (!Exceptions.isMultiple(error)) last = error;
+        }
+        return last;
+    }
+
+    private Mono<ClientResponse> timed(Mono<ClientResponse> exchange) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return exchange.doOnNext(response -> latencies.record(System.nanoTime() - start));
+        });
+    }
+
+    private long hedgeDelayNanos() {
+        return Math.max(config.getHedgeMinDelay().toNanos(), latencies.p95());
+    }
+
+    /** min(maxBackoff, initial * 2^attempt), ridotto casualmente fino alla frazione di jitter */
+    private Duration backoff(int attempt) {
+        long base = Math.min(config.getMaxBackoff().toMillis(),
+                config.getInitialBackoff().toMillis() << Math.min(attempt, 20));
+        long jitter = (long) (base * config.getJitter() * ThreadLocalRandom.current().nextDouble());
+        return Duration.ofMillis(base - jitter);
+    }
+
+    private static boolean isTransient(int status) {
+        return status == 500 || status == 502 || status == 503 || status == 504;
+    }
+
+    /** Finestra circolare delle ultime latenze, con p95 ricalcolato ogni 16 campioni. */
+    private static final class LatencyWindow {
+
+        private static final int MIN_SAMPLES = 20;
+
+        private final long[] samples;
+        private int count;
+        private int next;
+        private long p95;
+
+        LatencyWindow(int size) {
+            this.samples = new long[size];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            if (count < samples.length) count++;
+            if (next % 16 == 0) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                p95 = sorted[(int) Math.ceil(count * 0.95) - 1];
+            }
+        }
+
+        synchronized boolean isWarm() {
+            return count >= MIN_SAMPLES;
+        }
+
+        synchronized long p95() {
+            return p95;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package io.github.massimilianopili.mcp.devops;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limitatore token-bucket condiviso davanti al devOpsWebClient.
+ * Il ritmo si adatta agli header di rate limit di Azure DevOps (TSTU): rallenta quando
+ * X-RateLimit-Remaining si avvicina a zero o il server segnala X-RateLimit-Delay, si ferma per
+ * il Retry-After di un 429 e risale gradualmente quando i segnali spariscono.
+ * Le richieste in eccesso vengono accodate (ritardate) fino a max-wait; oltre falliscono subito senza
+ * consumare il token. I 429 vengono ripetuti dopo il Retry-After: il server non ha elaborato la
+ * richiesta, quindi vale anche per le scritture.
+ * <p>
+ * max-requests-per-second e' un tetto lato client valido fin dalla prima richiesta, anche in assenza
+ * di segnali dal server; i segnali possono solo abbassare il ritmo sotto il tetto.
+ */
+public class DevOpsThrottleFilter implements ExchangeFilterFunction {
+
+    private static final Logger log = LoggerFactory.getLogger(DevOpsThrottleFilter.class);
+
+    static final String RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
+    static final String RATE_LIMIT_LIMIT = "X-RateLimit-Limit";
+    static final String RATE_LIMIT_DELAY = "X-RateLimit-Delay";
+
+    /** throttled = risposte 429 del server; rejected = richieste rifiutate lato client oltre max-wait */
+    public record Stats(double requestsPerSecond, long delayed, long throttled, long rejected, long retried) {}
+
+    private final DevOpsProperties.Throttle config;
+
+    private double rate;
+    private double tokens;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+
+    private final AtomicLong delayed = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+
+    public DevOpsThrottleFilter(DevOpsProperties props) {
+        this.config = props.getThrottle();
+        this.rate = config.getMaxRequestsPerSecond();
+        this.tokens = config.getBurst();
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (!config.isEnabled()) {
+            return next.exchange(request);
+        }
+        return exchange(request, next, 0);
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(rate, delayed.get(), throttled.get(), rejected.get(), retried.get());
+    }
+
+    private Mono<ClientResponse> exchange(ClientRequest request, ExchangeFunction next, int attempt) {
+        return Mono.defer(() -> {
+                    long waitNanos = reserve();
+                    if (waitNanos <= 0) {
+                        return next.exchange(request);
+                    }
+                    if (waitNanos > config.getMaxWait().toNanos()) {
+                        // token gia' restituito da reserve(): le richieste rifiutate non allungano la coda
+                        rejected.incrementAndGet();
+                        return Mono.error(new IllegalStateException("Throttling Azure DevOps: attesa stimata "
+                                + TimeUnit.NANOSECONDS.toSeconds(waitNanos) + "s oltre il limite di "
+                                + config.getMaxWait().toSeconds() + "s"));
+                    }
+                    delayed.incrementAndGet();
+                    return Mono.delay(Duration.ofNanos(waitNanos)).then(next.exchange(request));
+                })
+                .flatMap(response -> {
+                    boolean tooMany = response.statusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value();
+                    observe(response.headers().asHttpHeaders(), tooMany);
+                    if (tooMany && attempt < config.getMaxRetries()) {
+                        retried.incrementAndGet();
+                        log.debug("429 su {} {}, nuovo tentativo {}", request.method(), request.url(), attempt + 1);
+                        return response.releaseBody().then(exchange(request, next, attempt + 1));
+                    }
+                    return Mono.just(response);
+                });
+    }
+
+    /**
+     * Prenota un token e restituisce quanto attendere prima di inviare (0 se disponibile subito).
+     * Se l'attesa supera max-wait il token non viene preso: la richiesta sara' rifiutata.
+     */
+    private synchronized long reserve() {
+        long now = System.nanoTime();
+        tokens = Math.min(config.getBurst(), tokens + (now - lastRefillNanos) / 1e9 * rate);
+        lastRefillNanos = now;
+        long wait = Math.max(0, pausedUntilNanos - now);
+        double remaining = tokens - 1;
+        if (remaining < 0) {
+            wait += (long) (-remaining / rate * 1e9);
+        }
+        if (wait <= config.getMaxWait().toNanos()) {
+            tokens = remaining;
+        }
+        return wait;
+    }
+
+    /** Adattamento AIMD del ritmo: riduzione moltiplicativa sui segnali del server, risalita additiva. */
+    private synchronized void observe(HttpHeaders headers, boolean tooMany) {
+        double min = config.getMinRequestsPerSecond();
+        double max = config.getMaxRequestsPerSecond();
+        if (tooMany) {
+            throttled.incrementAndGet();
+            Duration retryAfter = seconds(headers.getFirst(HttpHeaders.RETRY_AFTER));
+            if (retryAfter == null) retryAfter = config.getDefaultRetryAfter();
+            pausedUntilNanos = Math.max(pausedUntilNanos, System.nanoTime() + retryAfter.toNanos());
+            rate = Math.max(min, rate * 0.5);
+            return;
+        }
+        Duration delay = seconds(headers.getFirst(RATE_LIMIT_DELAY));
+        double remaining = number(headers.getFirst(RATE_LIMIT_REMAINING));
+        double limit = number(headers.getFirst(RATE_LIMIT_LIMIT));
+        if (delay != null && !delay.isZero()) {
+            rate = Math.max(min, rate * 0.7);
+        } else if (remaining >= 0 && limit > 0 && remaining / limit < config.getLowRemainingRatio()) {
+            rate = Math.max(min, rate * 0.8);
+        } else if (rate < max) {
+            rate = Math.min(max, rate + max * 0.05);
+        }
+    }
+
+    /** Retry-After / X-RateLimit-Delay in secondi (anche decimali); le date HTTP non sono usate da Azure DevOps. */
+    private static Duration seconds(String value) {
+        double seconds = number(value);
+        return seconds < 0 ? null : Duration.ofMillis((long) (seconds * 1000));
+    }
+
+    private static double number(String value) {
+        if (value == null || value.isBlank()) return -1;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package io.github.massimilianopili.mcp.devops;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 
 @AutoConfiguration
@@ -15,9 +21,40 @@ import org.springframework.context.annotation.Import;
          DevOpsProjectTools.class, DevOpsClassificationTools.class,
          DevOpsRepoAdvancedTools.class, DevOpsWorkItemAdvancedTools.class,
          DevOpsWikiTools.class, DevOpsInfraTools.class,
-         DevOpsPolicyTools.class})
+         DevOpsPolicyTools.class, DevOpsFullTextTools.class})
 public class DevOpsToolsAutoConfiguration {
     // Nessun ToolCallbackProvider bean necessario.
     // I tool @ReactiveTool vengono auto-registrati da
     // ReactiveToolAutoConfiguration di spring-ai-reactive-tools.
+
+    /** Metriche su Micrometer quando l'applicazione espone un MeterRegistry (es. Actuator + Prometheus). */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    static class MicrometerMetricsConfiguration {
+
+        @Bean
+        public DevOpsMetrics devOpsMetrics(ObjectProvider<MeterRegistry> meterRegistry, DevOpsProperties props,
+                                           DevOpsEtagCacheFilter etagCache, DevOpsThrottleFilter throttle,
+                                           DevOpsRetryFilter retry, DevOpsCoalescingFilter coalescing) {
+            MeterRegistry registry = meterRegistry.getIfUnique();
+            if (registry == null) {
+                return new DevOpsMetrics();
+            }
+            DevOpsMicrometerMetrics metrics = new DevOpsMicrometerMetrics(registry);
+            metrics.bindFilters(etagCache, retry, coalescing);
+            // i limitatori dei profili vengono registrati da DevOpsConfig.devOpsOrganizations
+            metrics.bindThrottle(props.getOrganization(), throttle);
+            return metrics;
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnMissingClass("io.micrometer.core.instrument.MeterRegistry")
+    static class NoopMetricsConfiguration {
+
+        @Bean
+        public DevOpsMetrics devOpsMetrics() {
+            return new DevOpsMetrics();
+        }
+    }
 }
@@ -2,11 +2,10 @@ package io.github.massimilianopili.mcp.devops;
 
 import io.github.massimilianopili.ai.reactive.annotation.ReactiveTool;
 import org.springframework.ai.tool.annotation.ToolParam;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 import java.util.*;
@@ -15,37 +14,29 @@ import java.util.*;
 @ConditionalOnProperty(name = "mcp.devops.pat")
 public class DevOpsWikiTools {
 
-    private final WebClient webClient;
-    private final DevOpsProperties props;
+    private final DevOpsOrganizations organizations;
+    private final DevOpsMetrics metrics;
 
     public DevOpsWikiTools(
-            @Qualifier("devOpsWebClient") WebClient webClient,
-            DevOpsProperties props) {
-        this.webClient = webClient;
-        this.props = props;
+            DevOpsOrganizations organizations,
+            DevOpsMetrics metrics) {
+        this.organizations = organizations;
+        this.metrics = metrics;
     }
 
     @ReactiveTool(name = "devops_list_wikis",
           description = "Lists all wikis available in the Azure DevOps project")
-    @SuppressWarnings("unchecked")
-    public Mono<List<Map<String, Object>>> listWikis() {
-        return webClient.get()
-                .uri(props.getBaseUrl() + "/_apis/wiki/wikis?api-version=" + props.getApiVersion())
-                .retrieve()
-                .bodyToMono(Map.class)
-                .map(response -> {
-                    if (!response.containsKey("value")) return List.<Map<String, Object>>of();
-                    List<Map<String, Object>> wikis = (List<Map<String, Object>>) response.get("value");
-                    return wikis.stream().map(w -> {
-                        Map<String, Object> r = new LinkedHashMap<>();
-                        r.put("id", w.getOrDefault("id", ""));
-                        r.put("name", w.getOrDefault("name", ""));
-                        r.put("type", w.getOrDefault("type", ""));
-                        r.put("url", w.getOrDefault("url", ""));
-                        return r;
-                    }).toList();
-                })
-                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore lista wiki: " + e.getMessage()))));
+    public Mono<List<Map<String, Object>>> listWikis(
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMapMany(org -> org.webClient().get()
+                        .uri(org.props().getBaseUrl() + "/_apis/wiki/wikis?api-version=" + org.props().getApiVersion())
+                        .retrieve()
+                        .bodyToFlux(DataBuffer.class))
+                .transform(body -> DevOpsJsonStream.values(body, "id", "name", "type", "url"))
+                .collectList()
+                .onErrorResume(e -> Mono.just(List.of(Map.of("error", "Errore lista wiki: " + e.getMessage()))))
+                .transform(metrics.tool("devops_list_wikis"));
     }
 
     @ReactiveTool(name = "devops_get_wiki_page",
@@ -53,14 +44,17 @@ public class DevOpsWikiTools {
     @SuppressWarnings("unchecked")
     public Mono<Map<String, Object>> getWikiPage(
             @ToolParam(description = "Wiki ID or name") String wikiId,
-            @ToolParam(description = "Page path, e.g. /Home or /Guide/Setup") String path) {
-        return webClient.get()
-                .uri(props.getBaseUrl() + "/_apis/wiki/wikis/" + wikiId
-                        + "/pages?path=" + path + "&includeContent=true&api-version=" + props.getApiVersion())
-                .retrieve()
-                .bodyToMono(Map.class)
+            @ToolParam(description = "Page path, e.g. /Home or /Guide/Setup") String path,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMap(org -> org.webClient().get()
+                        .uri(org.props().getBaseUrl() + "/_apis/wiki/wikis/" + wikiId
+                                + "/pages?path=" + path + "&includeContent=true&api-version=" + org.props().getApiVersion())
+                        .retrieve()
+                        .bodyToMono(Map.class))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore recupero pagina wiki: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore recupero pagina wiki: " + e.getMessage())))
+                .transform(metrics.tool("devops_get_wiki_page"));
     }
 
     @ReactiveTool(name = "devops_create_wiki_page",
@@ -69,16 +63,19 @@ public class DevOpsWikiTools {
     public Mono<Map<String, Object>> createWikiPage(
             @ToolParam(description = "Wiki ID or name") String wikiId,
             @ToolParam(description = "Page path, e.g. /Home or /Guide/New-Page") String path,
-            @ToolParam(description = "Page content in Markdown format") String content) {
-        return webClient.put()
-                .uri(props.getBaseUrl() + "/_apis/wiki/wikis/" + wikiId
-                        + "/pages?path=" + path + "&api-version=" + props.getApiVersion())
-                .contentType(MediaType.APPLICATION_JSON)
-                .header("If-Match", "-1")
-                .bodyValue(Map.of("content", content))
-                .retrieve()
-                .bodyToMono(Map.class)
+            @ToolParam(description = "Page content in Markdown format") String content,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMap(org -> org.webClient().put()
+                        .uri(org.props().getBaseUrl() + "/_apis/wiki/wikis/" + wikiId
+                                + "/pages?path=" + path + "&api-version=" + org.props().getApiVersion())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("If-Match", "-1")
+                        .bodyValue(Map.of("content", content))
+                        .retrieve()
+                        .bodyToMono(Map.class))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore creazione/aggiornamento pagina wiki: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore creazione/aggiornamento pagina wiki: " + e.getMessage())))
+                .transform(metrics.tool("devops_create_wiki_page"));
     }
 }
@@ -2,11 +2,9 @@ package io.github.massimilianopili.mcp.devops;
 
 import io.github.massimilianopili.ai.reactive.annotation.ReactiveTool;
 import org.springframework.ai.tool.annotation.ToolParam;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 import java.util.*;
@@ -15,27 +13,30 @@ import java.util.*;
 @ConditionalOnProperty(name = "mcp.devops.pat")
 public class DevOpsWorkItemAdvancedTools {
 
-    private final WebClient webClient;
-    private final DevOpsProperties props;
+    private final DevOpsOrganizations organizations;
+    private final DevOpsMetrics metrics;
 
     public DevOpsWorkItemAdvancedTools(
-            @Qualifier("devOpsWebClient") WebClient webClient,
-            DevOpsProperties props) {
-        this.webClient = webClient;
-        this.props = props;
+            DevOpsOrganizations organizations,
+            DevOpsMetrics metrics) {
+        this.organizations = organizations;
+        this.metrics = metrics;
     }
 
     @ReactiveTool(name = "devops_delete_work_item",
           description = "Deletes a work item in Azure DevOps (soft delete, recoverable from recycle bin)")
     public Mono<Map<String, Object>> deleteWorkItem(
-            @ToolParam(description = "Work item ID to delete") int workItemId) {
-        return webClient.delete()
-                .uri(props.getBaseUrl() + "/_apis/wit/workitems/" + workItemId
-                        + "?destroy=false&api-version=" + props.getApiVersion())
-                .retrieve()
-                .toBodilessEntity()
+            @ToolParam(description = "Work item ID to delete") int workItemId,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMap(org -> org.webClient().delete()
+                        .uri(org.props().getBaseUrl() + "/_apis/wit/workitems/" + workItemId
+                                + "?destroy=false&api-version=" + org.props().getApiVersion())
+                        .retrieve()
+                        .toBodilessEntity())
                 .map(r -> Map.<String, Object>of("status", r.getStatusCode().value(), "deleted", true, "workItemId", workItemId))
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore eliminazione work item " + workItemId + ": " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore eliminazione work item " + workItemId + ": " + e.getMessage())))
+                .transform(metrics.tool("devops_delete_work_item"));
     }
 
     @ReactiveTool(name = "devops_add_work_item_link",
@@ -45,7 +46,8 @@ public class DevOpsWorkItemAdvancedTools {
             @ToolParam(description = "Source work item ID") int workItemId,
             @ToolParam(description = "Full URL of the target work item, e.g. https://dev.azure.com/{org}/{project}/_apis/wit/workitems/{id}") String targetUrl,
             @ToolParam(description = "Relation type, e.g. System.LinkTypes.Hierarchy-Forward, System.LinkTypes.Related") String relationType,
-            @ToolParam(description = "Optional comment for the link", required = false) String comment) {
+            @ToolParam(description = "Optional comment for the link", required = false) String comment,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
         Map<String, Object> value = new LinkedHashMap<>();
         value.put("rel", relationType);
         value.put("url", targetUrl);
@@ -57,14 +59,34 @@ public class DevOpsWorkItemAdvancedTools {
                 Map.of("op", "add", "path", "/relations/-", "value", value)
         );
 
-        return webClient.patch()
-                .uri(props.getBaseUrl() + "/_apis/wit/workitems/" + workItemId + "?api-version=" + props.getApiVersion())
-                .contentType(MediaType.valueOf("application/json-patch+json"))
-                .bodyValue(patchOps)
-                .retrieve()
-                .bodyToMono(Map.class)
+        return organizations.resolve(organization)
+                .flatMap(org -> org.webClient().patch()
+                        .uri(org.props().getBaseUrl() + "/_apis/wit/workitems/" + workItemId + "?api-version=" + org.props().getApiVersion())
+                        .contentType(MediaType.valueOf("application/json-patch+json"))
+                        .bodyValue(patchOps)
+                        .retrieve()
+                        .bodyToMono(Map.class))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore aggiunta link work item: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore aggiunta link work item: " + e.getMessage())))
+                .transform(metrics.tool("devops_add_work_item_link"));
+    }
+
+    @ReactiveTool(name = "devops_get_work_item_tree",
+          description = "Returns the parent-child hierarchy under a work item (e.g. Epic -> Feature -> Story -> Task) as a nested tree, "
+                      + "following System.LinkTypes.Hierarchy-Forward links level by level. Each node with descendants carries a rollup "
+                      + "of remaining/completed work, original estimate, story points and state counts.")
+    public Mono<Map<String, Object>> getWorkItemTree(
+            @ToolParam(description = "Root work item ID") int workItemId,
+            @ToolParam(description = "Maximum depth below the root (default: 10)", required = false) Integer maxDepth,
+            @ToolParam(description = "Maximum number of nodes (default: 5000)", required = false) Integer maxNodes,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        int depth = maxDepth != null && maxDepth >= 0 ? maxDepth : 10;
+        int nodes = maxNodes != null && maxNodes > 0 ? maxNodes : 5000;
+        return organizations.resolve(organization)
+                .flatMap(org -> DevOpsWorkItemTree.load(org.workItemBatch(), workItemId, depth, nodes))
+                .map(DevOpsWorkItemTree::toMap)
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore albero work item " + workItemId + ": " + e.getMessage())))
+                .transform(metrics.tool("devops_get_work_item_tree"));
     }
 
     @ReactiveTool(name = "devops_remove_work_item_link",
@@ -72,18 +94,21 @@ public class DevOpsWorkItemAdvancedTools {
     @SuppressWarnings("unchecked")
     public Mono<Map<String, Object>> removeWorkItemLink(
             @ToolParam(description = "Work item ID") int workItemId,
-            @ToolParam(description = "0-based index of the relation in the work item's relations array") int relationIndex) {
+            @ToolParam(description = "0-based index of the relation in the work item's relations array") int relationIndex,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
         List<Map<String, Object>> patchOps = List.of(
                 Map.of("op", "remove", "path", "/relations/" + relationIndex)
         );
 
-        return webClient.patch()
-                .uri(props.getBaseUrl() + "/_apis/wit/workitems/" + workItemId + "?api-version=" + props.getApiVersion())
-                .contentType(MediaType.valueOf("application/json-patch+json"))
-                .bodyValue(patchOps)
-                .retrieve()
-                .bodyToMono(Map.class)
+        return organizations.resolve(organization)
+                .flatMap(org -> org.webClient().patch()
+                        .uri(org.props().getBaseUrl() + "/_apis/wit/workitems/" + workItemId + "?api-version=" + org.props().getApiVersion())
+                        .contentType(MediaType.valueOf("application/json-patch+json"))
+                        .bodyValue(patchOps)
+                        .retrieve()
+                        .bodyToMono(Map.class))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore rimozione link work item: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore rimozione link work item: " + e.getMessage())))
+                .transform(metrics.tool("devops_remove_work_item_link"));
     }
 }
@@ -0,0 +1,82 @@
+package io.github.massimilianopili.mcp.devops;
+
+import io.github.massimilianopili.mcp.devops.model.WorkItem;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.util.*;
+
+/**
+ * Idratazione di insiemi arbitrari di work item tramite POST /_apis/wit/workitemsbatch.
+ * L'endpoint accetta al massimo 200 ID per chiamata: gli ID vengono divisi in blocchi da 200,
+ * eseguiti con concorrenza limitata (mcp.devops.batch.concurrency) e riemessi nell'ordine
+ * originale (es. l'ordinamento della query WIQL).
+ */
+public class DevOpsWorkItemBatch {
+
+    static final int MAX_BATCH_SIZE = 200;
+
+    private final WebClient webClient;
+    private final DevOpsProperties props;
+
+    public DevOpsWorkItemBatch(WebClient webClient, DevOpsProperties props) {
+        this.webClient = webClient;
+        this.props = props;
+    }
+
+    /** Work item con i soli campi indicati (fields non puo' essere combinato con $expand). */
+    public Flux<WorkItem> fetch(List<Integer> ids, List<String> fields) {
+        return fetch(ids, fields, null);
+    }
+
+    /** Work item con $expand (None, Relations, Fields, Links, All) e tutti i campi. */
+    public Flux<WorkItem> fetchExpanded(List<Integer> ids, String expand) {
+        return fetch(ids, null, expand);
+    }
+
+    private Flux<WorkItem> fetch(List<Integer> ids, List<String> fields, String expand) {
+        if (ids.isEmpty()) return Flux.empty();
+
+        List<List<Integer>> chunks = new ArrayList<>((ids.size() + MAX_BATCH_SIZE - 1) / MAX_BATCH_SIZE);
+        for (int from = 0; from < ids.size(); from += MAX_BATCH_SIZE) {
+            chunks.add(ids.subList(from, Math.min(from + MAX_BATCH_SIZE, ids.size())));
+        }
+        return Flux.fromIterable(chunks)
+                .flatMapSequential(chunk -> fetchChunk(chunk, fields, expand),
+                        Math.max(1, props.getBatch().getConcurrency()));
+    }
+
+    private Flux<WorkItem> fetchChunk(List<Integer> chunk, List<String> fields, String expand) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("ids", chunk);
+        if (fields != null && !fields.isEmpty()) body.put("fields", fields);
+        if (expand != null && !expand.isBlank()) body.put("$expand", expand);
+        // ID cancellati o non accessibili tornano null invece di far fallire l'intero blocco
+        body.put("errorPolicy", "omit");
+
+        return webClient.post()
+                .uri(props.getBaseUrl() + "/_apis/wit/workitemsbatch?api-version=" + props.getApiVersion())
+                .attribute(DevOpsCoalescingFilter.BODY_KEY, DevOpsCoalescingFilter.bodyKey(body))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToFlux(DataBuffer.class)
+                .transform(b -> DevOpsJsonStream.values(b, WorkItem.class))
+                .collectList()
+                .flatMapIterable(items -> inRequestOrder(chunk, items));
+    }
+
+    /** Il server non garantisce l'ordine degli ID richiesti: lo ripristiniamo sul blocco. */
+    private static List<WorkItem> inRequestOrder(List<Integer> chunk, List<WorkItem> items) {
+        Map<Integer, WorkItem> byId = new HashMap<>(items.size() * 2);
+        for (WorkItem item : items) byId.put(item.id(), item);
+        List<WorkItem> ordered = new ArrayList<>(items.size());
+        for (Integer id : chunk) {
+            WorkItem item = byId.get(id);
+            if (item != null) ordered.add(item);
+        }
+        return ordered;
+    }
+}
@@ -0,0 +1,137 @@
+package io.github.massimilianopili.mcp.devops;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Scritture multiple di work item tramite POST /_apis/wit/$batch: ogni operazione e' una richiesta
+ * PATCH/POST con il proprio documento JSON-patch. Il server accetta al massimo 200 operazioni per
+ * chiamata: le operazioni vengono divise in blocchi, eseguiti con concorrenza limitata
+ * (mcp.devops.batch.write-concurrency). Il $batch non e' transazionale: ogni operazione ha il proprio
+ * esito, e un blocco fallito per intero riporta l'errore su tutte le sue operazioni.
+ */
+public class DevOpsWorkItemBulk {
+
+    static final int MAX_BATCH_SIZE = 200;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** Singola richiesta del $batch; uri relativo all'organizzazione, es. /_apis/wit/workitems/42 */
+    public record Operation(String method, String uri, Object body) {
+    }
+
+    /** Esito di un'operazione, nello stesso ordine delle operazioni richieste */
+    public record Result(int index, int status, Map<String, Object> body, String error) {
+
+        public boolean ok() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    private final WebClient webClient;
+    private final DevOpsProperties props;
+
+    public DevOpsWorkItemBulk(WebClient webClient, DevOpsProperties props) {
+        this.webClient = webClient;
+        this.props = props;
+    }
+
+    /** Aggiornamento JSON-patch di un work item esistente. */
+    public Operation update(int workItemId, Object patch) {
+        return new Operation("PATCH", "/_apis/wit/workitems/" + workItemId + "?api-version=" + props.getApiVersion(), patch);
+    }
+
+    /** Creazione di un work item nel progetto configurato. */
+    public Operation create(String workItemType, Object patch) {
+        return new Operation("PATCH", "/" + UriUtils.encodePathSegment(props.getProject(), StandardCharsets.UTF_8)
+                + "/_apis/wit/workitems/$" + UriUtils.encodePathSegment(workItemType, StandardCharsets.UTF_8)
+                + "?api-version=" + props.getApiVersion(), patch);
+    }
+
+    /** URL di un work item come atteso nelle relazioni; con ID negativi riferisce i work item creati nello stesso $batch. */
+    public String workItemUrl(int workItemId) {
+        return props.getOrgBaseUrl() + "/_apis/wit/workItems/" + workItemId;
+    }
+
+    public Flux<Result> execute(List<Operation> operations) {
+        return execute(operations, MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Esegue le operazioni in blocchi di al piu' chunkSize. I blocchi partono in parallelo: le operazioni
+     * che dipendono l'una dall'altra (ID temporanei negativi) devono stare nello stesso blocco.
+     */
+    public Flux<Result> execute(List<Operation> operations, int chunkSize) {
+        if (operations.isEmpty()) return Flux.empty();
+        int size = Math.max(1, Math.min(chunkSize, MAX_BATCH_SIZE));
+
+        List<Integer> offsets = new ArrayList<>();
+        for (int from = 0; from < operations.size(); from += size) offsets.add(from);
+        return Flux.fromIterable(offsets)
+                .flatMapSequential(from -> executeChunk(from, operations.subList(from, Math.min(from + size, operations.size()))),
+                        Math.max(1, props.getBatch().getWriteConcurrency()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Flux<Result> executeChunk(int offset, List<Operation> chunk) {
+        List<Map<String, Object>> body = new ArrayList<>(chunk.size());
+        for (Operation op : chunk) {
+            Map<String, Object> request = new LinkedHashMap<>();
+            request.put("method", op.method());
+            request.put("uri", op.uri());
+            request.put("headers", Map.of("Content-Type", "application/json-patch+json"));
+            request.put("body", op.body());
+            body.add(request);
+        }
+
+        return webClient.post()
+                .uri(props.getOrgBaseUrl() + "/_apis/wit/$batch?api-version=" + props.getApiVersion())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(Map.class)
+                .map(response -> {
+                    List<Map<String, Object>> values = response.get("value") instanceof List<?> list
+                            ? (List<Map<String, Object>>) list : List.of();
+                    List<Result> results = new ArrayList<>(chunk.size());
+                    for (int i = 0; i < chunk.size(); i++) {
+                        results.add(i < values.size()
+                                ? result(offset + i, values.get(i))
+                                : new Result(offset + i, 0, null, "Nessuna risposta per l'operazione"));
+                    }
+                    return results;
+                })
+                .onErrorResume(e -> {
+                    List<Result> failed = new ArrayList<>(chunk.size());
+                    for (int i = 0; i < chunk.size(); i++) failed.add(new Result(offset + i, 0, null, e.getMessage()));
+                    return Mono.just(failed);
+                })
+                .flatMapIterable(results -> results);
+    }
+
+    /** Il body di ogni risposta del $batch e' a sua volta JSON serializzato in una stringa. */
+    @SuppressWarnings("unchecked")
+    private static Result result(int index, Map<String, Object> value) {
+        int status = value.get("code") instanceof Number code ? code.intValue() : 0;
+        Map<String, Object> body = null;
+        Object raw = value.get("body");
+        try {
+            if (raw instanceof String json && !json.isBlank()) body = MAPPER.readValue(json, Map.class);
+            else if (raw instanceof Map<?, ?> map) body = (Map<String, Object>) map;
+        } catch (Exception e) {
+            body = Map.of("raw", raw);
+        }
+        if (status >= 200 && status < 300) {
+            return new Result(index, status, body, null);
+        }
+        Object message = body == null ? null : body.containsKey("message") ? body.get("message") : body.get("Message");
+        return new Result(index, status, body, message != null ? message.toString() : "HTTP " + status);
+    }
+}
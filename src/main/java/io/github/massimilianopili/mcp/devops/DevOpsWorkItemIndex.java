@@ -0,0 +1,427 @@
+package io.github.massimilianopili.mcp.devops;
+
+import io.github.massimilianopili.mcp.devops.model.WorkItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Indice invertito in memoria su System.Title, System.Description (senza markup HTML) e System.Tags
+ * dei work item del progetto principale, con ranking BM25.
+ * <p>
+ * L'aggiornamento e' incrementale: una query WIQL ordinata per (ChangedDate, Id) e paginata sulla
+ * stessa coppia (timePrecision) trova i work item modificati, idratati poi con workitemsbatch. Ogni versione di un documento ha un
+ * ordinale interno: un aggiornamento marca morto l'ordinale precedente e ne aggiunge uno nuovo in coda
+ * alle posting list (array di int), compattate quando gli ordinali morti superano quelli vivi.
+ * I work item cancellati non compaiono nelle query WIQL e restano nell'indice fino al riavvio.
+ */
+public class DevOpsWorkItemIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(DevOpsWorkItemIndex.class);
+
+    static final List<String> FIELDS = List.of(
+            "System.Id", "System.Title", "System.Description", "System.Tags",
+            "System.State", "System.WorkItemType", "System.ChangedDate");
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int MIN_COMPACTION = 1024;
+
+    /** Risultato di una ricerca, con i campi utili a scegliere quale work item aprire */
+    public record Hit(int id, String title, String state, String workItemType, String changedDate, double score) {
+    }
+
+    /** Stato dell'indice riportato nelle risposte del tool */
+    public record Freshness(Instant lastSyncAt, Duration age, int documents, int terms) {
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("lastSyncAt", lastSyncAt != null ? lastSyncAt.toString() : null);
+            map.put("ageSeconds", age != null ? age.toSeconds() : null);
+            map.put("documents", documents);
+            map.put("terms", terms);
+            return map;
+        }
+    }
+
+    /** Versione corrente di un work item nell'indice */
+    private record Doc(int id, int ordinal, int rev, String title, String state, String workItemType, String changedDate) {
+    }
+
+    /** Posting list: ordinali e frequenze del termine, in ordine di inserimento */
+    private static final class Postings {
+
+        int[] ordinals = new int[4];
+        int[] freqs = new int[4];
+        int size;
+
+        void add(int ordinal, int freq) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            ordinals[size] = ordinal;
+            freqs[size] = freq;
+            size++;
+        }
+    }
+
+    private final WebClient webClient;
+    private final DevOpsProperties props;
+    private final DevOpsWorkItemBatch workItemBatch;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // stato protetto da lock
+    private final Map<String, Postings> terms = new HashMap<>();
+    private final Map<Integer, Doc> docs = new HashMap<>();
+    private int[] ordinalIds = new int[1024];
+    private int[] ordinalLengths = new int[1024];
+    private final BitSet dead = new BitSet();
+    private int ordinals;
+    private long totalLength;
+
+    /** Ultima coppia (ChangedDate, Id) indicizzata: le pagine successive partono subito dopo */
+    private record Watermark(Instant changedDate, int id) {
+
+        boolean isBefore(Instant otherDate, int otherId) {
+            int cmp = changedDate.compareTo(otherDate);
+            return cmp < 0 || (cmp == 0 && id < otherId);
+        }
+    }
+
+    private volatile Watermark watermark;
+    private volatile Instant lastSyncAt;
+    private volatile long lastSyncNanos;
+    private Disposable schedule;
+
+    public DevOpsWorkItemIndex(WebClient webClient, DevOpsProperties props, DevOpsWorkItemBatch workItemBatch) {
+        this.webClient = webClient;
+        this.props = props;
+        this.workItemBatch = workItemBatch;
+    }
+
+    public synchronized void start() {
+        if (schedule != null) return;
+        schedule = Flux.interval(Duration.ZERO, props.getFullText().getSyncInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> sync()
+                        .onErrorResume(e -> {
+                            log.warn("Aggiornamento indice full-text fallito: {}", e.getMessage());
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    public synchronized void dispose() {
+        if (schedule != null) {
+            schedule.dispose();
+            schedule = null;
+        }
+    }
+
+    /** Indicizza i work item modificati dal watermark, una pagina WIQL alla volta. */
+    public Mono<Integer> sync() {
+        return syncPage()
+                .expand(more -> more ? syncPage() : Mono.empty())
+                .then(Mono.fromCallable(() -> {
+                    lastSyncNanos = System.nanoTime();
+                    lastSyncAt = Instant.now();
+                    return documents();
+                }));
+    }
+
+    /** Indicizza (o reindicizza) work item gia' letti con workitemsbatch e FIELDS. */
+    public void update(Collection<WorkItem> items) {
+        lock.writeLock().lock();
+        try {
+            for (WorkItem item : items) index(item);
+            if (dead.cardinality() > Math.max(MIN_COMPACTION, docs.size())) compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Primi maxResults work item per punteggio BM25 (OR dei termini), filtrabili per stato e tipo. */
+    public List<Hit> search(String query, int maxResults, String state, String workItemType) {
+        List<String> queryTerms = new ArrayList<>(new LinkedHashSet<>(tokenize(query, false)));
+        if (queryTerms.isEmpty() || maxResults <= 0) return List.of();
+
+        lock.readLock().lock();
+        try {
+            int n = docs.size();
+            if (n == 0) return List.of();
+            float avgLength = (float) totalLength / n;
+            float[] scores = new float[ordinals];
+            int[] touched = new int[Math.min(ordinals, 1024)];
+            int touchedCount = 0;
+
+            for (String term : queryTerms) {
+                Postings postings = terms.get(term);
+                if (postings == null) continue;
+                int df = 0;
+                for (int i = 0; i < postings.size; i++) {
+                    if (!dead.get(postings.ordinals[i])) df++;
+                }
+                if (df == 0) continue;
+                float idf = (float) Math.log(1 + (n - df + 0.5) / (df + 0.5));
+                for (int i = 0; i < postings.size; i++) {
+                    int ordinal = postings.ordinals[i];
+                    if (dead.get(ordinal)) continue;
+                    float tf = postings.freqs[i];
+                    float norm = K1 * (1 - B + B * ordinalLengths[ordinal] / avgLength);
+                    if (scores[ordinal] == 0) {
+                        if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+                        touched[touchedCount++] = ordinal;
+                    }
+                    scores[ordinal] += idf * tf * (K1 + 1) / (tf + norm);
+                }
+            }
+
+            String stateKey = key(state);
+            String typeKey = key(workItemType);
+            PriorityQueue<Hit> top = new PriorityQueue<>(Comparator.comparingDouble(Hit::score));
+            for (int i = 0; i < touchedCount; i++) {
+                int ordinal = touched[i];
+                Doc doc = docs.get(ordinalIds[ordinal]);
+                if (stateKey != null && !stateKey.equals(key(doc.state()))) continue;
+                if (typeKey != null && !typeKey.equals(key(doc.workItemType()))) continue;
+                if (top.size() < maxResults) {
+                    top.add(hit(doc, scores[ordinal]));
+                } else if (scores[ordinal] > top.peek().score()) {
+                    top.poll();
+                    top.add(hit(doc, scores[ordinal]));
+                }
+            }
+            List<Hit> result = new ArrayList<>(top);
+            result.sort(Comparator.comparingDouble(Hit::score).reversed());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Freshness freshness() {
+        Instant syncedAt = lastSyncAt;
+        lock.readLock().lock();
+        try {
+            return new Freshness(syncedAt,
+                    syncedAt != null ? Duration.ofNanos(System.nanoTime() - lastSyncNanos) : null,
+                    docs.size(), terms.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int documents() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Una pagina di work item modificati dopo il watermark. Il confronto su (ChangedDate, Id) fa
+     * avanzare la paginazione anche quando un'intera pagina ha lo stesso ChangedDate (bulk edit, import).
+     */
+    @SuppressWarnings("unchecked")
+    private Mono<Boolean> syncPage() {
+        Watermark since = watermark;
+        int pageSize = Math.max(1, props.getFullText().getPageSize());
+        String query = "SELECT [System.Id] FROM workitems WHERE [System.TeamProject] = @project"
+                + (since != null ? " AND ([System.ChangedDate] > '" + since.changedDate() + "'"
+                        + " OR ([System.ChangedDate] = '" + since.changedDate() + "' AND [System.Id] > " + since.id() + "))" : "")
+                + " ORDER BY [System.ChangedDate] ASC, [System.Id] ASC";
+        Map<String, Object> wiql = Map.of("query", query);
+
+        return webClient.post()
+                .uri(props.getBaseUrl() + "/_apis/wit/wiql?timePrecision=true&$top=" + pageSize
+                        + "&api-version=" + props.getApiVersion())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(wiql)
+                .retrieve()
+                .bodyToMono(Map.class)
+                .flatMap(result -> {
+                    List<Map<String, Object>> refs = (List<Map<String, Object>>) result.get("workItems");
+                    if (refs == null || refs.isEmpty()) return Mono.just(false);
+                    List<Integer> ids = refs.stream().map(ref -> (Integer) ref.get("id")).toList();
+                    Instant asOf = instant(result.get("asOf"));
+                    return workItemBatch.fetch(ids, FIELDS)
+                            .collectList()
+                            .map(items -> {
+                                update(items);
+                                Watermark next = since;
+                                for (WorkItem item : items) {
+                                    Instant changed = instant(item.fields() != null ? item.fields().get("System.ChangedDate") : null);
+                                    // modificato dopo la query: la sua posizione nell'ordine non e' quella della pagina
+                                    if (changed == null || (asOf != null && changed.isAfter(asOf))) continue;
+                                    if (next == null || next.isBefore(changed, item.id())) next = new Watermark(changed, item.id());
+                                }
+                                watermark = next;
+                                return next != null && !next.equals(since) && ids.size() >= pageSize;
+                            });
+                });
+    }
+
+    private void index(WorkItem item) {
+        Map<String, Object> fields = item.fields() != null ? item.fields() : Map.of();
+        int rev = item.rev() != null ? item.rev() : 0;
+        Doc previous = docs.get(item.id());
+        if (previous != null) {
+            if (previous.rev() >= rev) return;
+            dead.set(previous.ordinal());
+            totalLength -= ordinalLengths[previous.ordinal()];
+        }
+
+        Map<String, Integer> freqs = new HashMap<>();
+        int length = 0;
+        for (String field : List.of("System.Title", "System.Description", "System.Tags")) {
+            Object value = fields.get(field);
+            if (value == null) continue;
+            for (String token : tokenize(value.toString(), "System.Description".equals(field))) {
+                freqs.merge(token, 1, Integer::sum);
+                length++;
+            }
+        }
+
+        int ordinal = ordinals++;
+        if (ordinal == ordinalIds.length) {
+            ordinalIds = Arrays.copyOf(ordinalIds, ordinal * 2);
+            ordinalLengths = Arrays.copyOf(ordinalLengths, ordinal * 2);
+        }
+        ordinalIds[ordinal] = item.id();
+        ordinalLengths[ordinal] = length;
+        totalLength += length;
+        freqs.forEach((term, freq) -> terms.computeIfAbsent(term, t -> new Postings()).add(ordinal, freq));
+        docs.put(item.id(), new Doc(item.id(), ordinal, rev, string(fields.get("System.Title")),
+                string(fields.get("System.State")), string(fields.get("System.WorkItemType")),
+                string(fields.get("System.ChangedDate"))));
+    }
+
+    /** Rinumera gli ordinali vivi e riscrive le posting list senza quelli morti. */
+    private void compact() {
+        int[] remap = new int[ordinals];
+        int live = 0;
+        for (int ordinal = 0; ordinal < ordinals; ordinal++) {
+            if (dead.get(ordinal)) {
+                remap[ordinal] = -1;
+            } else {
+                remap[ordinal] = live;
+                ordinalIds[live] = ordinalIds[ordinal];
+                ordinalLengths[live] = ordinalLengths[ordinal];
+                live++;
+            }
+        }
+        Iterator<Postings> it = terms.values().iterator();
+        while (it.hasNext()) {
+            Postings postings = it.next();
+            int size = 0;
+            for (int i = 0; i < postings.size; i++) {
+                int mapped = remap[postings.ordinals[i]];
+                if (mapped < 0) continue;
+                postings.ordinals[size] = mapped;
+                postings.freqs[size] = postings.freqs[i];
+                size++;
+            }
+            postings.size = size;
+            if (size == 0) it.remove();
+        }
+        docs.replaceAll((id, doc) -> new Doc(doc.id(), remap[doc.ordinal()], doc.rev(), doc.title(), doc.state(),
+                doc.workItemType(), doc.changedDate()));
+        dead.clear();
+        ordinals = live;
+        log.debug("Indice full-text compattato: {} documenti, {} termini", live, terms.size());
+    }
+
+    /**
+     * Termini minuscoli di lettere e cifre. Con html=true salta i tag e decodifica le entita' piu'
+     * comuni, cosi' la descrizione non va prima convertita in testo.
+     */
+    static List<String> tokenize(String text, boolean html) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        StringBuilder current = new StringBuilder();
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (html && c == '<') {
+                int end = text.indexOf('>', i);
+                if (end > 0) {
+                    flush(current, tokens);
+                    i = end;
+                    continue;
+                }
+            }
+            if (html && c == '&') {
+                int end = text.indexOf(';', i);
+                if (end > 0 && end - i <= 8) {
+                    char decoded = entity(text, i + 1, end);
+                    if (decoded != 0) {
+                        c = decoded;
+                        i = end;
+                    }
+                }
+            }
+            if (Character.isLetterOrDigit(c)) {
+                current.append(Character.toLowerCase(c));
+            } else {
+                flush(current, tokens);
+            }
+        }
+        flush(current, tokens);
+        return tokens;
+    }
+
+    private static char entity(String text, int from, int to) {
+        String name = text.substring(from, to);
+        return switch (name) {
+            case "nbsp" -> ' ';
+            case "amp" -> '&';
+            case "lt" -> '<';
+            case "gt" -> '>';
+            case "quot" -> '"';
+            case "#39", "apos" -> '\'';
+            default -> (char) 0;
+        };
+    }
+
+    private static void flush(StringBuilder current, List<String> tokens) {
+        if (current.length() > 1 || current.length() == 1 && Character.isDigit(current.charAt(0))) {
+            tokens.add(current.toString());
+        }
+        current.setLength(0);
+    }
+
+    private static Hit hit(Doc doc, float score) {
+        return new Hit(doc.id(), doc.title(), doc.state(), doc.workItemType(), doc.changedDate(),
+                Math.round(score * 1000) / 1000.0);
+    }
+
+    private static Instant instant(Object value) {
+        if (value == null) return null;
+        try {
+            return Instant.parse(value.toString());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String string(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static String key(String value) {
+        return value == null || value.isBlank() ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+}
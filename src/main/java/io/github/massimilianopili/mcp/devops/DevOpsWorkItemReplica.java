@@ -0,0 +1,216 @@
+package io.github.massimilianopili.mcp.devops;
+
+import io.github.massimilianopili.mcp.devops.model.WorkItem;
+import io.github.massimilianopili.mcp.devops.model.WorkItemRevisionsBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Replica locale dei work item del progetto principale, tenuta aggiornata in background con l'API di
+ * reporting delle revisioni (includeLatestOnly): la prima sincronizzazione scarica tutto, le successive
+ * ripartono dal continuationToken salvato e ricevono solo i work item modificati nel frattempo.
+ * devops_search_work_items risponde dalla replica finche' l'ultima sincronizzazione riuscita e' piu'
+ * recente di mcp.devops.replica.max-staleness.
+ */
+public class DevOpsWorkItemReplica {
+
+    private static final Logger log = LoggerFactory.getLogger(DevOpsWorkItemReplica.class);
+
+    static final List<String> FIELDS = List.of(
+            "System.Id", "System.Title", "System.State",
+            "System.WorkItemType", "System.AssignedTo",
+            "System.IterationPath", "System.AreaPath", "System.Tags",
+            "System.CreatedDate", "System.ChangedDate", "System.IsDeleted");
+
+    /** Stato della replica riportato nelle risposte dei tool */
+    public record Freshness(boolean ready, Instant lastSyncAt, Duration age, int items) {
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("source", "replica");
+            map.put("lastSyncAt", lastSyncAt != null ? lastSyncAt.toString() : null);
+            map.put("ageSeconds", age != null ? age.toSeconds() : null);
+            map.put("items", items);
+            return map;
+        }
+    }
+
+    /** Work item con le chiavi dei filtri gia' normalizzate */
+    private record Entry(
+            WorkItem workItem,
+            String state,
+            String type,
+            String assignedTo,
+            String iterationPath,
+            String tags,
+            String changedDate) {
+    }
+
+    private final WebClient webClient;
+    private final DevOpsProperties props;
+    private final ConcurrentHashMap<Integer, Entry> items = new ConcurrentHashMap<>();
+    private volatile String watermark;
+    private volatile Instant lastSyncAt;
+    private volatile long lastSyncNanos;
+    private Disposable schedule;
+
+    public DevOpsWorkItemReplica(WebClient webClient, DevOpsProperties props) {
+        this.webClient = webClient;
+        this.props = props;
+    }
+
+    /** Avvia la sincronizzazione periodica; una sola alla volta, i tick durante una sincronizzazione lenta si perdono. */
+    public synchronized void start() {
+        if (schedule != null) return;
+        schedule = Flux.interval(Duration.ZERO, props.getReplica().getSyncInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> sync()
+                        .onErrorResume(e -> {
+                            log.warn("Sincronizzazione replica work item fallita: {}", e.getMessage());
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    public synchronized void dispose() {
+        if (schedule != null) {
+            schedule.dispose();
+            schedule = null;
+        }
+    }
+
+    /**
+     * Applica le revisioni successive al watermark, pagina per pagina. Il watermark avanza dopo ogni
+     * pagina applicata, cosi' un errore a meta' non fa riscaricare le pagine gia' ricevute.
+     */
+    public Mono<Integer> sync() {
+        return fetchBatch(watermark)
+                .expand(batch -> batch.isLastBatch() || batch.continuationToken() == null
+                        ? Mono.empty() : fetchBatch(batch.continuationToken()))
+                .doOnNext(batch -> {
+                    batch.valuesOrEmpty().forEach(this::apply);
+                    if (batch.continuationToken() != null) watermark = batch.continuationToken();
+                })
+                .then(Mono.fromCallable(() -> {
+                    lastSyncNanos = System.nanoTime();
+                    lastSyncAt = Instant.now();
+                    log.debug("Replica work item sincronizzata: {} elementi", items.size());
+                    return items.size();
+                }));
+    }
+
+    public Freshness freshness() {
+        Instant syncedAt = lastSyncAt;
+        return new Freshness(syncedAt != null, syncedAt,
+                syncedAt != null ? Duration.ofNanos(System.nanoTime() - lastSyncNanos) : null, items.size());
+    }
+
+    /** Vero se la replica ha completato almeno una sincronizzazione entro la staleness massima. */
+    public boolean isFresh() {
+        return lastSyncAt != null
+                && System.nanoTime() - lastSyncNanos <= props.getReplica().getMaxStaleness().toNanos();
+    }
+
+    /**
+     * Stessa semantica dei filtri WIQL di devops_search_work_items: uguaglianza per stato, tipo e
+     * assegnatario (nome, email o "Nome &lt;email&gt;"), UNDER per l'iterazione, CONTAINS (sottostringa
+     * della stringa dei tag, es. "api" trova "public-api; ui") per il tag.
+     * Primi maxResults risultati per ChangedDate decrescente.
+     */
+    public List<WorkItem> search(String state, String workItemType, String assignedTo, String iteration, String tag,
+                                 int maxResults) {
+        String stateKey = key(state);
+        String typeKey = key(workItemType);
+        String assigneeKey = key(assignedTo);
+        String iterationKey = key(iteration);
+        String tagKey = key(tag);
+
+        List<Entry> matches = new ArrayList<>();
+        for (Entry entry : items.values()) {
+            if (stateKey != null && !stateKey.equals(entry.state())) continue;
+            if (typeKey != null && !typeKey.equals(entry.type())) continue;
+            if (assigneeKey != null && !assigneeMatches(entry.assignedTo(), assigneeKey)) continue;
+            if (iterationKey != null && !under(entry.iterationPath(), iterationKey)) continue;
+            if (tagKey != null && (entry.tags() == null || !entry.tags().contains(tagKey))) continue;
+            matches.add(entry);
+        }
+        matches.sort(Comparator.comparing(Entry::changedDate, Comparator.nullsLast(Comparator.reverseOrder())));
+
+        int count = Math.min(matches.size(), maxResults);
+        List<WorkItem> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) result.add(matches.get(i).workItem());
+        return result;
+    }
+
+    private Mono<WorkItemRevisionsBatch> fetchBatch(String continuationToken) {
+        String uri = props.getBaseUrl() + "/_apis/wit/reporting/workitemrevisions"
+                + "?includeLatestOnly=true&includeDeleted=true&includeIdentityRef=false"
+                + "&$maxPageSize=" + props.getReplica().getPageSize()
+                + "&fields=" + String.join(",", FIELDS)
+                + "&api-version=" + props.getApiVersion();
+        return continuationToken == null
+                ? webClient.get().uri(uri).retrieve().bodyToMono(WorkItemRevisionsBatch.class)
+                : webClient.get().uri(uri + "&continuationToken={token}", continuationToken)
+                        .retrieve().bodyToMono(WorkItemRevisionsBatch.class);
+    }
+
+    private void apply(WorkItem workItem) {
+        Map<String, Object> fields = workItem.fields() != null ? workItem.fields() : Map.of();
+        if (Boolean.TRUE.equals(fields.get("System.IsDeleted"))) {
+            items.remove(workItem.id());
+            return;
+        }
+        Map<String, Object> visible = new LinkedHashMap<>(fields);
+        visible.remove("System.IsDeleted");
+        items.merge(workItem.id(), entry(new WorkItem(workItem.id(), workItem.rev(), visible, null, workItem.url())),
+                (current, next) -> rev(next) >= rev(current) ? next : current);
+    }
+
+    private static Entry entry(WorkItem workItem) {
+        Map<String, Object> fields = workItem.fields();
+        return new Entry(workItem,
+                key(string(fields.get("System.State"))),
+                key(string(fields.get("System.WorkItemType"))),
+                key(string(fields.get("System.AssignedTo"))),
+                key(string(fields.get("System.IterationPath"))),
+                key(string(fields.get("System.Tags"))),
+                string(fields.get("System.ChangedDate")));
+    }
+
+    private static int rev(Entry entry) {
+        return entry.workItem().rev() != null ? entry.workItem().rev() : 0;
+    }
+
+    private static boolean assigneeMatches(String value, String filter) {
+        if (value == null) return false;
+        if (value.equals(filter)) return true;
+        int lt = value.lastIndexOf('<');
+        if (lt < 0 || !value.endsWith(">")) return false;
+        return value.substring(0, lt).trim().equals(filter)
+                || value.substring(lt + 1, value.length() - 1).equals(filter);
+    }
+
+    private static boolean under(String path, String filter) {
+        return path != null && (path.equals(filter)
+                || path.length() > filter.length() && path.startsWith(filter) && path.charAt(filter.length()) == '\\');
+    }
+
+    private static String string(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static String key(String value) {
+        if (value == null) return null;
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed.toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,12 +1,13 @@
 package io.github.massimilianopili.mcp.devops;
 
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
 import io.github.massimilianopili.ai.reactive.annotation.ReactiveTool;
+import io.github.massimilianopili.mcp.devops.model.WorkItem;
 import org.springframework.ai.tool.annotation.ToolParam;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.*;
@@ -15,66 +16,41 @@ import java.util.*;
 @ConditionalOnProperty(name = "mcp.devops.pat")
 public class DevOpsWorkItemTools {
 
-    private final WebClient webClient;
-    private final DevOpsProperties props;
+    private static final List<String> QUERY_FIELDS = List.of(
+            "System.Id", "System.Title", "System.State",
+            "System.WorkItemType", "System.AssignedTo",
+            "System.IterationPath", "System.AreaPath",
+            "System.CreatedDate", "System.ChangedDate");
+
+    /** Risultati di devops_search_work_items se maxResults non e' indicato */
+    private static final int DEFAULT_SEARCH_RESULTS = 200;
+
+    private final DevOpsOrganizations organizations;
+    private final DevOpsMetrics metrics;
+    private final Optional<DevOpsWorkItemReplica> replica;
 
     public DevOpsWorkItemTools(
-            @Qualifier("devOpsWebClient") WebClient webClient,
-            DevOpsProperties props) {
-        this.webClient = webClient;
-        this.props = props;
+            DevOpsOrganizations organizations,
+            DevOpsMetrics metrics,
+            Optional<DevOpsWorkItemReplica> replica) {
+        this.organizations = organizations;
+        this.metrics = metrics;
+        this.replica = replica;
     }
 
     @ReactiveTool(name = "devops_query_work_items",
-          description = "Executes a WIQL query on Azure DevOps and returns matching work items with key fields (ID, title, state, type, assignee). Maximum 200 results.")
-    @SuppressWarnings("unchecked")
+          description = "Executes a WIQL query on Azure DevOps and returns matching work items with key fields (ID, title, state, type, assignee). "
+                      + "All results are returned in WIQL order unless maxResults is set.")
     public Mono<Map<String, Object>> queryWorkItems(
             @ToolParam(description = "WIQL query, e.g. SELECT [System.Id], [System.Title] FROM workitems WHERE [System.State] = 'Active'")
-            String wiqlQuery) {
-        return webClient.post()
-                .uri(props.getBaseUrl() + "/_apis/wit/wiql?api-version=" + props.getApiVersion())
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(Map.of("query", wiqlQuery))
-                .retrieve()
-                .bodyToMono(Map.class)
-                .flatMap(wiqlResult -> {
-                    if (!wiqlResult.containsKey("workItems")) {
-                        return Mono.just(Map.<String, Object>of("count", 0, "workItems", List.of()));
-                    }
-
-                    List<Map<String, Object>> wiqlItems = (List<Map<String, Object>>) wiqlResult.get("workItems");
-                    if (wiqlItems.isEmpty()) {
-                        return Mono.just(Map.<String, Object>of("count", 0, "workItems", List.of()));
-                    }
-
-                    List<Integer> ids = wiqlItems.stream()
-                            .map(item -> (Integer) item.get("id"))
-                            .limit(200)
-                            .toList();
-
-                    return webClient.post()
-                            .uri(props.getBaseUrl() + "/_apis/wit/workitemsbatch?api-version=" + props.getApiVersion())
-                            .contentType(MediaType.APPLICATION_JSON)
-                            .bodyValue(Map.of(
-                                    "ids", ids,
-                                    "fields", List.of(
-                                            "System.Id", "System.Title", "System.State",
-                                            "System.WorkItemType", "System.AssignedTo",
-                                            "System.IterationPath", "System.AreaPath",
-                                            "System.CreatedDate", "System.ChangedDate"
-                                    )
-                            ))
-                            .retrieve()
-                            .bodyToMono(Map.class)
-                            .map(batchResult -> {
-                                if (!batchResult.containsKey("value")) {
-                                    return Map.<String, Object>of("count", 0, "workItems", List.of());
-                                }
-                                List<Map<String, Object>> items = (List<Map<String, Object>>) batchResult.get("value");
-                                return Map.<String, Object>of("count", items.size(), "workItems", items);
-                            });
-                })
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore query work items: " + e.getMessage())));
+            String wiqlQuery,
+            @ToolParam(description = "Maximum number of work items to return (default: all)", required = false)
+            Integer maxResults,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization)
+                .flatMap(org -> runQuery(org, wiqlQuery, maxResults))
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore query work items: " + e.getMessage())))
+                .transform(metrics.tool("devops_query_work_items"));
     }
 
     @ReactiveTool(name = "devops_get_work_item",
@@ -83,18 +59,18 @@ public class DevOpsWorkItemTools {
     public Mono<Map<String, Object>> getWorkItem(
             @ToolParam(description = "Numeric work item ID") int workItemId,
             @ToolParam(description = "Expand: None, Relations, Fields, Links, All", required = false)
-            String expand) {
-        String uri = props.getBaseUrl() + "/_apis/wit/workitems/" + workItemId
-                + "?api-version=" + props.getApiVersion();
-        if (expand != null && !expand.isBlank()) {
-            uri += "&$expand=" + expand;
-        }
-        return webClient.get()
-                .uri(uri)
-                .retrieve()
-                .bodyToMono(Map.class)
+            String expand,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        String query = expand != null && !expand.isBlank() ? "&$expand=" + expand : "";
+        return organizations.resolve(organization)
+                .flatMap(org -> org.webClient().get()
+                        .uri(org.props().getBaseUrl() + "/_apis/wit/workitems/" + workItemId
+                                + "?api-version=" + org.props().getApiVersion() + query)
+                        .retrieve()
+                        .bodyToMono(Map.class))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore recupero work item " + workItemId + ": " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore recupero work item " + workItemId + ": " + e.getMessage())))
+                .transform(metrics.tool("devops_get_work_item"));
     }
 
     @ReactiveTool(name = "devops_create_work_item",
@@ -107,19 +83,22 @@ public class DevOpsWorkItemTools {
             @ToolParam(description = "Initial state, e.g. New, Active", required = false) String state,
             @ToolParam(description = "Assignee (email or display name)", required = false) String assignedTo,
             @ToolParam(description = "Iteration path, e.g. ProjectName\\Sprint 1", required = false) String iterationPath,
-            @ToolParam(description = "Area path", required = false) String areaPath) {
+            @ToolParam(description = "Area path", required = false) String areaPath,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
         List<Map<String, String>> patchOps = buildPatchDocument(
                 title, description, state, assignedTo, iterationPath, areaPath);
 
-        return webClient.post()
-                .uri(props.getBaseUrl() + "/_apis/wit/workitems/$" + workItemType
-                        + "?api-version=" + props.getApiVersion())
-                .contentType(MediaType.valueOf("application/json-patch+json"))
-                .bodyValue(patchOps)
-                .retrieve()
-                .bodyToMono(Map.class)
+        return organizations.resolve(organization)
+                .flatMap(org -> org.webClient().post()
+                        .uri(org.props().getBaseUrl() + "/_apis/wit/workitems/$" + workItemType
+                                + "?api-version=" + org.props().getApiVersion())
+                        .contentType(MediaType.valueOf("application/json-patch+json"))
+                        .bodyValue(patchOps)
+                        .retrieve()
+                        .bodyToMono(Map.class))
                 .map(r -> (Map<String, Object>) r)
-                .onErrorResume(e -> Mono.just(Map.of("error", "Errore creazione work item: " + e.getMessage())));
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore creazione work item: " + e.getMessage())))
+                .transform(metrics.tool("devops_create_work_item"));
     }
 
     @ReactiveTool(name = "devops_update_work_item",
@@ -131,8 +110,9 @@ public class DevOpsWorkItemTools {
             @ToolParam(description = "New description", required = false) String description,
             @ToolParam(description = "New state, e.g. Active, Resolved, Closed", required = false) String state,
             @ToolParam(description = "New assignee", required = false) String assignedTo,
-            @ToolParam(description = "New iteration path", required = false) String iterationPath) {
-        return Mono.defer(() -> {
+            @ToolParam(description = "New iteration path", required = false) String iterationPath,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        return organizations.resolve(organization).flatMap(org -> {
             List<Map<String, String>> patchOps = buildPatchDocument(
                     title, description, state, assignedTo, iterationPath, null);
 
@@ -140,27 +120,233 @@ public class DevOpsWorkItemTools {
                 return Mono.just(Map.<String, Object>of("error", "Nessun campo da aggiornare specificato"));
             }
 
-            return webClient.patch()
-                    .uri(props.getBaseUrl() + "/_apis/wit/workitems/" + workItemId
-                            + "?api-version=" + props.getApiVersion())
+            return org.webClient().patch()
+                    .uri(org.props().getBaseUrl() + "/_apis/wit/workitems/" + workItemId
+                            + "?api-version=" + org.props().getApiVersion())
                     .contentType(MediaType.valueOf("application/json-patch+json"))
                     .bodyValue(patchOps)
                     .retrieve()
                     .bodyToMono(Map.class)
                     .map(r -> (Map<String, Object>) r);
         })
-        .onErrorResume(e -> Mono.just(Map.of("error", "Errore aggiornamento work item " + workItemId + ": " + e.getMessage())));
+        .onErrorResume(e -> Mono.just(Map.of("error", "Errore aggiornamento work item " + workItemId + ": " + e.getMessage())))
+        .transform(metrics.tool("devops_update_work_item"));
+    }
+
+    /** Modifiche a un work item in devops_bulk_update_work_items */
+    public record WorkItemChange(
+            @JsonPropertyDescription("Work item ID") int id,
+            @JsonPropertyDescription("New title") String title,
+            @JsonPropertyDescription("New description") String description,
+            @JsonPropertyDescription("New state, e.g. Active, Resolved, Closed") String state,
+            @JsonPropertyDescription("New assignee") String assignedTo,
+            @JsonPropertyDescription("New iteration path") String iterationPath,
+            @JsonPropertyDescription("New area path") String areaPath,
+            @JsonPropertyDescription("Other fields by reference name, e.g. {\"System.Tags\": \"a; b\"}") Map<String, Object> fields,
+            @JsonPropertyDescription("Links to add") List<WorkItemLinkChange> addLinks) {
+    }
+
+    /** Link da aggiungere verso un altro work item */
+    public record WorkItemLinkChange(
+            @JsonPropertyDescription("Relation type, e.g. System.LinkTypes.Hierarchy-Reverse (parent), System.LinkTypes.Related") String rel,
+            @JsonPropertyDescription("Target work item ID") int targetId,
+            @JsonPropertyDescription("Optional comment") String comment) {
+    }
+
+    @ReactiveTool(name = "devops_bulk_update_work_items",
+          description = "Updates many Azure DevOps work items in a few calls via the $batch endpoint (up to 200 items per call). "
+                      + "Each entry specifies one work item ID and only the fields/links to change. Returns a per-item success/failure list.")
+    public Mono<Map<String, Object>> bulkUpdateWorkItems(
+            @ToolParam(description = "Changes, one entry per work item") List<WorkItemChange> updates,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        if (updates == null || updates.isEmpty()) {
+            return Mono.just(Map.<String, Object>of("error", "Nessun work item da aggiornare specificato"));
+        }
+        return organizations.resolve(organization)
+                .flatMap(org -> {
+                    DevOpsWorkItemBulk bulk = org.workItemBulk();
+                    List<DevOpsWorkItemBulk.Operation> operations = new ArrayList<>(updates.size());
+                    List<WorkItemChange> submitted = new ArrayList<>(updates.size());
+                    List<Map<String, Object>> skipped = new ArrayList<>();
+                    for (WorkItemChange change : updates) {
+                        List<Map<String, Object>> patch = buildChangeDocument(bulk, change);
+                        if (patch.isEmpty()) {
+                            skipped.add(Map.of("id", change.id(), "ok", false, "error", "Nessun campo da aggiornare specificato"));
+                            continue;
+                        }
+                        operations.add(bulk.update(change.id(), patch));
+                        submitted.add(change);
+                    }
+                    return bulk.execute(operations)
+                            .map(r -> bulkItemResult(submitted.get(r.index()).id(), r))
+                            .collectList()
+                            .map(results -> {
+                                results.addAll(skipped);
+                                return bulkSummary(results);
+                            });
+                })
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore aggiornamento multiplo work item: " + e.getMessage())))
+                .transform(metrics.tool("devops_bulk_update_work_items"));
+    }
+
+    /** Nodo della gerarchia creata da devops_create_work_item_hierarchy */
+    public record WorkItemSpec(
+            @JsonPropertyDescription("Type: Bug, Task, User Story, Feature, Epic") String workItemType,
+            @JsonPropertyDescription("Work item title") String title,
+            @JsonPropertyDescription("Description (HTML supported)") String description,
+            @JsonPropertyDescription("Initial state") String state,
+            @JsonPropertyDescription("Assignee (email or display name)") String assignedTo,
+            @JsonPropertyDescription("Iteration path") String iterationPath,
+            @JsonPropertyDescription("Area path") String areaPath,
+            @JsonPropertyDescription("Other fields by reference name, e.g. {\"Microsoft.VSTS.Scheduling.RemainingWork\": 4}") Map<String, Object> fields,
+            @JsonPropertyDescription("Child work items") List<WorkItemSpec> children) {
+    }
+
+    /** Nodo appiattito in ordine di visita: il padre precede sempre i figli */
+    private record SpecNode(int index, int parentIndex, WorkItemSpec spec) {
+    }
+
+    @ReactiveTool(name = "devops_create_work_item_hierarchy",
+          description = "Creates a whole hierarchy of work items (e.g. a Feature with its Stories and Tasks) with parent-child links, "
+                      + "in one $batch call per 200 items using temporary IDs. Optionally attaches the root under an existing work item.")
+    public Mono<Map<String, Object>> createWorkItemHierarchy(
+            @ToolParam(description = "Root of the hierarchy; each node may have children") WorkItemSpec root,
+            @ToolParam(description = "Existing work item ID to use as parent of the root", required = false) Integer parentId,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        if (root == null) {
+            return Mono.just(Map.<String, Object>of("error", "Nessun work item da creare specificato"));
+        }
+        List<SpecNode> nodes = new ArrayList<>();
+        nodes.add(new SpecNode(0, -1, root));
+        for (int i = 0; i < nodes.size(); i++) {
+            List<WorkItemSpec> children = nodes.get(i).spec().children();
+            if (children == null) continue;
+            for (WorkItemSpec child : children) {
+                if (child != null) nodes.add(new SpecNode(nodes.size(), i, child));
+            }
+        }
+
+        return organizations.resolve(organization)
+                .flatMap(org -> {
+                    DevOpsWorkItemBulk bulk = org.workItemBulk();
+                    // ID reali per indice di nodo, noti dopo ogni blocco; 0 = non (ancora) creato
+                    int[] createdIds = new int[nodes.size()];
+                    List<List<SpecNode>> chunks = new ArrayList<>();
+                    for (int from = 0; from < nodes.size(); from += DevOpsWorkItemBulk.MAX_BATCH_SIZE) {
+                        chunks.add(nodes.subList(from, Math.min(from + DevOpsWorkItemBulk.MAX_BATCH_SIZE, nodes.size())));
+                    }
+                    // gli ID temporanei valgono solo dentro lo stesso $batch: i blocchi successivi usano gli ID reali
+                    return Flux.fromIterable(chunks)
+                            .concatMap(chunk -> createChunk(bulk, chunk, createdIds, parentId))
+                            .collectList()
+                            .map(results -> {
+                                Map<String, Object> summary = bulkSummary(results);
+                                if (createdIds[0] > 0) summary.put("rootId", createdIds[0]);
+                                return summary;
+                            });
+                })
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore creazione gerarchia work item: " + e.getMessage())))
+                .transform(metrics.tool("devops_create_work_item_hierarchy"));
+    }
+
+    private Flux<Map<String, Object>> createChunk(DevOpsWorkItemBulk bulk, List<SpecNode> chunk,
+                                                  int[] createdIds, Integer parentId) {
+        return Flux.defer(() -> {
+            int first = chunk.get(0).index();
+            List<DevOpsWorkItemBulk.Operation> operations = new ArrayList<>(chunk.size());
+            List<SpecNode> submitted = new ArrayList<>(chunk.size());
+            List<Map<String, Object>> skipped = new ArrayList<>();
+            for (SpecNode node : chunk) {
+                WorkItemSpec spec = node.spec();
+                if (spec.workItemType() == null || spec.workItemType().isBlank()
+                        || spec.title() == null || spec.title().isBlank()) {
+                    skipped.add(hierarchyResult(node, Map.of("ok", false, "error", "Tipo e titolo sono obbligatori")));
+                    continue;
+                }
+                Integer parentRef;
+                if (node.parentIndex() < 0) {
+                    parentRef = parentId;
+                } else if (node.parentIndex() >= first) {
+                    parentRef = tempId(node.parentIndex());
+                } else if (createdIds[node.parentIndex()] > 0) {
+                    parentRef = createdIds[node.parentIndex()];
+                } else {
+                    skipped.add(hierarchyResult(node, Map.of("ok", false, "error", "Work item padre non creato")));
+                    continue;
+                }
+
+                List<Map<String, Object>> patch = new ArrayList<>();
+                patch.add(Map.of("op", "add", "path", "/id", "value", tempId(node.index())));
+                for (Map<String, String> op : buildPatchDocument(spec.title(), spec.description(), spec.state(),
+                        spec.assignedTo(), spec.iterationPath(), spec.areaPath())) {
+                    patch.add(new LinkedHashMap<>(op));
+                }
+                if (spec.fields() != null) {
+                    spec.fields().forEach((field, value) ->
+                            patch.add(Map.of("op", "add", "path", "/fields/" + field, "value", value != null ? value : "")));
+                }
+                if (parentRef != null) {
+                    patch.add(Map.of("op", "add", "path", "/relations/-", "value", Map.of(
+                            "rel", "System.LinkTypes.Hierarchy-Reverse", "url", bulk.workItemUrl(parentRef))));
+                }
+                operations.add(bulk.create(spec.workItemType(), patch));
+                submitted.add(node);
+            }
+            return bulk.execute(operations)
+                    .map(r -> {
+                        SpecNode node = submitted.get(r.index());
+                        Map<String, Object> item = bulkItemResult(tempId(node.index()), r);
+                        if (r.ok() && item.get("id") instanceof Number id && id.intValue() > 0) {
+                            createdIds[node.index()] = id.intValue();
+                        } else {
+                            item.remove("id");
+                        }
+                        return hierarchyResult(node, item);
+                    })
+                    .concatWith(Flux.fromIterable(skipped));
+        });
+    }
+
+    private static Map<String, Object> hierarchyResult(SpecNode node, Map<String, Object> item) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("tempId", tempId(node.index()));
+        result.put("title", node.spec().title());
+        result.putAll(item);
+        return result;
+    }
+
+    private static int tempId(int index) {
+        return -(index + 1);
     }
 
     @ReactiveTool(name = "devops_search_work_items",
           description = "Searches work items by common filters (state, type, assignee, sprint, tag). "
-                      + "All filters are optional. Without filters, returns recent work items.")
+                      + "All filters are optional. Without filters, returns recent work items. "
+                      + "When the local replica is enabled and fresh, results come from it (see 'freshness').")
     public Mono<Map<String, Object>> searchWorkItems(
             @ToolParam(description = "State: New, Active, Resolved, Closed", required = false) String state,
             @ToolParam(description = "Type: Bug, Task, User Story, Feature, Epic", required = false) String workItemType,
             @ToolParam(description = "Assignee (email or name). Use '@me' for current user", required = false) String assignedTo,
             @ToolParam(description = "Iteration path or sprint name, e.g. Sprint 5", required = false) String iteration,
-            @ToolParam(description = "Tag to filter by", required = false) String tag) {
+            @ToolParam(description = "Tag to filter by", required = false) String tag,
+            @ToolParam(description = "Maximum number of work items to return, most recently changed first (default: 200)", required = false)
+            Integer maxResults,
+            @ToolParam(description = DevOpsOrganizations.PARAM_DESCRIPTION, required = false) String organization) {
+        int limit = maxResults != null && maxResults > 0 ? maxResults : DEFAULT_SEARCH_RESULTS;
+
+        Optional<DevOpsWorkItemReplica> local = replica
+                .filter(r -> organization == null || organization.isBlank())
+                .filter(r -> assignedTo == null || !"@me".equalsIgnoreCase(assignedTo.trim()))
+                .filter(DevOpsWorkItemReplica::isFresh);
+        if (local.isPresent()) {
+            return Mono.fromCallable(() -> {
+                        List<WorkItem> items = local.get().search(state, workItemType, assignedTo, iteration, tag, limit);
+                        return Map.<String, Object>of("count", items.size(), "workItems", items,
+                                "freshness", local.get().freshness().toMap());
+                    })
+                    .onErrorResume(e -> Mono.just(Map.of("error", "Errore query work items: " + e.getMessage())))
+                    .transform(metrics.tool("devops_search_work_items"));
+        }
 
         StringBuilder wiql = new StringBuilder(
                 "SELECT [System.Id], [System.Title], [System.State], [System.WorkItemType], [System.AssignedTo] "
@@ -188,7 +374,93 @@ public class DevOpsWorkItemTools {
 
         wiql.append(" ORDER BY [System.ChangedDate] DESC");
 
-        return queryWorkItems(wiql.toString());
+        return organizations.resolve(organization)
+                .flatMap(org -> runQuery(org, wiql.toString(), limit))
+                .onErrorResume(e -> Mono.just(Map.of("error", "Errore query work items: " + e.getMessage())))
+                .transform(metrics.tool("devops_search_work_items"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Mono<Map<String, Object>> runQuery(DevOpsOrganizations.Organization org, String wiqlQuery, Integer maxResults) {
+        String uri = org.props().getBaseUrl() + "/_apis/wit/wiql?api-version=" + org.props().getApiVersion();
+        if (maxResults != null && maxResults > 0) {
+            uri += "&$top=" + maxResults;
+        }
+        Map<String, Object> wiql = Map.of("query", wiqlQuery);
+        return org.webClient().post()
+                .uri(uri)
+                .attribute(DevOpsCoalescingFilter.BODY_KEY, DevOpsCoalescingFilter.bodyKey(wiql))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(wiql)
+                .retrieve()
+                .bodyToMono(Map.class)
+                .flatMap(wiqlResult -> {
+                    if (!wiqlResult.containsKey("workItems")) {
+                        return Mono.just(Map.<String, Object>of("count", 0, "workItems", List.of()));
+                    }
+
+                    List<Map<String, Object>> wiqlItems = (List<Map<String, Object>>) wiqlResult.get("workItems");
+                    if (wiqlItems.isEmpty()) {
+                        return Mono.just(Map.<String, Object>of("count", 0, "workItems", List.of()));
+                    }
+
+                    List<Integer> ids = wiqlItems.stream()
+                            .map(item -> (Integer) item.get("id"))
+                            .limit(maxResults != null && maxResults > 0 ? maxResults : Long.MAX_VALUE)
+                            .toList();
+
+                    return org.workItemBatch().fetch(ids, QUERY_FIELDS)
+                            .collectList()
+                            .map(items -> Map.<String, Object>of("count", items.size(), "workItems", items));
+                });
+    }
+
+    private List<Map<String, Object>> buildChangeDocument(DevOpsWorkItemBulk bulk, WorkItemChange change) {
+        List<Map<String, Object>> ops = new ArrayList<>();
+        for (Map<String, String> op : buildPatchDocument(change.title(), change.description(),
+                change.state(), change.assignedTo(), change.iterationPath(), change.areaPath())) {
+            ops.add(new LinkedHashMap<>(op));
+        }
+        if (change.fields() != null) {
+            change.fields().forEach((field, value) ->
+                    ops.add(Map.of("op", "add", "path", "/fields/" + field, "value", value != null ? value : "")));
+        }
+        if (change.addLinks() != null) {
+            for (WorkItemLinkChange link : change.addLinks()) {
+                Map<String, Object> value = new LinkedHashMap<>();
+                value.put("rel", link.rel() != null && !link.rel().isBlank() ? link.rel() : "System.LinkTypes.Related");
+                value.put("url", bulk.workItemUrl(link.targetId()));
+                if (link.comment() != null && !link.comment().isBlank()) {
+                    value.put("attributes", Map.of("comment", link.comment()));
+                }
+                ops.add(Map.of("op", "add", "path", "/relations/-", "value", value));
+            }
+        }
+        return ops;
+    }
+
+    static Map<String, Object> bulkItemResult(int workItemId, DevOpsWorkItemBulk.Result result) {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("id", result.ok() && result.body() != null && result.body().get("id") != null
+                ? result.body().get("id") : workItemId);
+        item.put("ok", result.ok());
+        item.put("status", result.status());
+        if (result.ok()) {
+            if (result.body() != null && result.body().get("rev") != null) item.put("rev", result.body().get("rev"));
+        } else {
+            item.put("error", result.error());
+        }
+        return item;
+    }
+
+    static Map<String, Object> bulkSummary(List<Map<String, Object>> results) {
+        long failed = results.stream().filter(r -> !Boolean.TRUE.equals(r.get("ok"))).count();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("total", results.size());
+        summary.put("succeeded", results.size() - failed);
+        summary.put("failed", failed);
+        summary.put("results", results);
+        return summary;
     }
 
     private Map<String, String> patchOp(String field, String value) {
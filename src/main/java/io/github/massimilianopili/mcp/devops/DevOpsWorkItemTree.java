@@ -0,0 +1,230 @@
+package io.github.massimilianopili.mcp.devops;
+
+import io.github.massimilianopili.mcp.devops.model.WorkItem;
+import io.github.massimilianopili.mcp.devops.model.WorkItemRelation;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+
+/**
+ * Albero gerarchico di un work item (System.LinkTypes.Hierarchy-Forward) visitato in ampiezza:
+ * ogni livello e' un'unica fetchExpanded su workitemsbatch (blocchi da 200 in parallelo), quindi un
+ * albero di 2000 nodi su 4 livelli costa una dozzina di chiamate invece di una per nodo.
+ * <p>
+ * I nodi sono numerati in ordine di visita, per cui il padre precede sempre i figli. Il grafo sta in
+ * array di int: ids[], parent[], depth[] e i figli in formato CSR (childOffsets/children); i rollup
+ * si calcolano scorrendo gli indici a ritroso, senza ricorsione.
+ */
+final class DevOpsWorkItemTree {
+
+    static final String HIERARCHY_FORWARD = "System.LinkTypes.Hierarchy-Forward";
+
+    private static final String[] WORK_FIELDS = {
+            "Microsoft.VSTS.Scheduling.RemainingWork",
+            "Microsoft.VSTS.Scheduling.CompletedWork",
+            "Microsoft.VSTS.Scheduling.OriginalEstimate",
+            "Microsoft.VSTS.Scheduling.StoryPoints"};
+    private static final String[] WORK_KEYS = {"remainingWork", "completedWork", "originalEstimate", "storyPoints"};
+
+    private final int maxDepth;
+    private final int maxNodes;
+    private final Map<Integer, Integer> indexOf = new HashMap<>();
+    private int[] ids = new int[64];
+    private int[] parent = new int[64];
+    private int[] depth = new int[64];
+    private WorkItem[] items = new WorkItem[64];
+    private int size;
+    private int[] childOffsets;
+    private int[] children;
+    private int levels;
+    private int roundTrips;
+    private boolean truncated;
+
+    private DevOpsWorkItemTree(int maxDepth, int maxNodes) {
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+    }
+
+    /** Visita l'albero sotto rootId fino a maxDepth livelli di figli e al piu' maxNodes nodi. */
+    static Mono<DevOpsWorkItemTree> load(DevOpsWorkItemBatch batch, int rootId, int maxDepth, int maxNodes) {
+        DevOpsWorkItemTree tree = new DevOpsWorkItemTree(maxDepth, Math.max(1, maxNodes));
+        tree.add(rootId, -1, 0);
+        return tree.level(batch, new int[]{0})
+                .expand(next -> next.length == 0 ? Mono.empty() : tree.level(batch, next))
+                .then(Mono.fromCallable(() -> {
+                    if (tree.items[0] == null) {
+                        throw new IllegalArgumentException("Work item " + rootId + " non trovato");
+                    }
+                    tree.buildChildren();
+                    return tree;
+                }));
+    }
+
+    /** Idrata i nodi di un livello e restituisce gli indici dei figli appena scoperti. */
+    private Mono<int[]> level(DevOpsWorkItemBatch batch, int[] frontier) {
+        List<Integer> levelIds = new ArrayList<>(frontier.length);
+        for (int index : frontier) levelIds.add(ids[index]);
+        roundTrips += (frontier.length + DevOpsWorkItemBatch.MAX_BATCH_SIZE - 1) / DevOpsWorkItemBatch.MAX_BATCH_SIZE;
+
+        return batch.fetchExpanded(levelIds, "Relations")
+                .collectList()
+                .map(fetched -> {
+                    levels++;
+                    int[] next = new int[16];
+                    int count = 0;
+                    for (WorkItem item : fetched) {
+                        Integer index = indexOf.get(item.id());
+                        if (index == null) continue;
+                        items[index] = item;
+                        for (WorkItemRelation rel : item.relationsOrEmpty()) {
+                            if (!HIERARCHY_FORWARD.equals(rel.rel())) continue;
+                            int childId = workItemId(rel.url());
+                            // un nodo gia' visitato non viene riaggiunto: niente cicli ne' doppi conteggi
+                            if (childId < 0 || indexOf.containsKey(childId)) continue;
+                            if (depth[index] >= maxDepth || size >= maxNodes) {
+                                truncated = true;
+                                continue;
+                            }
+                            if (count == next.length) next = Arrays.copyOf(next, count * 2);
+                            next[count++] = add(childId, index, depth[index] + 1);
+                        }
+                    }
+                    return Arrays.copyOf(next, count);
+                });
+    }
+
+    private int add(int id, int parentIndex, int nodeDepth) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            parent = Arrays.copyOf(parent, size * 2);
+            depth = Arrays.copyOf(depth, size * 2);
+            items = Arrays.copyOf(items, size * 2);
+        }
+        ids[size] = id;
+        parent[size] = parentIndex;
+        depth[size] = nodeDepth;
+        indexOf.put(id, size);
+        return size++;
+    }
+
+    private void buildChildren() {
+        childOffsets = new int[size + 1];
+        for (int i = 1; i < size; i++) childOffsets[parent[i] + 1]++;
+        for (int i = 0; i < size; i++) childOffsets[i + 1] += childOffsets[i];
+        children = new int[Math.max(0, size - 1)];
+        int[] cursor = Arrays.copyOf(childOffsets, size);
+        for (int i = 1; i < size; i++) children[cursor[parent[i]]++] = i;
+    }
+
+    /**
+     * Albero annidato con, per ogni nodo con discendenti, il rollup sui soli discendenti:
+     * somme di lavoro (remaining/completed/original estimate, story points) e conteggio degli stati.
+     */
+    Map<String, Object> toMap() {
+        double[][] own = new double[WORK_FIELDS.length][size];
+        double[][] rollup = new double[WORK_FIELDS.length][size];
+        boolean[][] present = new boolean[WORK_FIELDS.length][size];
+        int[] descendants = new int[size];
+
+        List<String> states = new ArrayList<>();
+        Map<String, Integer> stateIndex = new HashMap<>();
+        int[] nodeState = new int[size];
+        for (int i = 0; i < size; i++) {
+            Map<String, Object> fields = fields(i);
+            String state = fields.get("System.State") instanceof String s ? s : "(unknown)";
+            nodeState[i] = stateIndex.computeIfAbsent(state, s -> {
+                states.add(s);
+                return states.size() - 1;
+            });
+            for (int f = 0; f < WORK_FIELDS.length; f++) {
+                if (fields.get(WORK_FIELDS[f]) instanceof Number number) {
+                    own[f][i] = number.doubleValue();
+                    present[f][i] = true;
+                }
+            }
+        }
+
+        int[] stateCounts = new int[size * states.size()];
+        for (int i = size - 1; i > 0; i--) {
+            int p = parent[i];
+            descendants[p] += 1 + descendants[i];
+            for (int f = 0; f < WORK_FIELDS.length; f++) {
+                rollup[f][p] += own[f][i] + rollup[f][i];
+                present[f][p] |= present[f][i];
+            }
+            stateCounts[p * states.size() + nodeState[i]]++;
+            for (int s = 0; s < states.size(); s++) {
+                stateCounts[p * states.size() + s] += stateCounts[i * states.size() + s];
+            }
+        }
+
+        List<Map<String, Object>> maps = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Map<String, Object> node = new LinkedHashMap<>();
+            node.put("id", ids[i]);
+            if (items[i] == null) {
+                node.put("missing", true);
+            } else {
+                Map<String, Object> fields = fields(i);
+                node.put("type", fields.get("System.WorkItemType"));
+                node.put("title", fields.get("System.Title"));
+                node.put("state", fields.get("System.State"));
+                Object assignedTo = fields.get("System.AssignedTo");
+                if (assignedTo instanceof Map<?, ?> identity) assignedTo = identity.get("displayName");
+                if (assignedTo != null) node.put("assignedTo", assignedTo);
+                for (int f = 0; f < WORK_FIELDS.length; f++) {
+                    if (fields.get(WORK_FIELDS[f]) instanceof Number) node.put(WORK_KEYS[f], own[f][i]);
+                }
+            }
+            if (descendants[i] > 0) {
+                Map<String, Object> sums = new LinkedHashMap<>();
+                sums.put("descendants", descendants[i]);
+                for (int f = 0; f < WORK_FIELDS.length; f++) {
+                    if (present[f][i]) sums.put(WORK_KEYS[f], rollup[f][i]);
+                }
+                Map<String, Integer> stateMap = new LinkedHashMap<>();
+                for (int s = 0; s < states.size(); s++) {
+                    int count = stateCounts[i * states.size() + s];
+                    if (count > 0) stateMap.put(states.get(s), count);
+                }
+                sums.put("states", stateMap);
+                node.put("rollup", sums);
+            }
+            maps.add(node);
+        }
+        for (int i = 0; i < size; i++) {
+            if (childOffsets[i] == childOffsets[i + 1]) continue;
+            List<Map<String, Object>> nodeChildren = new ArrayList<>(childOffsets[i + 1] - childOffsets[i]);
+            for (int c = childOffsets[i]; c < childOffsets[i + 1]; c++) nodeChildren.add(maps.get(children[c]));
+            maps.get(i).put("children", nodeChildren);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("rootId", ids[0]);
+        result.put("nodes", size);
+        result.put("levels", levels);
+        result.put("roundTrips", roundTrips);
+        result.put("truncated", truncated);
+        result.put("tree", maps.get(0));
+        return result;
+    }
+
+    private Map<String, Object> fields(int index) {
+        WorkItem item = items[index];
+        return item != null && item.fields() != null ? item.fields() : Map.of();
+    }
+
+    /** ID numerico in coda a .../_apis/wit/workItems/{id}, -1 se l'URL non e' di un work item. */
+    static int workItemId(String url) {
+        if (url == null) return -1;
+        int slash = url.lastIndexOf('/');
+        if (slash < 0 || slash == url.length() - 1) return -1;
+        int id = 0;
+        for (int i = slash + 1; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c < '0' || c > '9' || id > (Integer.MAX_VALUE - 9) / 10) return -1;
+            id = id * 10 + (c - '0');
+        }
+        return id;
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.massimilianopili.mcp.devops.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+import java.util.Map;
+
+/** Pagina del confronto tra due versioni (GET /_apis/git/repositories/{id}/diffs/commits, $top/$skip) */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record GitCommitDiffs(
+        Boolean allChangesIncluded,
+        Map<String, Integer> changeCounts,
+        List<Change> changes,
+        String commonCommit,
+        String baseCommit,
+        String targetCommit,
+        Integer aheadCount,
+        Integer behindCount) {
+
+    public List<Change> changesOrEmpty() {
+        return changes != null ? changes : List.of();
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Change(
+            GitItem item,
+            String changeType) {
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.massimilianopili.mcp.devops.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/** Commit Git (GET /_apis/git/repositories/{id}/commits) */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record GitCommitRef(
+        String commitId,
+        String comment,
+        GitUserDate author,
+        GitUserDate committer) {
+}
@@ -0,0 +1,13 @@
+package io.github.massimilianopili.mcp.devops.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** File o cartella di un repository (GET /_apis/git/repositories/{id}/items) */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record GitItem(
+        String path,
+        @JsonProperty("isFolder") boolean isFolder,
+        String gitObjectType,
+        String objectId) {
+}
@@ -0,0 +1,20 @@
+package io.github.massimilianopili.mcp.devops.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** Pull request Git (GET /_apis/git/repositories/{id}/pullrequests) */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record GitPullRequest(
+        int pullRequestId,
+        String title,
+        String status,
+        String sourceRefName,
+        String targetRefName,
+        String creationDate,
+        @JsonProperty("isDraft") boolean isDraft,
+        IdentityRef createdBy,
+        String mergeStatus,
+        String closedDate,
+        GitCommitRef lastMergeCommit) {
+}
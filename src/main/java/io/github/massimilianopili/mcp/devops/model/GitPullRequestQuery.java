@@ -0,0 +1,18 @@
+package io.github.massimilianopili.mcp.devops.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Risposta di POST /_apis/git/repositories/{id}/pullrequestquery: un elemento di results per ogni
+ * query inviata, con le pull request trovate per ciascun commit.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record GitPullRequestQuery(List<Map<String, List<GitPullRequest>>> results) {
+
+    public List<Map<String, List<GitPullRequest>>> resultsOrEmpty() {
+        return results != null ? results : List.of();
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.massimilianopili.mcp.devops.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/** Ref Git, es. refs/heads/main (GET /_apis/git/repositories/{id}/refs) */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record GitRef(
+        String name,
+        String objectId) {
+
+    /** Ref con il prefisso refs/heads/ rimosso */
+    public GitRef withShortName() {
+        return name != null && name.startsWith("refs/heads/")
+                ? new GitRef(name.substring("refs/heads/".length()), objectId)
+                : this;
+    }
+}
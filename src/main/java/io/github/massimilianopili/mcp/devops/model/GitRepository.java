@@ -0,0 +1,13 @@
+package io.github.massimilianopili.mcp.devops.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/** Repository Git (GET /_apis/git/repositories) */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record GitRepository(
+        String id,
+        String name,
+        String defaultBranch,
+        String webUrl,
+        long size) {
+}
@@ -0,0 +1,11 @@
+package io.github.massimilianopili.mcp.devops.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/** Autore o committer di un commit */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record GitUserDate(
+        String name,
+        String email,
+        String date) {
+}
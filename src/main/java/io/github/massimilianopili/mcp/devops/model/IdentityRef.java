@@ -0,0 +1,11 @@
+package io.github.massimilianopili.mcp.devops.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/** Riferimento a un'identita' Azure DevOps (utente o gruppo) */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record IdentityRef(
+        String id,
+        String displayName,
+        String uniqueName) {
+}
@@ -0,0 +1,12 @@
+package io.github.massimilianopili.mcp.devops.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/** Pipeline (GET /_apis/pipelines) */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record Pipeline(
+        int id,
+        String name,
+        String folder,
+        int revision) {
+}
@@ -0,0 +1,14 @@
+package io.github.massimilianopili.mcp.devops.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/** Run di una pipeline (GET /_apis/pipelines/{id}/runs) */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record PipelineRun(
+        int id,
+        String name,
+        String state,
+        String result,
+        String createdDate,
+        String finishedDate) {
+}
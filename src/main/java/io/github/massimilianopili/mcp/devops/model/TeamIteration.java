@@ -0,0 +1,19 @@
+package io.github.massimilianopili.mcp.devops.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/** Iterazione/sprint del team (GET /_apis/work/teamsettings/iterations) */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record TeamIteration(
+        String id,
+        String name,
+        String path,
+        Attributes attributes) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Attributes(
+            String startDate,
+            String finishDate,
+            String timeFrame) {
+    }
+}
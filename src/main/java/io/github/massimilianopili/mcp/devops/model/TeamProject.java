@@ -0,0 +1,13 @@
+package io.github.massimilianopili.mcp.devops.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/** Progetto dell'organizzazione (GET /_apis/projects) */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record TeamProject(
+        String id,
+        String name,
+        String description,
+        String state,
+        String visibility) {
+}
@@ -0,0 +1,25 @@
+package io.github.massimilianopili.mcp.devops.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Work item (GET /_apis/wit/workitems, POST /_apis/wit/workitemsbatch).
+ * I campi restano una mappa: l'insieme dipende dal process template e dalla proiezione richiesta.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record WorkItem(
+        int id,
+        Integer rev,
+        Map<String, Object> fields,
+        List<WorkItemRelation> relations,
+        String url) {
+
+    public List<WorkItemRelation> relationsOrEmpty() {
+        return relations != null ? relations : List.of();
+    }
+}
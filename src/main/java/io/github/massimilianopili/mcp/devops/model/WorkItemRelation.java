@@ -0,0 +1,15 @@
+package io.github.massimilianopili.mcp.devops.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Map;
+
+/** Relazione di un work item: link gerarchici, ArtifactLink verso Git, hyperlink */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record WorkItemRelation(
+        String rel,
+        String url,
+        Map<String, Object> attributes) {
+}
@@ -0,0 +1,21 @@
+package io.github.massimilianopili.mcp.devops.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Pagina dell'API di reporting (GET /_apis/wit/reporting/workitemrevisions).
+ * Il continuationToken dell'ultima pagina e' il watermark da cui riprendere alla sincronizzazione successiva.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record WorkItemRevisionsBatch(
+        List<WorkItem> values,
+        String continuationToken,
+        @JsonProperty("isLastBatch") boolean isLastBatch) {
+
+    public List<WorkItem> valuesOrEmpty() {
+        return values != null ? values : List.of();
+    }
+}